@@ -6,7 +6,6 @@ import java.awt.GridBagLayout;
 import java.awt.GridLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
-import java.util.Arrays;
 import java.util.prefs.Preferences;
 
 import javax.swing.AbstractAction;
@@ -19,7 +18,7 @@ import javax.swing.JTextField;
 
 import usr.erichschroeter.applib.GUIApplicationImpl;
 import usr.erichschroeter.applib.R;
-import usr.erichschroeter.applib.utils.Utils;
+import usr.erichschroeter.applib.utils.MultiResolutionIcon;
 
 public class CalculatorGuiApplication extends GUIApplicationImpl<JFrame> {
 
@@ -191,14 +190,11 @@ public class CalculatorGuiApplication extends GUIApplicationImpl<JFrame> {
 
 	@Override
 	public void setApplicationIcon(Icon applicationIcon) {
-		getApplicationWindow().setIconImages(
-				Arrays.asList(Utils.iconToImage(Utils.imageIcon(R
-						.png("calculator-16x16.png"))), Utils.iconToImage(Utils
-						.imageIcon(R.png("calculator-24x24.png"))), Utils
-						.iconToImage(Utils.imageIcon(R
-								.png("calculator-32x32.png"))), Utils
-						.iconToImage(Utils.imageIcon(R
-								.png("calculator-48x48.png")))));
+		super.setApplicationIcon(new MultiResolutionIcon(16, 16)
+				.addVariant(16, R.png("calculator-16x16.png"))
+				.addVariant(24, R.png("calculator-24x24.png"))
+				.addVariant(32, R.png("calculator-32x32.png"))
+				.addVariant(48, R.png("calculator-48x48.png")));
 	}
 
 	@Override
@@ -0,0 +1,78 @@
+package usr.erichschroeter.applib.utils;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compares the <code>File</code> and <code>CharSequence</code> name methods
+ * of {@link FileUtils} over many generated directory entries.
+ * <p>
+ * Usage: <code>FileUtilsBenchmark [entries] [rounds]</code>
+ *
+ * @author Erich Schroeter
+ */
+public class FileUtilsBenchmark {
+
+	private static final String[] EXTENSIONS = { "csv", "txt", "xml",
+			"csv.gz", "png", "" };
+
+	public static void main(String[] args) {
+		int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		File[] files = new File[entries];
+		String[] names = new String[entries];
+		Path[] paths = new Path[entries];
+		for (int i = 0; i < entries; i++) {
+			String ext = EXTENSIONS[i % EXTENSIONS.length];
+			String name = "entry-" + i + (ext.isEmpty() ? "" : "." + ext);
+			files[i] = new File("/data/benchmark", name);
+			names[i] = files[i].getPath();
+			paths[i] = Paths.get(names[i]);
+			paths[i].toString();
+		}
+
+		for (int round = 0; round < rounds; round++) {
+			long start = System.nanoTime();
+			int fileMatches = 0;
+			for (File file : files) {
+				if (FileUtils.getExtension(file).equalsIgnoreCase(".csv")
+						|| FileUtils.isCompressed(file)) {
+					fileMatches++;
+				}
+			}
+			long fileTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int nameMatches = 0;
+			for (String name : names) {
+				if (FileUtils.hasExtension(name, "csv")
+						|| FileUtils.isCompressed(name)) {
+					nameMatches++;
+				}
+			}
+			long nameTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int pathMatches = 0;
+			for (Path path : paths) {
+				if (FileUtils.hasExtension(path, "csv")
+						|| FileUtils.isCompressed(path)) {
+					pathMatches++;
+				}
+			}
+			long pathTime = System.nanoTime() - start;
+
+			if (fileMatches != nameMatches || nameMatches != pathMatches) {
+				throw new IllegalStateException("results differ");
+			}
+			System.out.printf(
+					"round %d: File %.1f ns, CharSequence %.1f ns, "
+							+ "Path %.1f ns per entry%n", round + 1,
+					(double) fileTime / entries, (double) nameTime / entries,
+					(double) pathTime / entries);
+		}
+	}
+
+}
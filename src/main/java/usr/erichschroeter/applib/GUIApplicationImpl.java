@@ -6,12 +6,18 @@ import java.awt.Point;
 import java.awt.Window;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.prefs.Preferences;
 
 import javax.swing.ActionMap;
 import javax.swing.Icon;
 import javax.swing.JFrame;
+import javax.swing.filechooser.FileFilter;
 
+import usr.erichschroeter.applib.filechooser.FileChooserDialog;
+import usr.erichschroeter.applib.utils.MultiResolutionIcon;
 import usr.erichschroeter.applib.utils.Utils;
 
 /**
@@ -121,6 +127,34 @@ public abstract class GUIApplicationImpl<W extends Window> extends
 		initializeWindow(getApplicationWindow());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Starts decoding the icons of {@link #getIconResources()} in the
+	 * background, so they are ready by the time the window is initialized.
+	 * Make sure to call <code>super.initializeApplication(objects)</code> when
+	 * overriding this method.
+	 */
+	@Override
+	protected void initializeApplication(Object... objects) {
+		super.initializeApplication(objects);
+		Utils.preloadIcons(getIconResources());
+	}
+
+	/**
+	 * Returns the icon resources the application uses at startup, which are
+	 * decoded in parallel while the preferences and window are initialized
+	 * and then returned by {@link Utils#imageIcon(String)}. This is called
+	 * before the derived class's constructor, so it should not depend on its
+	 * fields. The default implementation returns an empty list.
+	 * 
+	 * @return the icon resources
+	 * @see Utils#preloadIcons(Collection)
+	 */
+	protected Collection<String> getIconResources() {
+		return Collections.emptyList();
+	}
+
 	/**
 	 * Creates and returns the application window. The returned result is set as
 	 * the application's window which can be retrieved by calling
@@ -344,6 +378,9 @@ public abstract class GUIApplicationImpl<W extends Window> extends
 	 * <p>
 	 * A <code>PropertyChangeEvent</code> is fired when the application icon is
 	 * changed.
+	 * <p>
+	 * A {@link MultiResolutionIcon} gives the window the variants best suited
+	 * to the platform's window icons, decoding only those.
 	 * 
 	 * @param applicationIcon
 	 *            the application icon
@@ -353,10 +390,38 @@ public abstract class GUIApplicationImpl<W extends Window> extends
 		Icon old = getApplicationIcon();
 		this.applicationIcon = applicationIcon;
 		// set the upper left icon of frame
-		getApplicationWindow().setIconImage(Utils.iconToImage(applicationIcon));
+		if (applicationIcon instanceof MultiResolutionIcon) {
+			getApplicationWindow().setIconImages(
+					((MultiResolutionIcon) applicationIcon).getWindowImages());
+		} else {
+			getApplicationWindow().setIconImage(
+					Utils.iconToImage(applicationIcon));
+		}
 		firePropertyChange("application.icon", old, applicationIcon);
 	}
 
+	/**
+	 * Shows a {@link FileChooserDialog} parented by the application window and
+	 * blocks until the user chooses a file or cancels the dialog.
+	 * <p>
+	 * The directory is listed and filtered in the background, so the
+	 * application remains responsive even for directories containing hundreds
+	 * of thousands of files.
+	 * 
+	 * @param directory
+	 *            the directory to show first
+	 * @param filter
+	 *            the filter files must be accepted by, or <code>null</code> to
+	 *            list all files
+	 * @return the selected file, or <code>null</code> if the dialog was
+	 *         cancelled
+	 */
+	public File showOpenDialog(File directory, FileFilter filter) {
+		FileChooserDialog chooser = new FileChooserDialog(this);
+		chooser.setFileFilter(filter);
+		return chooser.showOpenDialog(directory);
+	}
+
 	/**
 	 * Starts the GUI application.
 	 * <p>
@@ -0,0 +1,341 @@
+package usr.erichschroeter.applib.csv;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A <code>CsvField</code> is a view of one field of the current record of a
+ * {@link CsvReader}.
+ * <p>
+ * The view refers directly to the reader's buffer and is reused for every
+ * record, so reading a field does not allocate. A field must therefore not be
+ * kept after the reader moves to the next record; call {@link #toString()} to
+ * keep a copy.
+ * <p>
+ * Fields containing only ASCII characters and no escaped quotes are read
+ * directly from the buffer. Otherwise the field is decoded from UTF-8, and
+ * escaped quotes (<code>""</code>) are replaced, into a character array which
+ * is also reused.
+ *
+ * @author Erich Schroeter
+ */
+public final class CsvField implements CharSequence {
+
+	/** Powers of ten which are exactly representable as a double. */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/** The buffer containing the field. */
+	private ByteBuffer buffer;
+	/** The index of the field's first byte, excluding any quote. */
+	private int start;
+	/** The index after the field's last byte, excluding any quote. */
+	private int end;
+	/** Whether the field was quoted. */
+	private boolean quoted;
+	/** Whether the field must be decoded to be read as characters. */
+	private boolean encoded;
+	/** The decoded characters, if the field is encoded. */
+	private char[] chars;
+	/** The number of decoded characters, or -1 if not decoded yet. */
+	private int length;
+
+	CsvField() {
+		chars = new char[32];
+	}
+
+	/**
+	 * Points this field at a new region of <code>buffer</code>.
+	 *
+	 * @param buffer
+	 *            the buffer containing the field
+	 * @param start
+	 *            the index of the first byte
+	 * @param end
+	 *            the index after the last byte
+	 * @param quoted
+	 *            whether the field was quoted
+	 * @param encoded
+	 *            whether the field contains non-ASCII bytes or escaped quotes
+	 */
+	void set(ByteBuffer buffer, int start, int end, boolean quoted,
+			boolean encoded) {
+		this.buffer = buffer;
+		this.start = start;
+		this.end = end;
+		this.quoted = quoted;
+		this.encoded = encoded;
+		this.length = encoded ? -1 : end - start;
+	}
+
+	/**
+	 * Returns whether the field was enclosed in quotes.
+	 *
+	 * @return <code>true</code> if quoted, else <code>false</code>
+	 */
+	public boolean isQuoted() {
+		return quoted;
+	}
+
+	/**
+	 * Returns whether the field contains no characters.
+	 *
+	 * @return <code>true</code> if empty, else <code>false</code>
+	 */
+	public boolean isEmpty() {
+		return start == end;
+	}
+
+	@Override
+	public int length() {
+		if (length == -1) {
+			decode();
+		}
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length()) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		if (encoded) {
+			return chars[index];
+		}
+		return (char) buffer.get(start + index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return toString().substring(start, end);
+	}
+
+	/**
+	 * Returns whether this field contains the same characters as
+	 * <code>s</code>. Unlike <code>toString().contentEquals(s)</code> this
+	 * does not allocate.
+	 *
+	 * @param s
+	 *            the characters to compare with
+	 * @return <code>true</code> if the characters are equal, else
+	 *         <code>false</code>
+	 */
+	public boolean contentEquals(CharSequence s) {
+		int n = length();
+		if (n != s.length()) {
+			return false;
+		}
+		for (int i = 0; i < n; i++) {
+			if (charAt(i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the field as a decimal <code>int</code>.
+	 *
+	 * @return the field's value
+	 * @throws NumberFormatException
+	 *             if the field is not a valid <code>int</code>
+	 */
+	public int getInt() {
+		long value = getLong();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("For input string: \"" + this
+					+ "\"");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parses the field as a decimal <code>long</code>.
+	 *
+	 * @return the field's value
+	 * @throws NumberFormatException
+	 *             if the field is not a valid <code>long</code>
+	 */
+	public long getLong() {
+		if (encoded) {
+			return Long.parseLong(toString());
+		}
+		int i = start;
+		boolean negative = false;
+		if (i < end) {
+			byte b = buffer.get(i);
+			if (b == '-' || b == '+') {
+				negative = b == '-';
+				i++;
+			}
+		}
+		if (i == end) {
+			throw new NumberFormatException("For input string: \"" + this
+					+ "\"");
+		}
+		// accumulate negatively so Long.MIN_VALUE can be parsed
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9 || value < limit / 10
+					|| value * 10 < limit + digit) {
+				throw new NumberFormatException("For input string: \"" + this
+						+ "\"");
+			}
+			value = value * 10 - digit;
+		}
+		return negative ? value : -value;
+	}
+
+	/**
+	 * Parses the field as a <code>double</code>.
+	 * <p>
+	 * Plain decimal numbers with up to 15 significant digits, such as
+	 * <code>-12.345</code> or <code>6.02e2</code>, are parsed directly from
+	 * the buffer. Anything else is parsed by
+	 * {@link Double#parseDouble(String)}.
+	 *
+	 * @return the field's value
+	 * @throws NumberFormatException
+	 *             if the field is not a valid <code>double</code>
+	 */
+	public double getDouble() {
+		if (!encoded) {
+			int i = start;
+			boolean negative = false;
+			if (i < end) {
+				byte b = buffer.get(i);
+				if (b == '-' || b == '+') {
+					negative = b == '-';
+					i++;
+				}
+			}
+			long mantissa = 0;
+			int digits = 0;
+			int scale = 0;
+			boolean point = false;
+			boolean valid = false;
+			for (; i < end; i++) {
+				byte b = buffer.get(i);
+				if (b >= '0' && b <= '9') {
+					valid = true;
+					if (mantissa != 0 || b != '0') {
+						digits++;
+					}
+					mantissa = mantissa * 10 + (b - '0');
+					if (point) {
+						scale--;
+					}
+				} else if (b == '.' && !point) {
+					point = true;
+				} else {
+					break;
+				}
+			}
+			if (i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+				i++;
+				boolean negativeExponent = false;
+				if (i < end
+						&& (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+					negativeExponent = buffer.get(i) == '-';
+					i++;
+				}
+				int exponent = 0;
+				valid &= i < end;
+				for (; i < end && exponent < 1000; i++) {
+					int digit = buffer.get(i) - '0';
+					if (digit < 0 || digit > 9) {
+						break;
+					}
+					exponent = exponent * 10 + digit;
+				}
+				scale += negativeExponent ? -exponent : exponent;
+			}
+			if (valid && i == end && digits <= 15) {
+				double value = mantissa;
+				if (scale >= 0 && scale < POWERS_OF_TEN.length) {
+					value *= POWERS_OF_TEN[scale];
+					return negative ? -value : value;
+				} else if (scale < 0 && -scale < POWERS_OF_TEN.length) {
+					value /= POWERS_OF_TEN[-scale];
+					return negative ? -value : value;
+				}
+			}
+		}
+		return Double.parseDouble(toString());
+	}
+
+	/**
+	 * Returns a copy of the field's characters.
+	 *
+	 * @return the field as a string
+	 */
+	@Override
+	public String toString() {
+		int n = length();
+		if (encoded) {
+			return new String(chars, 0, n);
+		}
+		char[] copy = new char[n];
+		for (int i = 0; i < n; i++) {
+			copy[i] = (char) buffer.get(start + i);
+		}
+		return new String(copy);
+	}
+
+	/**
+	 * Decodes the field from UTF-8 into {@link #chars}, replacing escaped
+	 * quotes. Malformed sequences are replaced with <code>U+FFFD</code>.
+	 */
+	private void decode() {
+		if (chars.length < end - start) {
+			chars = new char[Math.max(end - start, chars.length * 2)];
+		}
+		int n = 0;
+		int i = start;
+		while (i < end) {
+			int b = buffer.get(i++);
+			if (b >= 0) {
+				chars[n++] = (char) b;
+				if (b == '"' && quoted && i < end && buffer.get(i) == '"') {
+					i++; // skip the second quote of an escaped quote
+				}
+				continue;
+			}
+			int remaining;
+			int cp;
+			if ((b & 0xe0) == 0xc0) {
+				remaining = 1;
+				cp = b & 0x1f;
+			} else if ((b & 0xf0) == 0xe0) {
+				remaining = 2;
+				cp = b & 0x0f;
+			} else if ((b & 0xf8) == 0xf0) {
+				remaining = 3;
+				cp = b & 0x07;
+			} else {
+				chars[n++] = '\uFFFD';
+				continue;
+			}
+			for (; remaining > 0 && i < end; remaining--) {
+				int c = buffer.get(i);
+				if ((c & 0xc0) != 0x80) {
+					break;
+				}
+				cp = (cp << 6) | (c & 0x3f);
+				i++;
+			}
+			if (remaining > 0) {
+				chars[n++] = '\uFFFD';
+			} else if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				chars[n++] = Character.highSurrogate(cp);
+				chars[n++] = Character.lowSurrogate(cp);
+			} else {
+				chars[n++] = (char) cp;
+			}
+		}
+		length = n;
+	}
+
+}
@@ -0,0 +1,41 @@
+package usr.erichschroeter.applib.csv;
+
+import java.io.IOException;
+
+/**
+ * A <code>CsvFormatException</code> is thrown when CSV data does not follow
+ * the format described by <a href="http://tools.ietf.org/html/rfc4180">RFC
+ * 4180</a>, such as a quoted field which is never closed.
+ * 
+ * @author Erich Schroeter
+ */
+@SuppressWarnings("serial")
+public class CsvFormatException extends IOException {
+
+	/** The offset in bytes at which the malformed data was found. */
+	private long offset;
+
+	/**
+	 * Constructs a <code>CsvFormatException</code> specifying the reason and
+	 * where the malformed data was found.
+	 * 
+	 * @param msg
+	 *            the reason the data is malformed
+	 * @param offset
+	 *            the offset in bytes at which the malformed data was found
+	 */
+	public CsvFormatException(String msg, long offset) {
+		super(msg + " at offset " + offset);
+		this.offset = offset;
+	}
+
+	/**
+	 * Returns the offset in bytes at which the malformed data was found.
+	 * 
+	 * @return the offset of the malformed data
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+}
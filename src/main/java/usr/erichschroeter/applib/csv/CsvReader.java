@@ -0,0 +1,475 @@
+package usr.erichschroeter.applib.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import usr.erichschroeter.applib.io.Compression;
+
+/**
+ * A <code>CsvReader</code> reads records of <em>Comma Separated Values</em>,
+ * as described by <a href="http://tools.ietf.org/html/rfc4180">RFC 4180</a>,
+ * directly from a memory mapped file.
+ * <p>
+ * The reader does not copy the file's content into strings. Instead, each
+ * call to {@link #next()} records where the fields of the next record are in
+ * the mapped buffer, and {@link #getField(int)} returns a reusable
+ * {@link CsvField} view of a field. The fields may be read as a
+ * <code>CharSequence</code> or parsed directly into primitives.
+ *
+ * <pre>
+ * CsvReader reader = CsvReader.open(file);
+ * try {
+ * 	while (reader.next()) {
+ * 		long id = reader.getField(0).getLong();
+ * 		double price = reader.getField(2).getDouble();
+ * 	}
+ * } finally {
+ * 	reader.close();
+ * }
+ * </pre>
+ * <p>
+ * The following are supported
+ * <ul>
+ * <li>records separated by <code>CRLF</code> or <code>LF</code></li>
+ * <li>quoted fields containing delimiters, line breaks and escaped quotes
+ * (<code>""</code>)</li>
+ * <li>UTF-8 content</li>
+ * <li>files larger than 2GB, which are mapped in windows</li>
+ * <li>streams, such as compressed files, which are read into a buffer</li>
+ * </ul>
+ * <p>
+ * A <code>CsvReader</code> is not thread safe.
+ *
+ * @author Erich Schroeter
+ */
+public class CsvReader implements Closeable {
+
+	/** The default number of bytes mapped at a time. */
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+	/** The default number of bytes read from a stream at a time. */
+	public static final int DEFAULT_STREAM_BUFFER_SIZE = 1 << 20;
+
+	/** The channel being read, or <code>null</code> if reading a buffer. */
+	private FileChannel channel;
+	/** The stream being read, or <code>null</code> if not reading a stream. */
+	private InputStream in;
+	/** The number of bytes of the channel mapped at a time. */
+	private int windowSize;
+	/** The position in the channel after the last byte to read. */
+	private long end;
+	/** The buffer being parsed. */
+	private ByteBuffer buffer;
+	/** The position in the channel of the buffer's first byte. */
+	private long bufferOffset;
+	/** The index in the buffer of the next record. */
+	private int position;
+	/** The field delimiter. */
+	private byte delimiter;
+	/** The number of records read. */
+	private long recordNumber;
+	/** The position in the channel of the current record. */
+	private long recordOffset;
+	/** The number of fields in the current record. */
+	private int fieldCount;
+	/** The reusable field views. */
+	private CsvField[] fields;
+
+	/**
+	 * Constructs a <code>CsvReader</code> reading the remaining bytes of
+	 * <code>buffer</code>.
+	 *
+	 * @param buffer
+	 *            the buffer containing CSV data
+	 */
+	public CsvReader(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.position = buffer.position();
+		this.end = buffer.limit();
+		this.bufferOffset = 0;
+		this.delimiter = ',';
+		this.fields = new CsvField[0];
+	}
+
+	/**
+	 * Constructs a <code>CsvReader</code> reading the region of the
+	 * <code>channel</code> from <code>start</code> to <code>end</code>. The
+	 * region must begin at the start of a record and end after the last byte
+	 * of a record. The channel is not closed by {@link #close()}.
+	 *
+	 * @param channel
+	 *            the channel to map
+	 * @param start
+	 *            the position of the first record
+	 * @param end
+	 *            the position after the last byte of the last record
+	 * @throws IOException
+	 *             if an I/O error occurs mapping the channel
+	 */
+	public CsvReader(FileChannel channel, long start, long end)
+			throws IOException {
+		this(channel, start, end, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Constructs a <code>CsvReader</code> specifying the number of bytes
+	 * mapped at a time. Each record must fit within one window.
+	 */
+	CsvReader(FileChannel channel, long start, long end, int windowSize)
+			throws IOException {
+		this.channel = channel;
+		this.windowSize = windowSize;
+		this.end = end;
+		this.delimiter = ',';
+		this.fields = new CsvField[0];
+		map(start);
+	}
+
+	/**
+	 * Constructs a <code>CsvReader</code> reading <code>in</code> into a
+	 * buffer, which grows to hold the largest record. The stream is not closed
+	 * by {@link #close()}.
+	 *
+	 * @param in
+	 *            the stream of CSV data
+	 */
+	public CsvReader(InputStream in) {
+		this.in = in;
+		this.buffer = ByteBuffer.allocate(DEFAULT_STREAM_BUFFER_SIZE);
+		this.buffer.limit(0);
+		this.end = Long.MAX_VALUE;
+		this.delimiter = ',';
+		this.fields = new CsvField[0];
+	}
+
+	/**
+	 * Opens a <code>CsvReader</code> reading all of <code>file</code>. A
+	 * compressed file (see {@link Compression}) is decompressed as it is read,
+	 * otherwise the file is memory mapped.
+	 *
+	 * @param file
+	 *            the CSV file to read
+	 * @return the reader, which must be closed
+	 * @throws IOException
+	 *             if an I/O error occurs opening the file
+	 */
+	public static CsvReader open(File file) throws IOException {
+		if (Compression.isCompressed(file)) {
+			final InputStream stream = Compression.open(file);
+			return new CsvReader(stream) {
+
+				@Override
+				public void close() throws IOException {
+					super.close();
+					stream.close();
+				}
+			};
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			return new CsvReader(channel, 0, channel.size()) {
+
+				@Override
+				public void close() throws IOException {
+					super.close();
+					channel.close();
+				}
+			};
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the field delimiter.
+	 *
+	 * @return the delimiter
+	 */
+	public char getDelimiter() {
+		return (char) delimiter;
+	}
+
+	/**
+	 * Sets the field delimiter, which must be an ASCII character other than a
+	 * quote or line break. The default is <code>','</code>.
+	 *
+	 * @param delimiter
+	 *            the delimiter
+	 */
+	public void setDelimiter(char delimiter) {
+		if (delimiter > 127 || delimiter == '"' || delimiter == '\r'
+				|| delimiter == '\n') {
+			throw new IllegalArgumentException("invalid delimiter: "
+					+ delimiter);
+		}
+		this.delimiter = (byte) delimiter;
+	}
+
+	/**
+	 * Reads the next record.
+	 *
+	 * @return <code>true</code> if a record was read, <code>false</code> if
+	 *         there are no more records
+	 * @throws CsvFormatException
+	 *             if the record is malformed
+	 * @throws IOException
+	 *             if an I/O error occurs mapping the file
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			int result = parse();
+			if (result >= 0) {
+				if (result == 0) {
+					return false;
+				}
+				recordNumber++;
+				return true;
+			}
+			// the record continues past the mapped window
+			long start = bufferOffset + position;
+			if (bufferOffset + buffer.limit() >= end) {
+				throw new CsvFormatException("unterminated quoted field",
+						start);
+			}
+			if (in != null) {
+				fill();
+				continue;
+			}
+			if (position == 0) {
+				throw new CsvFormatException("record larger than "
+						+ windowSize + " bytes", start);
+			}
+			map(start);
+		}
+	}
+
+	/**
+	 * Returns the number of fields in the current record.
+	 *
+	 * @return the number of fields
+	 */
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	/**
+	 * Returns a view of the field at <code>index</code> in the current record.
+	 * The returned object is reused for the same index of every record.
+	 *
+	 * @param index
+	 *            the index of the field
+	 * @return the field
+	 * @throws IndexOutOfBoundsException
+	 *             if <code>index</code> is not less than
+	 *             {@link #getFieldCount()}
+	 */
+	public CsvField getField(int index) {
+		if (index < 0 || index >= fieldCount) {
+			throw new IndexOutOfBoundsException("field " + index + " of "
+					+ fieldCount);
+		}
+		return fields[index];
+	}
+
+	/**
+	 * Returns the number of records read so far, which is the one based
+	 * number of the current record.
+	 *
+	 * @return the number of records read
+	 */
+	public long getRecordNumber() {
+		return recordNumber;
+	}
+
+	/**
+	 * Returns the position in bytes of the current record.
+	 *
+	 * @return the offset of the current record
+	 */
+	public long getRecordOffset() {
+		return recordOffset;
+	}
+
+	/**
+	 * Releases the reader's reference to the mapped buffer. A file opened by
+	 * {@link #open(File)} is also closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		buffer = null;
+		fieldCount = 0;
+	}
+
+	/**
+	 * Maps the window of the channel beginning at <code>start</code>.
+	 */
+	private void map(long start) throws IOException {
+		long size = Math.min(windowSize, end - start);
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+		bufferOffset = start;
+		position = 0;
+	}
+
+	/**
+	 * Moves the unparsed bytes to the start of the buffer and reads more from
+	 * the stream, growing the buffer if it is full. The end of the data is set
+	 * when the stream ends.
+	 */
+	private void fill() throws IOException {
+		int remaining = buffer.limit() - position;
+		byte[] array = buffer.array();
+		if (remaining == array.length) {
+			array = Arrays.copyOf(array, array.length * 2);
+		} else {
+			System.arraycopy(array, position, array, 0, remaining);
+		}
+		bufferOffset += position;
+		position = 0;
+		int limit = remaining;
+		while (limit < array.length) {
+			int n = in.read(array, limit, array.length - limit);
+			if (n < 0) {
+				end = bufferOffset + limit;
+				break;
+			}
+			limit += n;
+		}
+		if (array != buffer.array()) {
+			buffer = ByteBuffer.wrap(array);
+		}
+		buffer.limit(limit);
+	}
+
+	/**
+	 * Parses the record at {@link #position}.
+	 *
+	 * @return 1 if a record was parsed, 0 if there are no more records, or -1
+	 *         if the record continues past the end of the buffer
+	 */
+	private int parse() throws CsvFormatException {
+		final ByteBuffer buf = buffer;
+		final int limit = buf.limit();
+		// whether the end of the buffer is the end of the data
+		final boolean last = bufferOffset + limit >= end;
+		final byte delim = delimiter;
+		int p = position;
+		if (p >= limit) {
+			fieldCount = 0;
+			return last ? 0 : -1;
+		}
+		int count = 0;
+		while (true) {
+			int start;
+			int stop;
+			boolean quoted = false;
+			boolean encoded = false;
+			byte b = 0;
+			if (buf.get(p) == '"') {
+				quoted = true;
+				start = ++p;
+				while (true) {
+					if (p >= limit) {
+						return -1;
+					}
+					b = buf.get(p);
+					if (b == '"') {
+						if (p + 1 >= limit && !last) {
+							return -1;
+						}
+						if (p + 1 < limit && buf.get(p + 1) == '"') {
+							encoded = true;
+							p += 2;
+							continue;
+						}
+						stop = p++;
+						break;
+					}
+					encoded |= b < 0;
+					p++;
+				}
+				if (p < limit) {
+					b = buf.get(p);
+					if (b != delim && b != '\n' && b != '\r') {
+						throw new CsvFormatException(
+								"unexpected character after quoted field",
+								bufferOffset + p);
+					}
+				}
+			} else {
+				start = p;
+				while (p < limit) {
+					b = buf.get(p);
+					if (b == delim || b == '\n' || b == '\r') {
+						break;
+					}
+					encoded |= b < 0;
+					p++;
+				}
+				stop = p;
+			}
+			if (count == fields.length) {
+				grow();
+			}
+			fields[count++].set(buf, start, stop, quoted, encoded);
+
+			if (p >= limit) {
+				if (!last) {
+					return -1;
+				}
+				break;
+			}
+			if (b == delim) {
+				p++;
+				if (p >= limit) {
+					if (!last) {
+						return -1;
+					}
+					// a trailing delimiter ends with an empty field
+					if (count == fields.length) {
+						grow();
+					}
+					fields[count++].set(buf, p, p, false, false);
+					break;
+				}
+				continue;
+			}
+			// the end of the record
+			if (b == '\r') {
+				p++;
+				if (p >= limit && !last) {
+					return -1;
+				}
+				if (p < limit && buf.get(p) == '\n') {
+					p++;
+				}
+			} else {
+				p++;
+			}
+			break;
+		}
+		recordOffset = bufferOffset + position;
+		position = p;
+		fieldCount = count;
+		return 1;
+	}
+
+	/**
+	 * Adds another reusable field view.
+	 */
+	private void grow() {
+		int n = fields.length;
+		fields = Arrays.copyOf(fields, Math.max(8, n * 2));
+		for (int i = n; i < fields.length; i++) {
+			fields[i] = new CsvField();
+		}
+	}
+
+}
@@ -0,0 +1,691 @@
+package usr.erichschroeter.applib.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A <code>CsvTable</code> is a read only, column oriented view of a CSV file
+ * backed by a memory mapped binary <em>sidecar</em> file.
+ * <p>
+ * Parsing a large CSV file every time an application starts is slow. Instead,
+ * {@link #open(File, boolean)} parses the CSV file once and writes its
+ * columns to a sidecar file named after the CSV file with a
+ * {@value #EXTENSION} extension appended (e.g. <code>data.csv.cols</code>).
+ * Later calls map the sidecar file, which takes milliseconds regardless of
+ * the file's size, as long as the sidecar file is newer than the CSV file and
+ * was built from a CSV file of the same size and modification time. Otherwise
+ * the sidecar file is rebuilt.
+ * <p>
+ * The type of each column is inferred when the sidecar file is built
+ * <ul>
+ * <li>{@link ColumnType#LONG} if every value is an integer</li>
+ * <li>{@link ColumnType#DOUBLE} if every value is a number or empty (which is
+ * stored as <code>NaN</code>)</li>
+ * <li>{@link ColumnType#STRING} otherwise, which is dictionary encoded so each
+ * distinct value is stored once and each row stores an <code>int</code>
+ * code</li>
+ * </ul>
+ * <p>
+ * Each column is mapped separately, so a single column may not exceed 2GB.
+ *
+ * @author Erich Schroeter
+ */
+public class CsvTable implements Closeable {
+
+	/** The extension appended to a CSV file's name for its sidecar file. */
+	public static final String EXTENSION = ".cols";
+
+	/** Identifies a sidecar file. */
+	private static final int MAGIC = 0x4c4f4341;
+	/** The version of the sidecar file format. */
+	private static final int VERSION = 1;
+	/** The encoding of strings in the sidecar file. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The <code>ColumnType enum</code> provides the types a column's values
+	 * may be stored as.
+	 */
+	public enum ColumnType {
+		/** Values stored as <code>long</code>s. */
+		LONG,
+		/** Values stored as <code>double</code>s. */
+		DOUBLE,
+		/** Values stored as codes into a dictionary of strings. */
+		STRING
+	}
+
+	/** The number of rows. */
+	private final int rows;
+	/** The column names. */
+	private final String[] names;
+	/** The column types. */
+	private final ColumnType[] types;
+	/** The values of <code>LONG</code> columns. */
+	private final LongBuffer[] longs;
+	/** The values of <code>DOUBLE</code> columns. */
+	private final DoubleBuffer[] doubles;
+	/** The codes of <code>STRING</code> columns. */
+	private final IntBuffer[] codes;
+	/** The dictionaries of <code>STRING</code> columns. */
+	private final Dictionary[] dictionaries;
+
+	private CsvTable(int rows, String[] names, ColumnType[] types) {
+		this.rows = rows;
+		this.names = names;
+		this.types = types;
+		this.longs = new LongBuffer[names.length];
+		this.doubles = new DoubleBuffer[names.length];
+		this.codes = new IntBuffer[names.length];
+		this.dictionaries = new Dictionary[names.length];
+	}
+
+	/**
+	 * Returns the sidecar file used for <code>csv</code>.
+	 *
+	 * @param csv
+	 *            the CSV file
+	 * @return the sidecar file
+	 */
+	public static File getSidecarFile(File csv) {
+		return new File(csv.getPath() + EXTENSION);
+	}
+
+	/**
+	 * Opens the table of <code>csv</code>, building its sidecar file first if
+	 * it does not exist or is out of date.
+	 *
+	 * @param csv
+	 *            the CSV file
+	 * @param header
+	 *            whether the first record contains the column names
+	 * @return the table
+	 * @throws IOException
+	 *             if an I/O error occurs or the CSV file is malformed
+	 */
+	public static CsvTable open(File csv, boolean header) throws IOException {
+		File sidecar = getSidecarFile(csv);
+		if (!isCurrent(csv, sidecar)) {
+			build(csv, sidecar, header);
+		}
+		return map(sidecar);
+	}
+
+	/**
+	 * Returns whether <code>sidecar</code> was built from the current version
+	 * of <code>csv</code>.
+	 *
+	 * @param csv
+	 *            the CSV file
+	 * @param sidecar
+	 *            the sidecar file
+	 * @return <code>true</code> if the sidecar file is up to date, else
+	 *         <code>false</code>
+	 */
+	public static boolean isCurrent(File csv, File sidecar) {
+		if (!sidecar.isFile() || sidecar.lastModified() < csv.lastModified()) {
+			return false;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(sidecar, "r")) {
+			ByteBuffer prefix = read(raf.getChannel(), 0, 28);
+			return prefix.getInt() == MAGIC && prefix.getInt() == VERSION
+					&& prefix.getInt() > 0 && prefix.getLong() == csv.length()
+					&& prefix.getLong() == csv.lastModified();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Parses <code>csv</code> and writes its columns to <code>sidecar</code>.
+	 * The sidecar file is written to a temporary file first and then moved,
+	 * so a partially written sidecar file is never opened.
+	 *
+	 * @param csv
+	 *            the CSV file
+	 * @param sidecar
+	 *            the sidecar file to write
+	 * @param header
+	 *            whether the first record contains the column names
+	 * @throws IOException
+	 *             if an I/O error occurs or the CSV file is malformed
+	 */
+	public static void build(File csv, File sidecar, boolean header)
+			throws IOException {
+		long length = csv.length();
+		long modified = csv.lastModified();
+
+		// first pass: count the rows and infer the column types
+		String[] names = new String[0];
+		boolean[] notLong = new boolean[0];
+		boolean[] notDouble = new boolean[0];
+		long rowCount = 0;
+		try (CsvReader reader = CsvReader.open(csv)) {
+			if (reader.next()) {
+				int columns = reader.getFieldCount();
+				names = new String[columns];
+				notLong = new boolean[columns];
+				notDouble = new boolean[columns];
+				for (int c = 0; c < columns; c++) {
+					names[c] = header ? reader.getField(c).toString()
+							: "column" + c;
+				}
+				if (!header) {
+					infer(reader, notLong, notDouble);
+					rowCount++;
+				}
+			}
+			while (reader.next()) {
+				infer(reader, notLong, notDouble);
+				rowCount++;
+			}
+		}
+		if (rowCount > Integer.MAX_VALUE) {
+			throw new IOException(rowCount + " rows cannot be stored");
+		}
+		int rows = (int) rowCount;
+		ColumnType[] types = new ColumnType[names.length];
+		for (int c = 0; c < types.length; c++) {
+			types[c] = !notLong[c] ? ColumnType.LONG
+					: !notDouble[c] ? ColumnType.DOUBLE : ColumnType.STRING;
+		}
+
+		// the header is followed by the fixed size columns, then dictionaries
+		byte[][] encodedNames = new byte[names.length][];
+		int headerLength = 4 + 4 + 4 + 8 + 8 + 4 + 4;
+		for (int c = 0; c < names.length; c++) {
+			encodedNames[c] = names[c].getBytes(UTF_8);
+			headerLength += 1 + 4 + encodedNames[c].length + 8 + 8;
+		}
+		long[] offsets = new long[names.length];
+		long position = headerLength;
+		for (int c = 0; c < names.length; c++) {
+			offsets[c] = position;
+			position += (long) rows
+					* (types[c] == ColumnType.STRING ? 4 : 8);
+		}
+
+		File temp = new File(sidecar.getPath() + ".tmp");
+		long[] dictionaryOffsets = new long[names.length];
+		try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+			raf.setLength(0);
+			FileChannel out = raf.getChannel();
+
+			// second pass: write the values of each column
+			List<Map<String, Integer>> dictionaries = new ArrayList<Map<String, Integer>>();
+			ByteBuffer[] buffers = new ByteBuffer[names.length];
+			long[] written = offsets.clone();
+			for (int c = 0; c < names.length; c++) {
+				if (types[c] == ColumnType.STRING) {
+					dictionaries.add(new HashMap<String, Integer>());
+				} else {
+					dictionaries.add(null);
+				}
+				buffers[c] = ByteBuffer.allocate(1 << 16).order(
+						ByteOrder.LITTLE_ENDIAN);
+			}
+			try (CsvReader reader = CsvReader.open(csv)) {
+				if (header) {
+					reader.next();
+				}
+				while (reader.next()) {
+					for (int c = 0; c < names.length; c++) {
+						ByteBuffer buffer = buffers[c];
+						if (buffer.remaining() < 8) {
+							written[c] += flush(out, buffer, written[c]);
+						}
+						CsvField field = c < reader.getFieldCount() ? reader
+								.getField(c) : null;
+						switch (types[c]) {
+						case LONG:
+							buffer.putLong(field.getLong());
+							break;
+						case DOUBLE:
+							boolean empty = field == null || field.isEmpty();
+							buffer.putDouble(empty ? Double.NaN : field
+									.getDouble());
+							break;
+						default:
+							String value = field == null ? "" : field
+									.toString();
+							Map<String, Integer> dictionary = dictionaries
+									.get(c);
+							Integer code = dictionary.get(value);
+							if (code == null) {
+								code = dictionary.size();
+								dictionary.put(value, code);
+							}
+							buffer.putInt(code);
+						}
+					}
+				}
+			}
+			for (int c = 0; c < names.length; c++) {
+				flush(out, buffers[c], written[c]);
+			}
+
+			// write each dictionary as its size, byte offsets, then bytes
+			for (int c = 0; c < names.length; c++) {
+				if (types[c] != ColumnType.STRING) {
+					continue;
+				}
+				Map<String, Integer> dictionary = dictionaries.get(c);
+				byte[][] values = new byte[dictionary.size()][];
+				for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+					values[entry.getValue()] = entry.getKey().getBytes(UTF_8);
+				}
+				ByteBuffer index = ByteBuffer.allocate(
+						4 + 4 * (values.length + 1)).order(
+						ByteOrder.LITTLE_ENDIAN);
+				index.putInt(values.length);
+				int total = 0;
+				index.putInt(total);
+				for (byte[] value : values) {
+					total += value.length;
+					index.putInt(total);
+				}
+				dictionaryOffsets[c] = position;
+				position += flush(out, index, position);
+				ByteBuffer buffer = buffers[c];
+				for (byte[] value : values) {
+					if (buffer.remaining() < value.length) {
+						position += flush(out, buffer, position);
+					}
+					if (buffer.remaining() < value.length) {
+						buffer = ByteBuffer.allocate(value.length);
+					}
+					buffer.put(value);
+				}
+				position += flush(out, buffer, position);
+			}
+
+			ByteBuffer head = ByteBuffer.allocate(headerLength).order(
+					ByteOrder.LITTLE_ENDIAN);
+			head.putInt(MAGIC).putInt(VERSION).putInt(headerLength);
+			head.putLong(length).putLong(modified);
+			head.putInt(rows).putInt(names.length);
+			for (int c = 0; c < names.length; c++) {
+				head.put((byte) types[c].ordinal());
+				head.putInt(encodedNames[c].length).put(encodedNames[c]);
+				head.putLong(offsets[c]).putLong(dictionaryOffsets[c]);
+			}
+			flush(out, head, 0);
+		}
+		try {
+			Files.move(temp.toPath(), sidecar.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), sidecar.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Maps a sidecar file.
+	 *
+	 * @param sidecar
+	 *            the sidecar file
+	 * @return the table
+	 * @throws IOException
+	 *             if an I/O error occurs or the file is not a sidecar file
+	 */
+	public static CsvTable map(File sidecar) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(sidecar, "r")) {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer prefix = read(channel, 0, 12);
+			if (prefix.getInt() != MAGIC || prefix.getInt() != VERSION) {
+				throw new IOException(sidecar + " is not a sidecar file");
+			}
+			ByteBuffer head = read(channel, 0, prefix.getInt());
+			head.position(28);
+			int rows = head.getInt();
+			int columns = head.getInt();
+			String[] names = new String[columns];
+			ColumnType[] types = new ColumnType[columns];
+			long[] offsets = new long[columns];
+			long[] dictionaryOffsets = new long[columns];
+			for (int c = 0; c < columns; c++) {
+				types[c] = ColumnType.values()[head.get()];
+				byte[] name = new byte[head.getInt()];
+				head.get(name);
+				names[c] = new String(name, UTF_8);
+				offsets[c] = head.getLong();
+				dictionaryOffsets[c] = head.getLong();
+			}
+			CsvTable table = new CsvTable(rows, names, types);
+			for (int c = 0; c < columns; c++) {
+				switch (types[c]) {
+				case LONG:
+					table.longs[c] = map(channel, offsets[c], rows * 8L)
+							.asLongBuffer();
+					break;
+				case DOUBLE:
+					table.doubles[c] = map(channel, offsets[c], rows * 8L)
+							.asDoubleBuffer();
+					break;
+				default:
+					table.codes[c] = map(channel, offsets[c], rows * 4L)
+							.asIntBuffer();
+					int size = map(channel, dictionaryOffsets[c], 4).getInt();
+					IntBuffer index = map(channel, dictionaryOffsets[c] + 4,
+							4L * (size + 1)).asIntBuffer();
+					ByteBuffer bytes = map(channel, dictionaryOffsets[c] + 4
+							+ 4L * (size + 1), index.get(size));
+					table.dictionaries[c] = new Dictionary(size, index, bytes);
+				}
+			}
+			// the mappings remain valid after the channel is closed
+			return table;
+		}
+	}
+
+	/**
+	 * Returns the number of rows, excluding any header.
+	 *
+	 * @return the number of rows
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Returns the number of columns.
+	 *
+	 * @return the number of columns
+	 */
+	public int getColumnCount() {
+		return names.length;
+	}
+
+	/**
+	 * Returns the name of the column, which is either its header or
+	 * <code>"column"</code> followed by its index.
+	 *
+	 * @param column
+	 *            the column index
+	 * @return the column name
+	 */
+	public String getColumnName(int column) {
+		return names[column];
+	}
+
+	/**
+	 * Returns the index of the column named <code>name</code>.
+	 *
+	 * @param name
+	 *            the column name
+	 * @return the column index, or <code>-1</code> if no column is named
+	 *         <code>name</code>
+	 */
+	public int getColumnIndex(String name) {
+		for (int c = 0; c < names.length; c++) {
+			if (names[c].equals(name)) {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the type the column's values are stored as.
+	 *
+	 * @param column
+	 *            the column index
+	 * @return the column type
+	 */
+	public ColumnType getColumnType(int column) {
+		return types[column];
+	}
+
+	/**
+	 * Returns the value of a <code>LONG</code> column.
+	 *
+	 * @param column
+	 *            the column index
+	 * @param row
+	 *            the row index
+	 * @return the value
+	 */
+	public long getLong(int column, int row) {
+		return longs(column).get(row);
+	}
+
+	/**
+	 * Returns the value of a <code>LONG</code> or <code>DOUBLE</code> column
+	 * as a <code>double</code>.
+	 *
+	 * @param column
+	 *            the column index
+	 * @param row
+	 *            the row index
+	 * @return the value
+	 */
+	public double getDouble(int column, int row) {
+		if (types[column] == ColumnType.LONG) {
+			return longs[column].get(row);
+		}
+		if (types[column] != ColumnType.DOUBLE) {
+			throw new IllegalArgumentException("column " + column + " is "
+					+ types[column]);
+		}
+		return doubles[column].get(row);
+	}
+
+	/**
+	 * Returns the dictionary code of a <code>STRING</code> column's value. Two
+	 * rows have equal values exactly when they have equal codes.
+	 *
+	 * @param column
+	 *            the column index
+	 * @param row
+	 *            the row index
+	 * @return the code of the value
+	 */
+	public int getCode(int column, int row) {
+		return codes(column).get(row);
+	}
+
+	/**
+	 * Returns the number of distinct values in a <code>STRING</code> column.
+	 *
+	 * @param column
+	 *            the column index
+	 * @return the dictionary size
+	 */
+	public int getDictionarySize(int column) {
+		codes(column);
+		return dictionaries[column].size;
+	}
+
+	/**
+	 * Returns the value of the dictionary <code>code</code> of a
+	 * <code>STRING</code> column. Each value is decoded once and cached.
+	 *
+	 * @param column
+	 *            the column index
+	 * @param code
+	 *            the dictionary code
+	 * @return the value
+	 */
+	public String getDictionaryValue(int column, int code) {
+		codes(column);
+		return dictionaries[column].get(code);
+	}
+
+	/**
+	 * Returns the value of any column as a string.
+	 *
+	 * @param column
+	 *            the column index
+	 * @param row
+	 *            the row index
+	 * @return the value
+	 */
+	public String getString(int column, int row) {
+		switch (types[column]) {
+		case LONG:
+			return String.valueOf(longs[column].get(row));
+		case DOUBLE:
+			double value = doubles[column].get(row);
+			return Double.isNaN(value) ? "" : String.valueOf(value);
+		default:
+			return dictionaries[column].get(codes[column].get(row));
+		}
+	}
+
+	/**
+	 * Releases the table's references to the mapped sidecar file.
+	 */
+	@Override
+	public void close() {
+		for (int c = 0; c < names.length; c++) {
+			longs[c] = null;
+			doubles[c] = null;
+			codes[c] = null;
+			dictionaries[c] = null;
+		}
+	}
+
+	private LongBuffer longs(int column) {
+		if (types[column] != ColumnType.LONG) {
+			throw new IllegalArgumentException("column " + column + " is "
+					+ types[column]);
+		}
+		return longs[column];
+	}
+
+	private IntBuffer codes(int column) {
+		if (types[column] != ColumnType.STRING) {
+			throw new IllegalArgumentException("column " + column + " is "
+					+ types[column]);
+		}
+		return codes[column];
+	}
+
+	/**
+	 * Records whether the current field of <code>column</code> cannot be
+	 * stored as a <code>long</code> or <code>double</code>. Each column stops
+	 * being checked once it is known to contain strings.
+	 */
+	private static void infer(CsvReader reader, boolean[] notLong,
+			boolean[] notDouble) {
+		for (int c = 0; c < notLong.length; c++) {
+			if (notDouble[c]) {
+				continue;
+			}
+			if (c >= reader.getFieldCount()) {
+				notLong[c] = true;
+				continue;
+			}
+			CsvField field = reader.getField(c);
+			if (field.isEmpty()) {
+				notLong[c] = true;
+				continue;
+			}
+			if (!notLong[c]) {
+				try {
+					field.getLong();
+					continue;
+				} catch (NumberFormatException e) {
+					notLong[c] = true;
+				}
+			}
+			try {
+				field.getDouble();
+			} catch (NumberFormatException e) {
+				notDouble[c] = true;
+			}
+		}
+	}
+
+	/**
+	 * Writes the <code>buffer</code> to <code>out</code> at
+	 * <code>position</code> and clears it.
+	 *
+	 * @return the number of bytes written
+	 */
+	private static int flush(FileChannel out, ByteBuffer buffer, long position)
+			throws IOException {
+		buffer.flip();
+		int written = 0;
+		while (buffer.hasRemaining()) {
+			written += out.write(buffer, position + written);
+		}
+		buffer.clear();
+		return written;
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position,
+			int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(
+				ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("unexpected end of file");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position,
+			long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("column of " + length
+					+ " bytes is too large to map");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+				.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * The mapped dictionary of a <code>STRING</code> column.
+	 */
+	private static class Dictionary {
+
+		private final int size;
+		private final IntBuffer index;
+		private final ByteBuffer bytes;
+		private final String[] values;
+
+		Dictionary(int size, IntBuffer index, ByteBuffer bytes) {
+			this.size = size;
+			this.index = index;
+			this.bytes = bytes;
+			this.values = new String[size];
+		}
+
+		String get(int code) {
+			String value = values[code];
+			if (value == null) {
+				int start = index.get(code);
+				byte[] encoded = new byte[index.get(code + 1) - start];
+				ByteBuffer slice = bytes.duplicate();
+				slice.position(start);
+				slice.get(encoded);
+				value = new String(encoded, UTF_8);
+				values[code] = value;
+			}
+			return value;
+		}
+
+	}
+
+}
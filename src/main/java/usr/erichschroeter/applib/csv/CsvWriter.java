@@ -0,0 +1,568 @@
+package usr.erichschroeter.applib.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+import usr.erichschroeter.applib.io.GzipMembers;
+
+/**
+ * A <code>CsvWriter</code> writes records of <em>Comma Separated Values</em>,
+ * as described by <a href="http://tools.ietf.org/html/rfc4180">RFC 4180</a>,
+ * to a <code>FileChannel</code>.
+ * <p>
+ * Fields are encoded directly into a reusable block of bytes, which is written
+ * to the channel when full. Strings are encoded as UTF-8 and quoted only if
+ * they contain a delimiter, quote or line break. Numbers are formatted without
+ * creating strings, except for <code>double</code> values which need more than
+ * 15 significant digits.
+ *
+ * <pre>
+ * CsvWriter writer = CsvWriter.open(file);
+ * try {
+ * 	writer.writeField(&quot;id&quot;).writeField(&quot;price&quot;).endRecord();
+ * 	for (Item item : items) {
+ * 		writer.writeField(item.getId()).writeField(item.getPrice()).endRecord();
+ * 	}
+ * } finally {
+ * 	writer.close();
+ * }
+ * </pre>
+ * <p>
+ * Everything written can be read back by a {@link CsvReader}, which returns
+ * the same strings and numbers.
+ * <p>
+ * The output may optionally be compressed with gzip by
+ * {@link #openCompressed(File, int)}. Each block is then compressed on a
+ * thread pool as a separate gzip member, which standard gzip tools and
+ * <code>GZIPInputStream</code> read as a single stream. The members record
+ * their length (see {@link GzipMembers}), so they can also be decompressed in
+ * parallel, and {@link CsvReader#open(File)} reads the file directly.
+ * <p>
+ * A <code>CsvWriter</code> is not thread safe.
+ *
+ * @author Erich Schroeter
+ */
+public class CsvWriter implements Closeable, Flushable {
+
+	/** The default number of bytes written to the channel at a time. */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	/** Powers of ten which are exactly representable as a double. */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/** The channel being written. */
+	private final FileChannel channel;
+	/** The pool compressing blocks, or <code>null</code> if not compressing. */
+	private final ExecutorService compressor;
+	/** The blocks being compressed, in the order they must be written. */
+	private final Deque<Future<ByteBuffer>> pending;
+	/** The maximum number of blocks being compressed at a time. */
+	private final int maxPending;
+	/** The block being filled. */
+	private byte[] block;
+	/** The number of bytes in the block. */
+	private int count;
+	/** The digits of a number being formatted. */
+	private final byte[] digits;
+	/** The field delimiter. */
+	private byte delimiter;
+	/** The record separator. */
+	private byte[] lineSeparator;
+	/** Whether a field has been written in the current record. */
+	private boolean inRecord;
+
+	/**
+	 * Constructs a <code>CsvWriter</code> writing to <code>channel</code>
+	 * from its current position. The channel is not closed by
+	 * {@link #close()}.
+	 *
+	 * @param channel
+	 *            the channel to write
+	 */
+	public CsvWriter(FileChannel channel) {
+		this(channel, DEFAULT_BLOCK_SIZE, 0);
+	}
+
+	/**
+	 * Constructs a <code>CsvWriter</code> specifying the block size and the
+	 * number of threads compressing blocks, or <code>0</code> to not compress.
+	 *
+	 * @param channel
+	 *            the channel to write
+	 * @param blockSize
+	 *            the number of bytes written at a time
+	 * @param compressors
+	 *            the number of threads compressing blocks
+	 */
+	public CsvWriter(FileChannel channel, int blockSize, int compressors) {
+		if (blockSize < 64) {
+			throw new IllegalArgumentException("block size too small: "
+					+ blockSize);
+		}
+		this.channel = channel;
+		this.block = new byte[blockSize];
+		this.digits = new byte[32];
+		this.delimiter = ',';
+		this.lineSeparator = new byte[] { '\r', '\n' };
+		this.pending = new ArrayDeque<Future<ByteBuffer>>();
+		if (compressors > 0) {
+			this.compressor = Executors.newFixedThreadPool(compressors);
+			this.maxPending = compressors * 2;
+		} else {
+			this.compressor = null;
+			this.maxPending = 0;
+		}
+	}
+
+	/**
+	 * Opens a <code>CsvWriter</code> replacing the content of
+	 * <code>file</code>.
+	 *
+	 * @param file
+	 *            the file to write
+	 * @return the writer, which must be closed
+	 * @throws IOException
+	 *             if an I/O error occurs opening the file
+	 */
+	public static CsvWriter open(File file) throws IOException {
+		return open(file, 0);
+	}
+
+	/**
+	 * Opens a <code>CsvWriter</code> replacing the content of
+	 * <code>file</code> with gzip compressed CSV data. The blocks are
+	 * compressed on <code>compressors</code> threads.
+	 *
+	 * @param file
+	 *            the file to write, typically ending with
+	 *            <code>".csv.gz"</code>
+	 * @param compressors
+	 *            the number of threads compressing blocks
+	 * @return the writer, which must be closed
+	 * @throws IOException
+	 *             if an I/O error occurs opening the file
+	 */
+	public static CsvWriter openCompressed(File file, int compressors)
+			throws IOException {
+		if (compressors < 1) {
+			throw new IllegalArgumentException("compressors must be positive");
+		}
+		return open(file, compressors);
+	}
+
+	private static CsvWriter open(File file, int compressors)
+			throws IOException {
+		final FileOutputStream out = new FileOutputStream(file);
+		return new CsvWriter(out.getChannel(), DEFAULT_BLOCK_SIZE, compressors) {
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					out.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Sets the field delimiter, which must be an ASCII character other than a
+	 * quote or line break. The default is <code>','</code>.
+	 *
+	 * @param delimiter
+	 *            the delimiter
+	 */
+	public void setDelimiter(char delimiter) {
+		if (delimiter > 127 || delimiter == '"' || delimiter == '\r'
+				|| delimiter == '\n') {
+			throw new IllegalArgumentException("invalid delimiter: "
+					+ delimiter);
+		}
+		this.delimiter = (byte) delimiter;
+	}
+
+	/**
+	 * Sets the record separator, which must be <code>"\r\n"</code> (the
+	 * default) or <code>"\n"</code>.
+	 *
+	 * @param lineSeparator
+	 *            the record separator
+	 */
+	public void setLineSeparator(String lineSeparator) {
+		if ("\r\n".equals(lineSeparator)) {
+			this.lineSeparator = new byte[] { '\r', '\n' };
+		} else if ("\n".equals(lineSeparator)) {
+			this.lineSeparator = new byte[] { '\n' };
+		} else {
+			throw new IllegalArgumentException("invalid line separator");
+		}
+	}
+
+	/**
+	 * Writes a string field, quoting it if necessary. A <code>null</code>
+	 * value is written as an empty field.
+	 *
+	 * @param value
+	 *            the field value
+	 * @return this writer
+	 * @throws IOException
+	 *             if an I/O error occurs writing a full block
+	 */
+	public CsvWriter writeField(CharSequence value) throws IOException {
+		startField();
+		if (value == null) {
+			return this;
+		}
+		int length = value.length();
+		boolean quote = false;
+		for (int i = 0; i < length && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == delimiter || c == '"' || c == '\r' || c == '\n';
+		}
+		// each char needs at most 3 bytes, and quotes are doubled
+		long worst = (long) length * 3 + 2;
+		if (worst <= block.length) {
+			ensure((int) worst);
+			count = encode(value, quote, block, count);
+		} else {
+			encodeLarge(value, quote);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes an <code>int</code> field.
+	 *
+	 * @param value
+	 *            the field value
+	 * @return this writer
+	 * @throws IOException
+	 *             if an I/O error occurs writing a full block
+	 */
+	public CsvWriter writeField(int value) throws IOException {
+		return writeField((long) value);
+	}
+
+	/**
+	 * Writes a <code>long</code> field.
+	 *
+	 * @param value
+	 *            the field value
+	 * @return this writer
+	 * @throws IOException
+	 *             if an I/O error occurs writing a full block
+	 */
+	public CsvWriter writeField(long value) throws IOException {
+		startField();
+		ensure(20);
+		count = formatLong(value, block, count);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>double</code> field. Values with up to 15 significant
+	 * digits are written as plain decimals (e.g. <code>12.5</code>), other
+	 * values as {@link Double#toString(double)} would.
+	 *
+	 * @param value
+	 *            the field value
+	 * @return this writer
+	 * @throws IOException
+	 *             if an I/O error occurs writing a full block
+	 */
+	public CsvWriter writeField(double value) throws IOException {
+		startField();
+		if (value == 0 && 1 / value < 0) {
+			ensure(2);
+			block[count++] = '-';
+			block[count++] = '0';
+			return this;
+		}
+		for (int scale = 0; scale < 18; scale++) {
+			double scaled = value * POWERS_OF_TEN[scale];
+			if (Math.abs(scaled) >= 1e15) {
+				break;
+			}
+			// the value must parse back exactly as a CsvReader would parse it
+			if (scaled == Math.rint(scaled)
+					&& scaled / POWERS_OF_TEN[scale] == value) {
+				ensure(24);
+				count = formatDecimal((long) scaled, scale, block, count);
+				return this;
+			}
+		}
+		String s = Double.toString(value);
+		ensure(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			block[count++] = (byte) s.charAt(i);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a <code>boolean</code> field as <code>true</code> or
+	 * <code>false</code>.
+	 *
+	 * @param value
+	 *            the field value
+	 * @return this writer
+	 * @throws IOException
+	 *             if an I/O error occurs writing a full block
+	 */
+	public CsvWriter writeField(boolean value) throws IOException {
+		return writeField(value ? "true" : "false");
+	}
+
+	/**
+	 * Ends the current record.
+	 *
+	 * @return this writer
+	 * @throws IOException
+	 *             if an I/O error occurs writing a full block
+	 */
+	public CsvWriter endRecord() throws IOException {
+		ensure(lineSeparator.length);
+		for (byte b : lineSeparator) {
+			block[count++] = b;
+		}
+		inRecord = false;
+		return this;
+	}
+
+	/**
+	 * Writes a record containing the <code>values</code>.
+	 *
+	 * @param values
+	 *            the field values
+	 * @return this writer
+	 * @throws IOException
+	 *             if an I/O error occurs writing a full block
+	 */
+	public CsvWriter writeRecord(CharSequence... values) throws IOException {
+		for (CharSequence value : values) {
+			writeField(value);
+		}
+		return endRecord();
+	}
+
+	/**
+	 * Writes the current block, and waits for any blocks being compressed, so
+	 * everything written so far is in the channel. When compressing, this ends
+	 * the current gzip member, so flushing often reduces compression.
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeBlock();
+		while (!pending.isEmpty()) {
+			writeCompressed();
+		}
+	}
+
+	/**
+	 * Flushes the writer and stops any compression threads.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			if (compressor != null) {
+				compressor.shutdownNow();
+			}
+		}
+	}
+
+	private void startField() throws IOException {
+		if (inRecord) {
+			ensure(1);
+			block[count++] = delimiter;
+		}
+		inRecord = true;
+	}
+
+	/**
+	 * Makes room for <code>n</code> bytes in the block.
+	 */
+	private void ensure(int n) throws IOException {
+		if (block.length - count < n) {
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Writes the block to the channel, or submits it to be compressed.
+	 */
+	private void writeBlock() throws IOException {
+		if (count == 0) {
+			return;
+		}
+		if (compressor == null) {
+			ByteBuffer buffer = ByteBuffer.wrap(block, 0, count);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} else {
+			while (pending.size() >= maxPending) {
+				writeCompressed();
+			}
+			final byte[] data = block;
+			final int length = count;
+			pending.add(compressor.submit(new Callable<ByteBuffer>() {
+
+				@Override
+				public ByteBuffer call() throws Exception {
+					return GzipMembers.compress(data, length,
+							Deflater.DEFAULT_COMPRESSION);
+				}
+			}));
+			// the submitted block is owned by the compressor now
+			block = new byte[block.length];
+		}
+		count = 0;
+	}
+
+	/**
+	 * Waits for the oldest block being compressed and writes it.
+	 */
+	private void writeCompressed() throws IOException {
+		try {
+			ByteBuffer buffer = pending.removeFirst().get();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted compressing block");
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Writes a field which may not fit in one block.
+	 */
+	private void encodeLarge(CharSequence value, boolean quote)
+			throws IOException {
+		byte[] bytes = value.toString().getBytes("UTF-8");
+		if (quote) {
+			ensure(1);
+			block[count++] = '"';
+		}
+		for (byte b : bytes) {
+			ensure(2);
+			if (b == '"') {
+				block[count++] = '"';
+			}
+			block[count++] = b;
+		}
+		if (quote) {
+			ensure(1);
+			block[count++] = '"';
+		}
+	}
+
+	/**
+	 * Encodes <code>value</code> as UTF-8 into <code>out</code>, which must
+	 * have room for the worst case.
+	 *
+	 * @return the index after the last byte written
+	 */
+	private static int encode(CharSequence value, boolean quote, byte[] out,
+			int p) {
+		if (quote) {
+			out[p++] = '"';
+		}
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				if (c == '"') {
+					out[p++] = '"';
+				}
+				out[p++] = (byte) c;
+			} else if (c < 0x800) {
+				out[p++] = (byte) (0xc0 | (c >> 6));
+				out[p++] = (byte) (0x80 | (c & 0x3f));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, value.charAt(++i));
+				out[p++] = (byte) (0xf0 | (cp >> 18));
+				out[p++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				out[p++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				out[p++] = (byte) (0x80 | (cp & 0x3f));
+			} else if (Character.isSurrogate(c)) {
+				out[p++] = '?';
+			} else {
+				out[p++] = (byte) (0xe0 | (c >> 12));
+				out[p++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				out[p++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		if (quote) {
+			out[p++] = '"';
+		}
+		return p;
+	}
+
+	/**
+	 * Formats <code>value</code> in decimal into <code>out</code>.
+	 *
+	 * @return the index after the last byte written
+	 */
+	private int formatLong(long value, byte[] out, int p) {
+		return formatDecimal(value, 0, out, p);
+	}
+
+	/**
+	 * Formats <code>unscaled / 10^scale</code> in decimal into
+	 * <code>out</code>.
+	 *
+	 * @return the index after the last byte written
+	 */
+	private int formatDecimal(long unscaled, int scale, byte[] out, int p) {
+		boolean negative = unscaled < 0;
+		int n = 0;
+		// format negatively so Long.MIN_VALUE does not overflow
+		long v = negative ? unscaled : -unscaled;
+		do {
+			digits[n++] = (byte) ('0' - (v % 10));
+			v /= 10;
+		} while (v != 0);
+		// trailing zeros after the decimal point are not needed
+		int skip = 0;
+		while (skip < scale && digits[skip] == '0') {
+			skip++;
+		}
+		while (n <= scale) {
+			digits[n++] = '0';
+		}
+		if (negative) {
+			out[p++] = '-';
+		}
+		for (int i = n - 1; i >= skip; i--) {
+			if (i == scale - 1) {
+				out[p++] = '.';
+			}
+			out[p++] = digits[i];
+		}
+		return p;
+	}
+
+}
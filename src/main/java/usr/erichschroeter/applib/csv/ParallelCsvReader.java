@@ -0,0 +1,571 @@
+package usr.erichschroeter.applib.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import usr.erichschroeter.applib.io.Compression;
+
+/**
+ * A <code>ParallelCsvReader</code> reads a large CSV file on several threads
+ * by splitting it into chunks which each begin at a record boundary.
+ * <p>
+ * A record boundary cannot be found by simply searching for a line break,
+ * since quoted fields may contain line breaks. Instead the boundaries are
+ * found in two parallel passes
+ * <ol>
+ * <li>the quotes in each chunk are counted, so the number of quotes before
+ * every chunk (and therefore whether the chunk begins inside a quoted field)
+ * is known</li>
+ * <li>each chunk is scanned from its start for the first line feed outside of
+ * a quoted field</li>
+ * </ol>
+ * Escaped quotes (<code>""</code>) are counted twice so they do not affect
+ * the result. Each chunk is then parsed by its own {@link CsvReader}.
+ * <p>
+ * The records can be read as a <code>Stream</code> of rows by
+ * {@link #rows(boolean)}, or numeric columns can be parsed directly into
+ * primitive arrays by {@link #readDoubles(int...)} and
+ * {@link #readLongs(int...)}, which always preserve row order.
+ * <p>
+ * Records must end with <code>LF</code> or <code>CRLF</code>; files using a
+ * lone <code>CR</code> are read as a single chunk. Compressed files cannot be
+ * split and must be read by {@link CsvReader#open(File)} instead.
+ *
+ * @author Erich Schroeter
+ */
+public class ParallelCsvReader implements Closeable {
+
+	/** The default approximate number of bytes per chunk. */
+	public static final long DEFAULT_CHUNK_SIZE = 64L << 20;
+
+	/** The file being read. */
+	private final RandomAccessFile file;
+	/** The channel of the file being read. */
+	private final FileChannel channel;
+	/** The approximate number of bytes per chunk. */
+	private long chunkSize;
+	/** The number of threads used to read the file. */
+	private int parallelism;
+	/** The field delimiter. */
+	private char delimiter;
+	/** Whether the first record is a header which is skipped. */
+	private boolean skipHeader;
+	/** The record boundaries, or <code>null</code> if not found yet. */
+	private long[] boundaries;
+
+	/**
+	 * Constructs a <code>ParallelCsvReader</code> reading <code>file</code>.
+	 *
+	 * @param file
+	 *            the CSV file to read
+	 * @throws IOException
+	 *             if an I/O error occurs opening the file, or the file is
+	 *             compressed
+	 */
+	public ParallelCsvReader(File file) throws IOException {
+		if (Compression.isCompressed(file)) {
+			throw new IOException(file
+					+ " is compressed and cannot be read in chunks");
+		}
+		this.file = new RandomAccessFile(file, "r");
+		this.channel = this.file.getChannel();
+		this.chunkSize = DEFAULT_CHUNK_SIZE;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+		this.delimiter = ',';
+	}
+
+	public long getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Sets the approximate number of bytes per chunk. Chunks must be smaller
+	 * than 2GB, since each is mapped in one piece.
+	 *
+	 * @param chunkSize
+	 *            the chunk size in bytes
+	 */
+	public void setChunkSize(long chunkSize) {
+		if (chunkSize < 1 || chunkSize > Integer.MAX_VALUE / 2) {
+			throw new IllegalArgumentException("invalid chunk size: "
+					+ chunkSize);
+		}
+		this.chunkSize = chunkSize;
+		boundaries = null;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of threads used by {@link #readDoubles(int...)},
+	 * {@link #readLongs(int...)} and to find record boundaries. The default is
+	 * the number of available processors.
+	 *
+	 * @param parallelism
+	 *            the number of threads
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive");
+		}
+		this.parallelism = parallelism;
+	}
+
+	public char getDelimiter() {
+		return delimiter;
+	}
+
+	/**
+	 * Sets the field delimiter.
+	 *
+	 * @see CsvReader#setDelimiter(char)
+	 * @param delimiter
+	 *            the delimiter
+	 */
+	public void setDelimiter(char delimiter) {
+		this.delimiter = delimiter;
+	}
+
+	public boolean isSkipHeader() {
+		return skipHeader;
+	}
+
+	/**
+	 * Sets whether the first record is a header which should be skipped.
+	 *
+	 * @param skipHeader
+	 *            <code>true</code> to skip the first record
+	 */
+	public void setSkipHeader(boolean skipHeader) {
+		this.skipHeader = skipHeader;
+	}
+
+	/**
+	 * Returns the positions of the record boundaries the file is split at.
+	 * The first element is <code>0</code> and the last is the size of the
+	 * file, so there is one less chunk than there are boundaries.
+	 *
+	 * @return the record boundaries
+	 * @throws IOException
+	 *             if an I/O error occurs reading the file
+	 */
+	public synchronized long[] getBoundaries() throws IOException {
+		if (boundaries == null) {
+			boundaries = findBoundaries();
+		}
+		return boundaries.clone();
+	}
+
+	/**
+	 * Returns a stream of the file's records, each copied into a
+	 * <code>String[]</code>. The chunks are parsed in parallel.
+	 * <p>
+	 * The stream should be closed once consumed, although the file is only
+	 * closed by {@link #close()}.
+	 *
+	 * @param ordered
+	 *            <code>true</code> if the rows must be in file order, else
+	 *            <code>false</code> to allow them in any order, which is
+	 *            faster
+	 * @return the rows
+	 * @throws IOException
+	 *             if an I/O error occurs finding the record boundaries
+	 */
+	public Stream<String[]> rows(boolean ordered) throws IOException {
+		final long[] bounds = getBoundaries();
+		Stream<String[]> rows = IntStream.range(0, bounds.length - 1)
+				.parallel().boxed()
+				.flatMap(new Function<Integer, Stream<String[]>>() {
+
+					@Override
+					public Stream<String[]> apply(Integer i) {
+						return chunkRows(i, bounds[i], bounds[i + 1]);
+					}
+				});
+		return ordered ? rows : rows.unordered();
+	}
+
+	/**
+	 * Parses the <code>columns</code> of every record as <code>double</code>
+	 * values. The result has one array per column, each containing the values
+	 * in file order.
+	 *
+	 * @param columns
+	 *            the indices of the columns to read
+	 * @return the column values
+	 * @throws IOException
+	 *             if an I/O error occurs or a record is malformed
+	 * @throws CsvFormatException
+	 *             if a record has too few fields for a column
+	 * @throws NumberFormatException
+	 *             if a value is not a valid <code>double</code>
+	 */
+	public double[][] readDoubles(final int... columns) throws IOException {
+		if (columns.length == 0) {
+			throw new IllegalArgumentException("no columns specified");
+		}
+		List<double[][]> chunks = readChunks(new ChunkParser<double[][]>() {
+
+			@Override
+			public double[][] parse(CsvReader reader) throws IOException {
+				double[][] values = new double[columns.length][1024];
+				int rows = 0;
+				while (reader.next()) {
+					if (rows == values[0].length) {
+						for (int c = 0; c < columns.length; c++) {
+							values[c] = Arrays.copyOf(values[c], rows * 2);
+						}
+					}
+					for (int c = 0; c < columns.length; c++) {
+						values[c][rows] = field(reader, columns[c]).getDouble();
+					}
+					rows++;
+				}
+				for (int c = 0; c < columns.length; c++) {
+					values[c] = Arrays.copyOf(values[c], rows);
+				}
+				return values;
+			}
+		});
+		double[][] result = new double[columns.length][];
+		for (int c = 0; c < columns.length; c++) {
+			long total = 0;
+			for (double[][] chunk : chunks) {
+				total += chunk[c].length;
+			}
+			result[c] = new double[checkedSize(total)];
+			int offset = 0;
+			for (double[][] chunk : chunks) {
+				System.arraycopy(chunk[c], 0, result[c], offset,
+						chunk[c].length);
+				offset += chunk[c].length;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Parses the <code>columns</code> of every record as <code>long</code>
+	 * values. The result has one array per column, each containing the values
+	 * in file order.
+	 *
+	 * @param columns
+	 *            the indices of the columns to read
+	 * @return the column values
+	 * @throws IOException
+	 *             if an I/O error occurs or a record is malformed
+	 * @throws CsvFormatException
+	 *             if a record has too few fields for a column
+	 * @throws NumberFormatException
+	 *             if a value is not a valid <code>long</code>
+	 */
+	public long[][] readLongs(final int... columns) throws IOException {
+		if (columns.length == 0) {
+			throw new IllegalArgumentException("no columns specified");
+		}
+		List<long[][]> chunks = readChunks(new ChunkParser<long[][]>() {
+
+			@Override
+			public long[][] parse(CsvReader reader) throws IOException {
+				long[][] values = new long[columns.length][1024];
+				int rows = 0;
+				while (reader.next()) {
+					if (rows == values[0].length) {
+						for (int c = 0; c < columns.length; c++) {
+							values[c] = Arrays.copyOf(values[c], rows * 2);
+						}
+					}
+					for (int c = 0; c < columns.length; c++) {
+						values[c][rows] = field(reader, columns[c]).getLong();
+					}
+					rows++;
+				}
+				for (int c = 0; c < columns.length; c++) {
+					values[c] = Arrays.copyOf(values[c], rows);
+				}
+				return values;
+			}
+		});
+		long[][] result = new long[columns.length][];
+		for (int c = 0; c < columns.length; c++) {
+			long total = 0;
+			for (long[][] chunk : chunks) {
+				total += chunk[c].length;
+			}
+			result[c] = new long[checkedSize(total)];
+			int offset = 0;
+			for (long[][] chunk : chunks) {
+				System.arraycopy(chunk[c], 0, result[c], offset,
+						chunk[c].length);
+				offset += chunk[c].length;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Parses a chunk read by a <code>CsvReader</code>.
+	 *
+	 * @param <T>
+	 *            the result of parsing the chunk
+	 */
+	private interface ChunkParser<T> {
+
+		T parse(CsvReader reader) throws IOException;
+
+	}
+
+	/**
+	 * Parses every chunk with <code>parser</code> on the thread pool and
+	 * returns the results in chunk order.
+	 */
+	private <T> List<T> readChunks(final ChunkParser<T> parser)
+			throws IOException {
+		final long[] bounds = getBoundaries();
+		List<Callable<T>> tasks = new ArrayList<Callable<T>>();
+		for (int i = 0; i < bounds.length - 1; i++) {
+			final int chunk = i;
+			tasks.add(new Callable<T>() {
+
+				@Override
+				public T call() throws Exception {
+					return parser.parse(reader(chunk, bounds[chunk],
+							bounds[chunk + 1]));
+				}
+			});
+		}
+		return invokeAll(tasks);
+	}
+
+	/**
+	 * Returns a reader of the chunk between <code>start</code> and
+	 * <code>end</code>, skipping the header if it is the first chunk.
+	 */
+	private CsvReader reader(int chunk, long start, long end)
+			throws IOException {
+		CsvReader reader = new CsvReader(channel, start, end);
+		reader.setDelimiter(delimiter);
+		if (chunk == 0 && skipHeader) {
+			reader.next();
+		}
+		return reader;
+	}
+
+	/**
+	 * Returns the field at <code>column</code> of the current record.
+	 *
+	 * @throws CsvFormatException
+	 *             if the record has too few fields
+	 */
+	private static CsvField field(CsvReader reader, int column)
+			throws CsvFormatException {
+		if (column >= reader.getFieldCount()) {
+			throw new CsvFormatException("record has "
+					+ reader.getFieldCount() + " fields, no field " + column,
+					reader.getRecordOffset());
+		}
+		return reader.getField(column);
+	}
+
+	/**
+	 * Returns a sequential stream of the rows of one chunk.
+	 */
+	private Stream<String[]> chunkRows(int chunk, long start, long end) {
+		final CsvReader reader;
+		try {
+			reader = reader(chunk, start, end);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		Iterator<String[]> iterator = new Iterator<String[]>() {
+
+			private boolean ready;
+			private boolean hasNext;
+
+			@Override
+			public boolean hasNext() {
+				if (!ready) {
+					try {
+						hasNext = reader.next();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					ready = true;
+				}
+				return hasNext;
+			}
+
+			@Override
+			public String[] next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				ready = false;
+				String[] row = new String[reader.getFieldCount()];
+				for (int i = 0; i < row.length; i++) {
+					row[i] = reader.getField(i).toString();
+				}
+				return row;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+				iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * Splits the file into chunks of about {@link #chunkSize} bytes and moves
+	 * each split forward to the next record boundary.
+	 */
+	private long[] findBoundaries() throws IOException {
+		final long size = channel.size();
+		final int chunks = (int) Math.max(1, (size + chunkSize - 1)
+				/ chunkSize);
+		if (chunks == 1) {
+			return new long[] { 0, size };
+		}
+
+		// first pass: count the quotes in each chunk
+		List<Callable<Long>> counts = new ArrayList<Callable<Long>>();
+		for (int i = 0; i < chunks; i++) {
+			final long start = i * chunkSize;
+			counts.add(new Callable<Long>() {
+
+				@Override
+				public Long call() throws Exception {
+					MappedByteBuffer buffer = map(start, size);
+					long quotes = 0;
+					for (int p = 0, n = buffer.limit(); p < n; p++) {
+						if (buffer.get(p) == '"') {
+							quotes++;
+						}
+					}
+					return quotes;
+				}
+			});
+		}
+		List<Long> quotes = invokeAll(counts);
+
+		// second pass: find the first line feed outside of quotes
+		List<Callable<Long>> splits = new ArrayList<Callable<Long>>();
+		long before = 0;
+		for (int i = 0; i < chunks; i++) {
+			final long start = i * chunkSize;
+			final boolean inQuotes = (before & 1) == 1;
+			before += quotes.get(i);
+			if (i == 0) {
+				continue;
+			}
+			splits.add(new Callable<Long>() {
+
+				@Override
+				public Long call() throws Exception {
+					MappedByteBuffer buffer = map(start, size);
+					boolean quoted = inQuotes;
+					for (int p = 0, n = buffer.limit(); p < n; p++) {
+						byte b = buffer.get(p);
+						if (b == '"') {
+							quoted = !quoted;
+						} else if (b == '\n' && !quoted) {
+							return start + p + 1;
+						}
+					}
+					// the chunk is within one record, so merge it
+					return -1L;
+				}
+			});
+		}
+		long[] bounds = new long[chunks + 1];
+		int count = 0;
+		bounds[count++] = 0;
+		for (Long split : invokeAll(splits)) {
+			if (split > bounds[count - 1] && split < size) {
+				bounds[count++] = split;
+			}
+		}
+		bounds[count++] = size;
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * Maps the chunk beginning at <code>start</code>.
+	 */
+	private MappedByteBuffer map(long start, long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, start,
+				Math.min(chunkSize, size - start));
+	}
+
+	/**
+	 * Runs the <code>tasks</code> on {@link #parallelism} threads and returns
+	 * their results in order.
+	 */
+	private <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(
+				parallelism, Math.max(1, tasks.size())));
+		try {
+			List<T> results = new ArrayList<T>(tasks.size());
+			for (Future<T> future : pool.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted reading CSV file");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static int checkedSize(long size) {
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException(size
+					+ " rows cannot be stored in an array");
+		}
+		return (int) size;
+	}
+
+}
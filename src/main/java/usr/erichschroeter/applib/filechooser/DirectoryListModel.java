@@ -0,0 +1,312 @@
+package usr.erichschroeter.applib.filechooser;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingWorker;
+
+/**
+ * A <code>DirectoryListModel</code> is a <code>ListModel</code> of the files
+ * within a directory which are listed and filtered on a background thread.
+ * <p>
+ * Listing a directory with hundreds of thousands of entries (and calling a
+ * filter such as <code>XmlFileFilter</code> on each of them) can take several
+ * seconds, which would freeze the user interface if done on the <em>Event
+ * Dispatch Thread (EDT)</em>. Instead, {@link #load(File, FileFilter)} starts a
+ * <code>SwingWorker</code> which publishes accepted files to the model in
+ * batches of {@link #getBatchSize()} files. Listeners are notified once per
+ * batch rather than once per file.
+ * <p>
+ * Files are sorted by name, ignoring case, before being filtered so each batch
+ * is appended in order and the model is always sorted. This allows
+ * {@link #indexOfPrefix(String)} to be used for type ahead while the directory
+ * is still loading.
+ * <p>
+ * A <code>PropertyChangeEvent</code> is fired for the <code>"loading"</code>
+ * property when loading starts and when it finishes or is cancelled.
+ *
+ * @author Erich Schroeter
+ */
+@SuppressWarnings("serial")
+public class DirectoryListModel extends AbstractListModel<File> {
+
+	/** The default number of files published to the model at a time. */
+	public static final int DEFAULT_BATCH_SIZE = 512;
+
+	/** The files which have been loaded so far. */
+	private List<File> files;
+	/** The directory being listed. */
+	private File directory;
+	/** The number of files to publish to the model at a time. */
+	private int batchSize;
+	/** The worker loading the current directory. */
+	private Loader loader;
+	/** The value of the <code>"loading"</code> property last fired. */
+	private boolean loading;
+	/** Used for managing property listeners. */
+	private PropertyChangeSupport properties;
+
+	public DirectoryListModel() {
+		files = new ArrayList<File>();
+		batchSize = DEFAULT_BATCH_SIZE;
+		properties = new PropertyChangeSupport(this);
+	}
+
+	/**
+	 * Returns the directory the model is listing.
+	 *
+	 * @return the current directory, or <code>null</code> if nothing has been
+	 *         loaded
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the number of files published to the model at a time.
+	 *
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the number of files published to the model at a time. This only
+	 * affects subsequent calls to {@link #load(File, FileFilter)}.
+	 *
+	 * @param batchSize
+	 *            the batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Clears the model and starts listing <code>directory</code> in the
+	 * background. Any load currently in progress is cancelled first.
+	 * <p>
+	 * This must be called on the <em>Event Dispatch Thread</em>.
+	 *
+	 * @param directory
+	 *            the directory to list
+	 * @param filter
+	 *            the filter files must be accepted by, or <code>null</code> to
+	 *            accept all files
+	 */
+	public void load(File directory, FileFilter filter) {
+		cancel();
+		int size = files.size();
+		files.clear();
+		if (size > 0) {
+			fireIntervalRemoved(this, 0, size - 1);
+		}
+		this.directory = directory;
+		loader = new Loader(directory, filter, batchSize);
+		loader.addPropertyChangeListener(new PropertyChangeListener() {
+
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				if ("state".equals(evt.getPropertyName())) {
+					loadingChanged(evt.getSource(), evt.getNewValue());
+				}
+			}
+		});
+		loader.execute();
+	}
+
+	/**
+	 * Cancels the load currently in progress. Files which have already been
+	 * appended remain in the model, while batches published but not yet
+	 * appended are discarded.
+	 */
+	public void cancel() {
+		if (loader != null) {
+			Loader old = loader;
+			loader = null;
+			if (!old.isDone()) {
+				old.cancel(true);
+			}
+			setLoading(false);
+		}
+	}
+
+	/**
+	 * Returns whether the model is still loading the directory.
+	 *
+	 * @return <code>true</code> if loading, else <code>false</code>
+	 */
+	public boolean isLoading() {
+		return loader != null && !loader.isDone();
+	}
+
+	/**
+	 * Returns the index of the first file whose name starts with
+	 * <code>prefix</code>, ignoring case, within the files loaded so far.
+	 *
+	 * @param prefix
+	 *            the beginning of a file name
+	 * @return the index of the first match, or <code>-1</code> if none of the
+	 *         loaded files match
+	 */
+	public int indexOfPrefix(String prefix) {
+		if (prefix == null || prefix.isEmpty()) {
+			return files.isEmpty() ? -1 : 0;
+		}
+		// the files are sorted so the first match is the insertion point
+		int low = 0;
+		int high = files.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (String.CASE_INSENSITIVE_ORDER.compare(files.get(mid).getName(),
+					prefix) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		if (low < files.size()
+				&& files.get(low).getName()
+						.regionMatches(true, 0, prefix, 0, prefix.length())) {
+			return low;
+		}
+		return -1;
+	}
+
+	@Override
+	public int getSize() {
+		return files.size();
+	}
+
+	@Override
+	public File getElementAt(int index) {
+		return files.get(index);
+	}
+
+	/**
+	 * Appends a batch of files published by <code>source</code>, ignoring it
+	 * if <code>source</code> is no longer the current loader.
+	 */
+	private void append(Loader source, List<File> batch) {
+		if (source != loader || batch.isEmpty()) {
+			return;
+		}
+		int first = files.size();
+		files.addAll(batch);
+		fireIntervalAdded(this, first, files.size() - 1);
+	}
+
+	/**
+	 * Fires the <code>"loading"</code> property change when the current loader
+	 * starts or finishes. The loader's <code>state</code> is delivered later
+	 * on the EDT, by which time a quick loader may already be done, so the
+	 * state of the event is used rather than the loader's.
+	 */
+	private void loadingChanged(Object source, Object state) {
+		if (source != loader) {
+			return;
+		}
+		if (state == SwingWorker.StateValue.STARTED) {
+			setLoading(true);
+		} else if (state == SwingWorker.StateValue.DONE) {
+			// the loader is kept since its last batch may still be pending
+			setLoading(false);
+		}
+	}
+
+	/**
+	 * Add a PropertyChangeListener to be notified when the
+	 * <code>"loading"</code> property changes.
+	 *
+	 * @param listener
+	 *            the property change listener to be added
+	 */
+	public void addPropertyChangeListener(PropertyChangeListener listener) {
+		properties.addPropertyChangeListener(listener);
+	}
+
+	/**
+	 * Removes a PropertyChangeListener from the listener list.
+	 *
+	 * @param listener
+	 *            the property change listener to be removed
+	 */
+	public void removePropertyChangeListener(PropertyChangeListener listener) {
+		properties.removePropertyChangeListener(listener);
+	}
+
+	/**
+	 * Fires the <code>"loading"</code> property change if the value changed,
+	 * so listeners always see it start before it finishes.
+	 */
+	private void setLoading(boolean loading) {
+		boolean old = this.loading;
+		this.loading = loading;
+		properties.firePropertyChange("loading", old, loading);
+	}
+
+	/**
+	 * The <code>SwingWorker</code> which lists, sorts and filters a directory
+	 * off of the <em>Event Dispatch Thread</em>.
+	 */
+	private class Loader extends SwingWorker<Integer, File> {
+
+		private final File directory;
+		private final FileFilter filter;
+		private final int batchSize;
+
+		Loader(File directory, FileFilter filter, int batchSize) {
+			this.directory = directory;
+			this.filter = filter;
+			this.batchSize = batchSize;
+		}
+
+		@Override
+		protected Integer doInBackground() throws Exception {
+			String[] names = directory.list();
+			if (names == null) {
+				return 0;
+			}
+			Arrays.sort(names, String.CASE_INSENSITIVE_ORDER);
+			int accepted = 0;
+			File[] batch = new File[batchSize];
+			int count = 0;
+			for (String name : names) {
+				if (isCancelled()) {
+					break;
+				}
+				File file = new File(directory, name);
+				if (filter == null || filter.accept(file)) {
+					batch[count++] = file;
+					accepted++;
+					if (count == batch.length) {
+						publish(batch);
+						batch = new File[batchSize];
+						count = 0;
+					}
+				}
+			}
+			if (count > 0 && !isCancelled()) {
+				publish(Arrays.copyOf(batch, count));
+			}
+			return accepted;
+		}
+
+		@Override
+		protected void process(List<File> chunks) {
+			append(this, chunks);
+		}
+
+	}
+
+}
@@ -0,0 +1,386 @@
+package usr.erichschroeter.applib.filechooser;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dialog;
+import java.awt.FlowLayout;
+import java.awt.Window;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import javax.swing.filechooser.FileFilter;
+
+import usr.erichschroeter.applib.GUIApplication;
+
+/**
+ * A <code>FileChooserDialog</code> is a simple open file dialog which remains
+ * responsive while listing very large directories.
+ * <p>
+ * Unlike <code>JFileChooser</code>, which lists and filters a directory on the
+ * <em>Event Dispatch Thread</em>, the files are loaded by a
+ * {@link DirectoryListModel} in the background and appear in batches. While
+ * the directory is loading the user may
+ * <ul>
+ * <li>type the beginning of a file name to select the first match, which is
+ * retried as more files arrive</li>
+ * <li>stop loading the directory</li>
+ * <li>choose any file which has already been loaded</li>
+ * </ul>
+ *
+ * @author Erich Schroeter
+ */
+@SuppressWarnings("serial")
+public class FileChooserDialog extends JDialog {
+
+	/** The model of the directory being shown. */
+	protected DirectoryListModel model;
+	/** The list displaying the directory's files. */
+	protected JList<File> list;
+	/** The field used for typing the beginning of a file name. */
+	protected JTextField nameField;
+	/** The label displaying the current directory. */
+	protected JLabel directoryLabel;
+	/** The label displaying the number of files loaded. */
+	protected JLabel statusLabel;
+	/** The filter files must be accepted by to be listed. */
+	protected FileFilter fileFilter;
+	/** The file chosen by the user. */
+	protected File selectedFile;
+
+	/**
+	 * Constructs a <code>FileChooserDialog</code> whose parent is the
+	 * <code>application</code>'s window.
+	 *
+	 * @param application
+	 *            the application whose window will be the dialog's parent
+	 */
+	public FileChooserDialog(GUIApplication<? extends Window> application) {
+		this(application.getApplicationWindow());
+	}
+
+	/**
+	 * Constructs a <code>FileChooserDialog</code> specifying the dialog's
+	 * parent.
+	 *
+	 * @param parent
+	 *            the window from which the dialog is displayed
+	 */
+	public FileChooserDialog(Window parent) {
+		super(parent, "Open", Dialog.ModalityType.APPLICATION_MODAL);
+		model = new DirectoryListModel();
+		initializeDialog();
+	}
+
+	/**
+	 * Returns the model of the directory being shown.
+	 *
+	 * @return the directory model
+	 */
+	public DirectoryListModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Returns the filter files must be accepted by to be listed.
+	 *
+	 * @return the file filter, or <code>null</code> if all files are listed
+	 */
+	public FileFilter getFileFilter() {
+		return fileFilter;
+	}
+
+	/**
+	 * Sets the filter files must be accepted by to be listed. The current
+	 * directory is reloaded if one has been set.
+	 *
+	 * @param fileFilter
+	 *            the file filter, or <code>null</code> to list all files
+	 */
+	public void setFileFilter(FileFilter fileFilter) {
+		this.fileFilter = fileFilter;
+		if (model.getDirectory() != null) {
+			setCurrentDirectory(model.getDirectory());
+		}
+	}
+
+	/**
+	 * Returns the directory being shown.
+	 *
+	 * @return the current directory
+	 */
+	public File getCurrentDirectory() {
+		return model.getDirectory();
+	}
+
+	/**
+	 * Starts loading <code>directory</code> in the background.
+	 *
+	 * @param directory
+	 *            the directory to show
+	 */
+	public void setCurrentDirectory(File directory) {
+		directoryLabel.setText(directory.getAbsolutePath());
+		model.load(directory, fileFilter == null ? null : new FilterAdapter(
+				fileFilter));
+	}
+
+	/**
+	 * Returns the file chosen by the user.
+	 *
+	 * @return the selected file, or <code>null</code> if the dialog was
+	 *         cancelled
+	 */
+	public File getSelectedFile() {
+		return selectedFile;
+	}
+
+	/**
+	 * Shows the dialog listing <code>directory</code> and blocks until the
+	 * user chooses a file or cancels the dialog.
+	 *
+	 * @param directory
+	 *            the directory to show first
+	 * @return the selected file, or <code>null</code> if the dialog was
+	 *         cancelled
+	 */
+	public File showOpenDialog(File directory) {
+		selectedFile = null;
+		setCurrentDirectory(directory);
+		setLocationRelativeTo(getOwner());
+		setVisible(true);
+		return selectedFile;
+	}
+
+	@Override
+	public void dispose() {
+		model.cancel();
+		super.dispose();
+	}
+
+	protected void initializeDialog() {
+		setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+		directoryLabel = new JLabel();
+		statusLabel = new JLabel(" ");
+		nameField = new JTextField();
+
+		list = new JList<File>(model);
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		list.setCellRenderer(new DefaultListCellRenderer() {
+
+			@Override
+			public Component getListCellRendererComponent(JList<?> list,
+					Object value, int index, boolean isSelected,
+					boolean cellHasFocus) {
+				return super.getListCellRendererComponent(list,
+						((File) value).getName(), index, isSelected,
+						cellHasFocus);
+			}
+		});
+		// only measure one cell instead of every file in the directory
+		list.setPrototypeCellValue(new File("prototype-file-name.xml"));
+
+		final Action upAction = new AbstractAction("Up") {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				File parent = getCurrentDirectory().getAbsoluteFile()
+						.getParentFile();
+				if (parent != null) {
+					setCurrentDirectory(parent);
+				}
+			}
+		};
+		final Action stopAction = new AbstractAction("Stop") {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				model.cancel();
+			}
+		};
+		final Action openAction = new AbstractAction("Open") {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				open(list.getSelectedValue());
+			}
+		};
+		Action cancelAction = new AbstractAction("Cancel") {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				selectedFile = null;
+				dispose();
+			}
+		};
+
+		list.addMouseListener(new MouseAdapter() {
+
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				if (e.getClickCount() == 2) {
+					open(list.getSelectedValue());
+				}
+			}
+		});
+		nameField.addActionListener(openAction);
+		nameField.getDocument().addDocumentListener(new DocumentListener() {
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				selectPrefix();
+			}
+
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				selectPrefix();
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				selectPrefix();
+			}
+		});
+		model.addListDataListener(new ListDataListener() {
+
+			@Override
+			public void intervalRemoved(ListDataEvent e) {
+				updateStatus();
+			}
+
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				updateStatus();
+				// the typed file may have just been loaded
+				if (list.isSelectionEmpty()) {
+					selectPrefix();
+				}
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e) {
+				updateStatus();
+			}
+		});
+		model.addPropertyChangeListener(new PropertyChangeListener() {
+
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				stopAction.setEnabled(model.isLoading());
+				updateStatus();
+			}
+		});
+
+		JPanel top = new JPanel(new BorderLayout(4, 4));
+		top.add(new JButton(upAction), BorderLayout.WEST);
+		top.add(directoryLabel, BorderLayout.CENTER);
+
+		JPanel bottom = new JPanel(new BorderLayout(4, 4));
+		bottom.add(nameField, BorderLayout.NORTH);
+		bottom.add(statusLabel, BorderLayout.CENTER);
+		JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		buttons.add(new JButton(stopAction));
+		buttons.add(new JButton(openAction));
+		buttons.add(new JButton(cancelAction));
+		bottom.add(buttons, BorderLayout.SOUTH);
+
+		JPanel content = new JPanel(new BorderLayout(4, 4));
+		content.setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
+		content.add(top, BorderLayout.NORTH);
+		content.add(new JScrollPane(list), BorderLayout.CENTER);
+		content.add(bottom, BorderLayout.SOUTH);
+		setContentPane(content);
+		setSize(480, 360);
+	}
+
+	/**
+	 * Opens the <code>file</code> if it is a directory, otherwise chooses it
+	 * and closes the dialog.
+	 *
+	 * @param file
+	 *            the file to open
+	 */
+	protected void open(File file) {
+		if (file == null) {
+			return;
+		}
+		if (file.isDirectory()) {
+			nameField.setText("");
+			setCurrentDirectory(file);
+		} else {
+			selectedFile = file;
+			dispose();
+		}
+	}
+
+	/**
+	 * Selects the first loaded file beginning with the text in the name field.
+	 */
+	protected void selectPrefix() {
+		String prefix = nameField.getText();
+		if (prefix.isEmpty()) {
+			return;
+		}
+		int index = model.indexOfPrefix(prefix);
+		if (index == -1) {
+			list.clearSelection();
+		} else {
+			list.setSelectedIndex(index);
+			list.ensureIndexIsVisible(index);
+		}
+	}
+
+	/**
+	 * Updates the status label with the number of files loaded so far.
+	 */
+	protected void updateStatus() {
+		String status = model.getSize() + " files";
+		if (model.isLoading()) {
+			status += " (loading...)";
+		}
+		if (fileFilter != null) {
+			status += " - " + fileFilter.getDescription();
+		}
+		statusLabel.setText(status);
+	}
+
+	/**
+	 * Adapts a <code>javax.swing.filechooser.FileFilter</code> to a
+	 * <code>java.io.FileFilter</code> for the {@link DirectoryListModel}.
+	 */
+	private static class FilterAdapter implements java.io.FileFilter {
+
+		private final FileFilter filter;
+
+		FilterAdapter(FileFilter filter) {
+			this.filter = filter;
+		}
+
+		@Override
+		public boolean accept(File pathname) {
+			return filter.accept(pathname);
+		}
+
+	}
+
+}
@@ -0,0 +1,78 @@
+package usr.erichschroeter.applib.filters;
+
+import javax.swing.filechooser.FileFilter;
+
+/**
+ * An <code>AbstractFileFilter</code> is a file filter usable by both
+ * <code>JFileChooser</code> and {@link java.io.File#listFiles(java.io.FileFilter)}
+ * which also reports how expensive it is to evaluate.
+ * <p>
+ * The cost is used by the combinators in {@link FileFilters} to evaluate
+ * cheap filters before expensive ones. The cost should be one of
+ * <ul>
+ * <li>{@link #NAME_COST} if only the file's name is inspected</li>
+ * <li>{@link #STAT_COST} if the file's attributes are read (e.g.
+ * <code>isDirectory()</code>, <code>length()</code> or
+ * <code>lastModified()</code>)</li>
+ * <li>{@link #CONTENT_COST} if the file's content is read</li>
+ * </ul>
+ * <p>
+ * The description is created once by {@link #createDescription()} and cached.
+ * Filters whose description depends on mutable properties should call
+ * {@link #invalidateDescription()} when those properties change.
+ *
+ * @author Erich Schroeter
+ */
+public abstract class AbstractFileFilter extends FileFilter implements
+		java.io.FileFilter {
+
+	/** The cost of a filter which only inspects the file's name. */
+	public static final int NAME_COST = 0;
+	/** The cost of a filter which reads the file's attributes. */
+	public static final int STAT_COST = 1;
+	/** The cost of a filter which reads the file's content. */
+	public static final int CONTENT_COST = 2;
+
+	/** The cached description. */
+	private String description;
+
+	/**
+	 * Returns how expensive this filter is to evaluate. The default is
+	 * {@link #CONTENT_COST} since nothing is known about the filter.
+	 *
+	 * @return the cost of evaluating this filter
+	 */
+	public int getCost() {
+		return CONTENT_COST;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The description is created by {@link #createDescription()} the first
+	 * time it is requested.
+	 */
+	@Override
+	public String getDescription() {
+		if (description == null) {
+			description = createDescription();
+		}
+		return description;
+	}
+
+	/**
+	 * Discards the cached description so it is created again the next time
+	 * {@link #getDescription()} is called.
+	 */
+	protected void invalidateDescription() {
+		description = null;
+	}
+
+	/**
+	 * Creates the description returned by {@link #getDescription()}.
+	 *
+	 * @return the description of this filter
+	 */
+	protected abstract String createDescription();
+
+}
@@ -2,31 +2,54 @@ package usr.erichschroeter.applib.filters;
 
 import java.io.File;
 
-import javax.swing.filechooser.FileFilter;
-
 import usr.erichschroeter.applib.utils.FileUtils;
 
 /**
  * A <code>CsvFileFilter</code> filters CSV files based on their extensions.
+ * <p>
+ * Compressed CSV files, such as <code>data.csv.gz</code>, are also accepted
+ * unless disabled with {@link #setIncludeCompressed(boolean)}.
  * 
  * @author Erich Schroeter
  */
-public class CsvFileFilter extends FileFilter implements java.io.FileFilter {
+public class CsvFileFilter extends AbstractFileFilter {
+
+	/** Whether to include compressed files. */
+	private boolean includeCompressed = true;
+
+	public boolean isIncludeCompressed() {
+		return includeCompressed;
+	}
+
+	public void setIncludeCompressed(boolean includeCompressed) {
+		this.includeCompressed = includeCompressed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Returns {@link #STAT_COST} since directories are always accepted.
+	 */
+	@Override
+	public int getCost() {
+		return STAT_COST;
+	}
 
 	@Override
 	public boolean accept(File f) {
 		if (f.isDirectory()) {
 			return true;
 		}
-		String ext = FileUtils.getExtension(f);
-		if (ext.equalsIgnoreCase(".csv") || ext.equalsIgnoreCase(".txt")) {
-			return true;
+		String name = f.getName();
+		if (!includeCompressed && FileUtils.isCompressed(name)) {
+			return false;
 		}
-		return false;
+		return FileUtils.hasUncompressedExtension(name, "csv")
+				|| FileUtils.hasUncompressedExtension(name, "txt");
 	}
 
 	@Override
-	public String getDescription() {
+	protected String createDescription() {
 		return "Comma Separated Values (*.csv, *.txt)";
 	}
 
@@ -0,0 +1,531 @@
+package usr.erichschroeter.applib.filters;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.regex.Pattern;
+
+/**
+ * The <code>FileFilters</code> class consists of public static methods which
+ * create and combine file filters.
+ * <p>
+ * Every filter returned is an {@link AbstractFileFilter}, so it may be used
+ * with both <code>JFileChooser</code> and
+ * {@link File#listFiles(java.io.FileFilter)}. The combinators
+ * {@link #and(java.io.FileFilter...)} and {@link #or(java.io.FileFilter...)}
+ * evaluate their filters in order of cost (see
+ * {@link AbstractFileFilter#getCost()}), so name patterns are checked before
+ * filters that read file attributes or content regardless of the order they
+ * were given in. For example
+ *
+ * <pre>
+ * FileFilters.and(FileFilters.largerThan(1024), new XmlFileFilter(),
+ * 		FileFilters.glob(&quot;report-*&quot;));
+ * </pre>
+ *
+ * evaluates the glob first, then the file size, then the
+ * <code>XmlFileFilter</code>. The last two both read file attributes, since
+ * the <code>XmlFileFilter</code> accepts directories, and filters of equal
+ * cost keep the order they were given in.
+ * <p>
+ * Name filters ({@link #glob(String)}, {@link #regex(String)} and
+ * {@link #extension(String...)}) do not accept directories unless their names
+ * match. Combine them with {@link #directory()} using
+ * {@link #or(java.io.FileFilter...)} to keep directories navigable in a
+ * <code>JFileChooser</code>.
+ *
+ * @author Erich Schroeter
+ */
+public abstract class FileFilters {
+
+	/**
+	 * Returns the cost of evaluating <code>filter</code>. Filters which are
+	 * not an {@link AbstractFileFilter} are assumed to read file content.
+	 *
+	 * @param filter
+	 *            the filter
+	 * @return the cost of evaluating <code>filter</code>
+	 */
+	public static int getCost(java.io.FileFilter filter) {
+		if (filter instanceof AbstractFileFilter) {
+			return ((AbstractFileFilter) filter).getCost();
+		}
+		return AbstractFileFilter.CONTENT_COST;
+	}
+
+	/**
+	 * Returns the description of <code>filter</code>. Filters which are not a
+	 * <code>javax.swing.filechooser.FileFilter</code> are described by their
+	 * <code>toString()</code> value.
+	 *
+	 * @param filter
+	 *            the filter
+	 * @return the description of <code>filter</code>
+	 */
+	public static String getDescription(java.io.FileFilter filter) {
+		if (filter instanceof javax.swing.filechooser.FileFilter) {
+			return ((javax.swing.filechooser.FileFilter) filter)
+					.getDescription();
+		}
+		return filter.toString();
+	}
+
+	/**
+	 * Adapts a <code>javax.swing.filechooser.FileFilter</code> so it may be
+	 * combined with other filters. The filter is assumed to read file content.
+	 *
+	 * @param filter
+	 *            the filter to adapt
+	 * @return a filter delegating to <code>filter</code>
+	 */
+	public static AbstractFileFilter of(
+			final javax.swing.filechooser.FileFilter filter) {
+		if (filter instanceof AbstractFileFilter) {
+			return (AbstractFileFilter) filter;
+		}
+		return new AbstractFileFilter() {
+
+			@Override
+			public boolean accept(File f) {
+				return filter.accept(f);
+			}
+
+			@Override
+			protected String createDescription() {
+				return filter.getDescription();
+			}
+		};
+	}
+
+	/**
+	 * Returns a filter accepting files accepted by all of the
+	 * <code>filters</code>. The filters are evaluated from cheapest to most
+	 * expensive and evaluation stops at the first filter rejecting the file.
+	 *
+	 * @param filters
+	 *            the filters to combine
+	 * @return the combined filter
+	 */
+	public static AbstractFileFilter and(java.io.FileFilter... filters) {
+		return new CompoundFileFilter(filters, true);
+	}
+
+	/**
+	 * Returns a filter accepting files accepted by any of the
+	 * <code>filters</code>. The filters are evaluated from cheapest to most
+	 * expensive and evaluation stops at the first filter accepting the file.
+	 *
+	 * @param filters
+	 *            the filters to combine
+	 * @return the combined filter
+	 */
+	public static AbstractFileFilter or(java.io.FileFilter... filters) {
+		return new CompoundFileFilter(filters, false);
+	}
+
+	/**
+	 * Returns a filter accepting files rejected by <code>filter</code>.
+	 *
+	 * @param filter
+	 *            the filter to negate
+	 * @return the negated filter
+	 */
+	public static AbstractFileFilter not(final java.io.FileFilter filter) {
+		final int cost = getCost(filter);
+		return new AbstractFileFilter() {
+
+			@Override
+			public boolean accept(File f) {
+				return !filter.accept(f);
+			}
+
+			@Override
+			public int getCost() {
+				return cost;
+			}
+
+			@Override
+			protected String createDescription() {
+				return "not " + FileFilters.getDescription(filter);
+			}
+		};
+	}
+
+	/**
+	 * Returns a filter accepting files whose name matches the
+	 * <code>glob</code> pattern, ignoring case. The following are supported
+	 * <ul>
+	 * <li><code>*</code> matches any number of characters</li>
+	 * <li><code>?</code> matches exactly one character</li>
+	 * <li><code>[abc]</code> and <code>[a-z]</code> match one character in the
+	 * set or range, <code>[!abc]</code> one character not in the set</li>
+	 * <li><code>{csv,txt}</code> matches any of the comma separated
+	 * alternatives</li>
+	 * </ul>
+	 *
+	 * @param glob
+	 *            the pattern file names must match
+	 * @return the glob filter
+	 */
+	public static AbstractFileFilter glob(String glob) {
+		return new NameFileFilter(Pattern.compile(globToRegex(glob),
+				Pattern.CASE_INSENSITIVE), glob);
+	}
+
+	/**
+	 * Returns a filter accepting files whose entire name matches the
+	 * <code>regex</code>.
+	 *
+	 * @param regex
+	 *            the regular expression file names must match
+	 * @return the regular expression filter
+	 */
+	public static AbstractFileFilter regex(String regex) {
+		return regex(Pattern.compile(regex));
+	}
+
+	/**
+	 * Returns a filter accepting files whose entire name matches the
+	 * <code>pattern</code>.
+	 *
+	 * @param pattern
+	 *            the pattern file names must match
+	 * @return the regular expression filter
+	 */
+	public static AbstractFileFilter regex(Pattern pattern) {
+		return new NameFileFilter(pattern, pattern.pattern());
+	}
+
+	/**
+	 * Returns a filter accepting files ending with any of the extensions,
+	 * ignoring case. Unlike the <code>CsvFileFilter</code> and
+	 * <code>XmlFileFilter</code> this only inspects the file's name.
+	 *
+	 * @param extensions
+	 *            the extensions including the <code>'.'</code> (e.g.
+	 *            <code>".csv"</code>)
+	 * @return the extension filter
+	 */
+	public static AbstractFileFilter extension(final String... extensions) {
+		return new AbstractFileFilter() {
+
+			@Override
+			public boolean accept(File f) {
+				String name = f.getName();
+				for (String ext : extensions) {
+					if (name.length() > ext.length()
+							&& name.regionMatches(true,
+									name.length() - ext.length(), ext, 0,
+									ext.length())) {
+						return true;
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public int getCost() {
+				return NAME_COST;
+			}
+
+			@Override
+			protected String createDescription() {
+				StringBuilder description = new StringBuilder();
+				for (String ext : extensions) {
+					if (description.length() > 0) {
+						description.append(", ");
+					}
+					description.append('*').append(ext);
+				}
+				return description.toString();
+			}
+		};
+	}
+
+	/**
+	 * Returns a filter accepting directories.
+	 *
+	 * @return the directory filter
+	 */
+	public static AbstractFileFilter directory() {
+		return new AbstractFileFilter() {
+
+			@Override
+			public boolean accept(File f) {
+				return f.isDirectory();
+			}
+
+			@Override
+			public int getCost() {
+				return STAT_COST;
+			}
+
+			@Override
+			protected String createDescription() {
+				return "directories";
+			}
+		};
+	}
+
+	/**
+	 * Returns a filter accepting files whose length is within the range.
+	 *
+	 * @param min
+	 *            the minimum length in bytes (inclusive)
+	 * @param max
+	 *            the maximum length in bytes (inclusive)
+	 * @return the size filter
+	 */
+	public static AbstractFileFilter sizeBetween(final long min, final long max) {
+		return new AbstractFileFilter() {
+
+			@Override
+			public boolean accept(File f) {
+				long length = f.length();
+				return length >= min && length <= max && f.isFile();
+			}
+
+			@Override
+			public int getCost() {
+				return STAT_COST;
+			}
+
+			@Override
+			protected String createDescription() {
+				return "size between " + min + " and " + max + " bytes";
+			}
+		};
+	}
+
+	/**
+	 * Returns a filter accepting files larger than <code>size</code> bytes.
+	 *
+	 * @param size
+	 *            the exclusive minimum length in bytes
+	 * @return the size filter
+	 */
+	public static AbstractFileFilter largerThan(long size) {
+		return sizeBetween(size + 1, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a filter accepting files smaller than <code>size</code> bytes.
+	 *
+	 * @param size
+	 *            the exclusive maximum length in bytes
+	 * @return the size filter
+	 */
+	public static AbstractFileFilter smallerThan(long size) {
+		return sizeBetween(0, size - 1);
+	}
+
+	/**
+	 * Returns a filter accepting files last modified after <code>time</code>.
+	 *
+	 * @see File#lastModified()
+	 * @param time
+	 *            the exclusive time in milliseconds since the epoch
+	 * @return the modification time filter
+	 */
+	public static AbstractFileFilter modifiedAfter(final long time) {
+		return new AbstractFileFilter() {
+
+			@Override
+			public boolean accept(File f) {
+				return f.lastModified() > time;
+			}
+
+			@Override
+			public int getCost() {
+				return STAT_COST;
+			}
+
+			@Override
+			protected String createDescription() {
+				return "modified after " + new Date(time);
+			}
+		};
+	}
+
+	/**
+	 * Returns a filter accepting existing files last modified before
+	 * <code>time</code>.
+	 *
+	 * @see File#lastModified()
+	 * @param time
+	 *            the exclusive time in milliseconds since the epoch
+	 * @return the modification time filter
+	 */
+	public static AbstractFileFilter modifiedBefore(final long time) {
+		return new AbstractFileFilter() {
+
+			@Override
+			public boolean accept(File f) {
+				long modified = f.lastModified();
+				// 0 is returned for files which do not exist
+				return modified != 0L && modified < time;
+			}
+
+			@Override
+			public int getCost() {
+				return STAT_COST;
+			}
+
+			@Override
+			protected String createDescription() {
+				return "modified before " + new Date(time);
+			}
+		};
+	}
+
+	/**
+	 * Converts a glob pattern to an equivalent regular expression.
+	 *
+	 * @param glob
+	 *            the glob pattern
+	 * @return the regular expression
+	 */
+	static String globToRegex(String glob) {
+		StringBuilder regex = new StringBuilder(glob.length() + 8);
+		boolean inGroup = false;
+		boolean inClass = false;
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (inClass) {
+				if (c == ']') {
+					inClass = false;
+				} else if (c == '\\' || c == '[' || c == '&') {
+					regex.append('\\');
+				}
+				regex.append(c);
+				continue;
+			}
+			switch (c) {
+			case '*':
+				regex.append(".*");
+				break;
+			case '?':
+				regex.append('.');
+				break;
+			case '[':
+				inClass = true;
+				regex.append('[');
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '!') {
+					regex.append('^');
+					i++;
+				}
+				break;
+			case '{':
+				inGroup = true;
+				regex.append("(?:");
+				break;
+			case '}':
+				if (inGroup) {
+					inGroup = false;
+					regex.append(')');
+				} else {
+					regex.append("\\}");
+				}
+				break;
+			case ',':
+				regex.append(inGroup ? "|" : ",");
+				break;
+			default:
+				if ("\\.^$+()|".indexOf(c) != -1) {
+					regex.append('\\');
+				}
+				regex.append(c);
+			}
+		}
+		return regex.toString();
+	}
+
+	/**
+	 * A filter matching file names against a regular expression.
+	 */
+	private static class NameFileFilter extends AbstractFileFilter {
+
+		private final Pattern pattern;
+		private final String description;
+
+		NameFileFilter(Pattern pattern, String description) {
+			this.pattern = pattern;
+			this.description = description;
+		}
+
+		@Override
+		public boolean accept(File f) {
+			return pattern.matcher(f.getName()).matches();
+		}
+
+		@Override
+		public int getCost() {
+			return NAME_COST;
+		}
+
+		@Override
+		protected String createDescription() {
+			return description;
+		}
+
+	}
+
+	/**
+	 * A filter combining other filters with a logical <em>and</em> or
+	 * <em>or</em>, evaluating them from cheapest to most expensive.
+	 */
+	private static class CompoundFileFilter extends AbstractFileFilter {
+
+		private final java.io.FileFilter[] filters;
+		private final boolean and;
+		private final int cost;
+
+		CompoundFileFilter(java.io.FileFilter[] filters, boolean and) {
+			this.filters = Arrays.copyOf(filters, filters.length);
+			this.and = and;
+			// a stable sort, so filters of equal cost keep their given order
+			Arrays.sort(this.filters, new Comparator<java.io.FileFilter>() {
+
+				@Override
+				public int compare(java.io.FileFilter o1, java.io.FileFilter o2) {
+					return FileFilters.getCost(o1) - FileFilters.getCost(o2);
+				}
+			});
+			int max = NAME_COST;
+			for (java.io.FileFilter filter : this.filters) {
+				max = Math.max(max, FileFilters.getCost(filter));
+			}
+			cost = max;
+		}
+
+		@Override
+		public boolean accept(File f) {
+			for (java.io.FileFilter filter : filters) {
+				if (filter.accept(f) != and) {
+					return !and;
+				}
+			}
+			return and;
+		}
+
+		@Override
+		public int getCost() {
+			return cost;
+		}
+
+		@Override
+		protected String createDescription() {
+			StringBuilder description = new StringBuilder("(");
+			for (java.io.FileFilter filter : filters) {
+				if (description.length() > 1) {
+					description.append(and ? " and " : " or ");
+				}
+				description.append(FileFilters.getDescription(filter));
+			}
+			return description.append(')').toString();
+		}
+
+	}
+
+}
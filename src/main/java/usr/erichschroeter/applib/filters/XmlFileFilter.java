@@ -2,8 +2,6 @@ package usr.erichschroeter.applib.filters;
 
 import java.io.File;
 
-import javax.swing.filechooser.FileFilter;
-
 import usr.erichschroeter.applib.utils.FileUtils;
 
 /**
@@ -15,11 +13,13 @@ import usr.erichschroeter.applib.utils.FileUtils;
  * <li>{@link #setIncludeXml(boolean)}</li>
  * <li>{@link #setIncludeSchema(boolean)}</li>
  * <li>{@link #setIncludeTemplate(boolean)}</li>
+ * <li>{@link #setIncludeCompressed(boolean)}, whether compressed files such as
+ * <code>data.xml.gz</code> are accepted</li>
  * </ul>
  * 
  * @author Erich Schroeter
  */
-public class XmlFileFilter extends FileFilter implements java.io.FileFilter {
+public class XmlFileFilter extends AbstractFileFilter {
 
 	/** Whether to include XML extensions. */
 	private boolean includeXml;
@@ -27,6 +27,8 @@ public class XmlFileFilter extends FileFilter implements java.io.FileFilter {
 	private boolean includeSchema;
 	/** Whether to include XML template extensions. */
 	private boolean includeTemplate;
+	/** Whether to include compressed files. */
+	private boolean includeCompressed = true;
 
 	public XmlFileFilter() {
 		this(true, true, true);
@@ -45,6 +47,7 @@ public class XmlFileFilter extends FileFilter implements java.io.FileFilter {
 
 	public void setIncludeXml(boolean includeXml) {
 		this.includeXml = includeXml;
+		invalidateDescription();
 	}
 
 	public boolean isIncludeSchema() {
@@ -53,6 +56,7 @@ public class XmlFileFilter extends FileFilter implements java.io.FileFilter {
 
 	public void setIncludeSchema(boolean includeSchema) {
 		this.includeSchema = includeSchema;
+		invalidateDescription();
 	}
 
 	public boolean isIncludeTemplate() {
@@ -61,6 +65,25 @@ public class XmlFileFilter extends FileFilter implements java.io.FileFilter {
 
 	public void setIncludeTemplate(boolean includeTemplate) {
 		this.includeTemplate = includeTemplate;
+		invalidateDescription();
+	}
+
+	public boolean isIncludeCompressed() {
+		return includeCompressed;
+	}
+
+	public void setIncludeCompressed(boolean includeCompressed) {
+		this.includeCompressed = includeCompressed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Returns {@link #STAT_COST} since directories are always accepted.
+	 */
+	@Override
+	public int getCost() {
+		return STAT_COST;
 	}
 
 	@Override
@@ -68,21 +91,25 @@ public class XmlFileFilter extends FileFilter implements java.io.FileFilter {
 		if (f.isDirectory()) {
 			return true;
 		}
-		String ext = FileUtils.getExtension(f);
-		if (includeXml && ext.equalsIgnoreCase(".xml")) {
+		String name = f.getName();
+		if (!includeCompressed && FileUtils.isCompressed(name)) {
+			return false;
+		}
+		if (includeXml && FileUtils.hasUncompressedExtension(name, "xml")) {
 			return true;
-		} else if (includeSchema && ext.equalsIgnoreCase(".xsd")) {
+		} else if (includeSchema
+				&& FileUtils.hasUncompressedExtension(name, "xsd")) {
 			return true;
 		} else if (includeTemplate
-				&& (ext.equalsIgnoreCase(".xsl") || ext
-						.equalsIgnoreCase(".xslt"))) {
+				&& (FileUtils.hasUncompressedExtension(name, "xsl") || FileUtils
+						.hasUncompressedExtension(name, "xslt"))) {
 			return true;
 		}
 		return false;
 	}
 
 	@Override
-	public String getDescription() {
+	protected String createDescription() {
 		StringBuilder ext = new StringBuilder();
 		if (isIncludeXml()) {
 			ext.append("*.xml");
@@ -0,0 +1,126 @@
+package usr.erichschroeter.applib.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import usr.erichschroeter.applib.utils.FileUtils;
+
+/**
+ * The <code>Compression</code> class consists of public static utility for
+ * reading files which may be compressed, without decompressing them to disk
+ * first.
+ * <p>
+ * gzip files are recognized by their content, so a gzip file is decompressed
+ * whatever its name. Files compressed with zlib are recognized by their
+ * <code>.deflate</code> or <code>.zz</code> extension, since their content
+ * cannot be told apart from text reliably.
+ *
+ * @author Erich Schroeter
+ */
+public abstract class Compression {
+
+	/** The size of the buffers reading and decompressing files. */
+	public static final int BUFFER_SIZE = 256 * 1024;
+
+	/**
+	 * Returns whether <code>file</code> begins with the gzip magic number.
+	 *
+	 * @param file
+	 *            the file to check
+	 * @return <code>true</code> if <code>file</code> is a gzip file, else
+	 *         <code>false</code>
+	 * @throws IOException
+	 *             if an I/O error occurs reading the file
+	 */
+	public static boolean isGzip(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return raf.length() >= 2 && raf.read() == 0x1f
+					&& raf.read() == 0x8b;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Returns whether <code>file</code> is compressed, either as a gzip file
+	 * or by its extension.
+	 *
+	 * @param file
+	 *            the file to check
+	 * @return <code>true</code> if <code>file</code> is compressed, else
+	 *         <code>false</code>
+	 * @throws IOException
+	 *             if an I/O error occurs reading the file
+	 */
+	public static boolean isCompressed(File file) throws IOException {
+		return isGzip(file) || FileUtils.isCompressed(file);
+	}
+
+	/**
+	 * Opens a buffered stream of the decompressed content of
+	 * <code>file</code>, or of its content if it is not compressed.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the stream, which must be closed
+	 * @throws IOException
+	 *             if an I/O error occurs opening the file
+	 */
+	public static InputStream open(File file) throws IOException {
+		return open(file, 1);
+	}
+
+	/**
+	 * Opens a buffered stream of the decompressed content of
+	 * <code>file</code>, decompressing gzip files with <code>threads</code>
+	 * threads.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @param threads
+	 *            the number of threads decompressing a gzip file
+	 * @return the stream, which must be closed
+	 * @throws IOException
+	 *             if an I/O error occurs opening the file
+	 * @see ParallelGzipInputStream
+	 */
+	public static InputStream open(File file, int threads) throws IOException {
+		if (isGzip(file)) {
+			if (threads > 1) {
+				return new ParallelGzipInputStream(file, threads);
+			}
+			return new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE);
+		}
+		InputStream in = new BufferedInputStream(new FileInputStream(file),
+				BUFFER_SIZE);
+		if (isZlib(file)) {
+			return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE) {
+
+				@Override
+				public void close() throws IOException {
+					super.close();
+					// the inflater is not ended when given to the stream
+					inf.end();
+				}
+			};
+		}
+		return in;
+	}
+
+	/**
+	 * Returns whether <code>file</code> is named as a zlib file.
+	 */
+	private static boolean isZlib(File file) {
+		String ext = FileUtils.getExtension(file);
+		return ext.equalsIgnoreCase(".deflate") || ext.equalsIgnoreCase(".zz");
+	}
+
+}
@@ -0,0 +1,459 @@
+package usr.erichschroeter.applib.io;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import usr.erichschroeter.applib.utils.FileUtils;
+
+/**
+ * A <code>FileIndex</code> keeps a live index of the files beneath a root
+ * directory which are accepted by a <code>FileFilter</code>, such as the
+ * <code>CsvFileFilter</code> or <code>XmlFileFilter</code>.
+ * <p>
+ * The directory tree is scanned once by {@link #build()}. After
+ * {@link #start()} is called, a <code>WatchService</code> is used to apply
+ * file creation, modification and deletion events to the index as they happen
+ * so the tree never needs to be scanned again (unless the watch service
+ * overflows). Queries such as {@link #getFiles()} and
+ * {@link #getFiles(String)} return views of the index and do not touch the
+ * file system.
+ * <p>
+ * A {@link FileIndexEvent} is fired for every file added to, modified within
+ * or removed from the index. If the changes within a directory cannot be
+ * applied, a {@link FileIndexEvent#FAILED} event is fired and the tree is
+ * rescanned so the index does not drift from the file system. Events are fired
+ * on the index's watch thread, so listeners updating a user interface should
+ * use <code>SwingUtilities.invokeLater(Runnable)</code>.
+ * <p>
+ * Directories are never part of the index; the filter only decides which
+ * regular files are indexed.
+ *
+ * @author Erich Schroeter
+ */
+public class FileIndex implements Closeable {
+
+	/** The root of the directory tree being indexed. */
+	private final Path root;
+	/** The filter files must be accepted by to be indexed. */
+	private final FileFilter filter;
+	/** All of the indexed files. */
+	private final Set<File> files;
+	/** The indexed files mapped by their lower case uncompressed extension. */
+	private final ConcurrentMap<String, Set<File>> extensions;
+	/** The directories being watched mapped by their watch key. */
+	private final Map<WatchKey, Path> directories;
+	/** The listeners to be notified when the index changes. */
+	private final List<FileIndexListener> listeners;
+	/** The service notifying the index of file system changes. */
+	private WatchService watcher;
+	/** The thread applying file system changes to the index. */
+	private Thread thread;
+
+	/**
+	 * Constructs a <code>FileIndex</code> specifying the directory to index
+	 * and the filter files must be accepted by to be indexed.
+	 *
+	 * @param root
+	 *            the root directory of the tree to index
+	 * @param filter
+	 *            the filter files must be accepted by, or <code>null</code> to
+	 *            index all files
+	 */
+	public FileIndex(File root, FileFilter filter) {
+		if (root == null) {
+			throw new NullPointerException("root cannot be null");
+		}
+		this.root = root.toPath().toAbsolutePath();
+		this.filter = filter;
+		files = Collections
+				.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+		extensions = new ConcurrentHashMap<String, Set<File>>();
+		directories = new ConcurrentHashMap<WatchKey, Path>();
+		listeners = new CopyOnWriteArrayList<FileIndexListener>();
+	}
+
+	/**
+	 * Returns the root directory being indexed.
+	 *
+	 * @return the root directory
+	 */
+	public File getRoot() {
+		return root.toFile();
+	}
+
+	/**
+	 * Scans the directory tree and indexes every file accepted by the filter.
+	 * A {@link FileIndexEvent#CREATED} event is fired for every file not
+	 * already in the index.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs reading the directory tree
+	 */
+	public synchronized void build() throws IOException {
+		if (watcher == null) {
+			watcher = FileSystems.getDefault().newWatchService();
+		}
+		scan(root, watcher);
+	}
+
+	/**
+	 * Starts applying file system events to the index on a daemon thread. The
+	 * index is built first if {@link #build()} has not been called.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs building the index
+	 */
+	public synchronized void start() throws IOException {
+		if (thread != null) {
+			return;
+		}
+		if (watcher == null) {
+			build();
+		}
+		thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				processEvents();
+			}
+		}, "FileIndex-" + root.getFileName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops watching the directory tree. The index retains its current files.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (watcher != null) {
+			watcher.close();
+			watcher = null;
+		}
+		directories.clear();
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	/**
+	 * Returns whether <code>file</code> is in the index.
+	 *
+	 * @param file
+	 *            the file to check
+	 * @return <code>true</code> if indexed, else <code>false</code>
+	 */
+	public boolean contains(File file) {
+		return files.contains(file.getAbsoluteFile());
+	}
+
+	/**
+	 * Returns the number of files in the index.
+	 *
+	 * @return the number of indexed files
+	 */
+	public int size() {
+		return files.size();
+	}
+
+	/**
+	 * Returns an unmodifiable view of every file in the index. The view
+	 * reflects later changes to the index and may be iterated while the index
+	 * is being updated.
+	 *
+	 * @return the indexed files
+	 */
+	public Set<File> getFiles() {
+		return Collections.unmodifiableSet(files);
+	}
+
+	/**
+	 * Returns an unmodifiable view of the indexed files with the specified
+	 * extension, ignoring case. Compressed files are indexed by their
+	 * extension once decompressed, so <code>data.csv.gz</code> is among the
+	 * files with the extension <code>".csv"</code>.
+	 *
+	 * @see FileUtils#getUncompressedExtension(File)
+	 * @param extension
+	 *            the extension including the <code>'.'</code> (e.g.
+	 *            <code>".csv"</code>)
+	 * @return the indexed files with <code>extension</code>
+	 */
+	public Set<File> getFiles(String extension) {
+		Set<File> set = extensions.get(extension.toLowerCase(Locale.ENGLISH));
+		if (set == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(set);
+	}
+
+	/**
+	 * Adds a listener to be notified when the index changes.
+	 *
+	 * @param listener
+	 *            the listener to add
+	 */
+	public void addFileIndexListener(FileIndexListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener previously added.
+	 *
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public void removeFileIndexListener(FileIndexListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Handles notifying the index listeners with the <code>event</code>.
+	 *
+	 * @param event
+	 *            the event to pass to the listeners
+	 */
+	protected void fireIndexChanged(FileIndexEvent event) {
+		for (FileIndexListener l : listeners) {
+			l.indexChanged(event);
+		}
+	}
+
+	/**
+	 * Returns whether <code>file</code> should be indexed.
+	 */
+	private boolean accept(File file) {
+		return filter == null || filter.accept(file);
+	}
+
+	/**
+	 * Walks the tree at <code>start</code>, registering each directory with
+	 * the watch service and indexing each accepted file.
+	 */
+	private void scan(Path start, final WatchService service)
+			throws IOException {
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir,
+					BasicFileAttributes attrs) throws IOException {
+				WatchKey key = dir.register(service, ENTRY_CREATE,
+						ENTRY_DELETE, ENTRY_MODIFY);
+				directories.put(key, dir);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file,
+					BasicFileAttributes attrs) {
+				if (attrs.isRegularFile()) {
+					add(file.toFile());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				// the file may have been removed since it was listed
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Returns the key of <code>file</code> in the extension map.
+	 */
+	private static String extensionOf(File file) {
+		return FileUtils.getUncompressedExtension(file).toLowerCase(
+				Locale.ENGLISH);
+	}
+
+	private void add(File file) {
+		if (accept(file) && files.add(file)) {
+			String ext = extensionOf(file);
+			Set<File> set = extensions.get(ext);
+			if (set == null) {
+				// files may be added by build() and the watch thread at once
+				Set<File> created = Collections
+						.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+				set = extensions.putIfAbsent(ext, created);
+				if (set == null) {
+					set = created;
+				}
+			}
+			set.add(file);
+			fireIndexChanged(new FileIndexEvent(this, file,
+					FileIndexEvent.CREATED));
+		}
+	}
+
+	private void remove(File file) {
+		if (files.remove(file)) {
+			String ext = extensionOf(file);
+			Set<File> set = extensions.get(ext);
+			if (set != null) {
+				set.remove(file);
+			}
+			fireIndexChanged(new FileIndexEvent(this, file,
+					FileIndexEvent.DELETED));
+		}
+	}
+
+	private void modify(File file) {
+		if (files.contains(file)) {
+			// the filter may inspect more than the name
+			if (accept(file)) {
+				fireIndexChanged(new FileIndexEvent(this, file,
+						FileIndexEvent.MODIFIED));
+			} else {
+				remove(file);
+			}
+		} else if (file.isFile()) {
+			add(file);
+		}
+	}
+
+	/**
+	 * Removes every indexed file beneath <code>dir</code>, which has been
+	 * deleted or moved.
+	 */
+	private void removeTree(Path dir) {
+		List<File> removed = new ArrayList<File>();
+		for (File file : files) {
+			if (file.toPath().startsWith(dir)) {
+				removed.add(file);
+			}
+		}
+		for (File file : removed) {
+			remove(file);
+		}
+		for (Map.Entry<WatchKey, Path> entry : directories.entrySet()) {
+			if (entry.getValue().startsWith(dir)) {
+				entry.getKey().cancel();
+				directories.remove(entry.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Rescans the whole tree after events have been lost, removing files which
+	 * no longer exist and adding files which were missed.
+	 */
+	private synchronized void rescan() throws IOException {
+		Set<File> before = new HashSet<File>(files);
+		for (File file : before) {
+			if (!file.isFile()) {
+				remove(file);
+			}
+		}
+		for (WatchKey key : directories.keySet()) {
+			key.cancel();
+		}
+		directories.clear();
+		if (watcher != null) {
+			scan(root, watcher);
+		}
+	}
+
+	/**
+	 * Reports the failure to apply the changes within <code>dir</code> and
+	 * rescans the tree to recover any changes lost. A failure rescanning is
+	 * reported too, and left until the next change or overflow.
+	 */
+	private void recover(Path dir, IOException e) {
+		fireIndexChanged(new FileIndexEvent(this, dir.toFile(), e));
+		try {
+			rescan();
+		} catch (ClosedWatchServiceException ex) {
+			// closed meanwhile; the watch loop stops at its next key
+		} catch (IOException ex) {
+			fireIndexChanged(new FileIndexEvent(this, root.toFile(), ex));
+		} catch (UncheckedIOException ex) {
+			fireIndexChanged(new FileIndexEvent(this, root.toFile(), ex
+					.getCause()));
+		}
+	}
+
+	/**
+	 * Applies file system events to the index until the index is closed.
+	 */
+	private void processEvents() {
+		WatchService service = watcher;
+		while (true) {
+			WatchKey key;
+			try {
+				key = service.take();
+			} catch (InterruptedException e) {
+				return;
+			} catch (ClosedWatchServiceException e) {
+				return;
+			}
+			Path dir = directories.get(key);
+			if (dir != null) {
+				try {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == OVERFLOW) {
+							rescan();
+							break;
+						}
+						Path path = dir.resolve((Path) event.context());
+						if (event.kind() == ENTRY_CREATE) {
+							if (Files.isDirectory(path)) {
+								scan(path, service);
+							} else {
+								add(path.toFile());
+							}
+						} else if (event.kind() == ENTRY_MODIFY) {
+							if (!Files.isDirectory(path)) {
+								modify(path.toFile());
+							}
+						} else if (event.kind() == ENTRY_DELETE) {
+							remove(path.toFile());
+							removeTree(path);
+						}
+					}
+				} catch (ClosedWatchServiceException e) {
+					return;
+				} catch (IOException e) {
+					recover(dir, e);
+				} catch (UncheckedIOException e) {
+					// thrown by filters which read the files they accept
+					recover(dir, e.getCause());
+				}
+			}
+			if (!key.reset()) {
+				directories.remove(key);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+package usr.erichschroeter.applib.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EventObject;
+
+/**
+ * A <code>FileIndexEvent</code> gets delivered when a file has been added to,
+ * changed within, or removed from a {@link FileIndex}, or when the index failed
+ * to apply changes to a directory.
+ * 
+ * @author Erich Schroeter
+ */
+@SuppressWarnings("serial")
+public class FileIndexEvent extends EventObject {
+
+	/** The action representing a file being added to the index. */
+	public static final int CREATED = 0;
+	/** The action representing an indexed file being modified. */
+	public static final int MODIFIED = 1;
+	/** The action representing a file being removed from the index. */
+	public static final int DELETED = 2;
+	/**
+	 * The action representing a failure to apply the changes within a
+	 * directory, after which the index rescans its tree.
+	 */
+	public static final int FAILED = 3;
+
+	/** The file for which the event is for. */
+	private File file;
+	/** The action for which this event was initiated on. */
+	private int action;
+	/** The failure of a {@link #FAILED} event. */
+	private IOException cause;
+
+	/**
+	 * Constructs a <code>FileIndexEvent</code> specifying the file and action
+	 * for which the event is for.
+	 * 
+	 * @param source
+	 *            the object on which the event initially occurred
+	 * @param file
+	 *            the file for which the event is for
+	 * @param action
+	 *            the action for which this event was initiated on
+	 */
+	public FileIndexEvent(Object source, File file, int action) {
+		super(source);
+		this.file = file;
+		this.action = action;
+	}
+
+	/**
+	 * Constructs a {@link #FAILED} <code>FileIndexEvent</code> specifying the
+	 * directory whose changes could not be applied and why.
+	 * 
+	 * @param source
+	 *            the object on which the event initially occurred
+	 * @param file
+	 *            the directory whose changes could not be applied
+	 * @param cause
+	 *            the reason the changes could not be applied
+	 */
+	public FileIndexEvent(Object source, File file, IOException cause) {
+		this(source, file, FAILED);
+		this.cause = cause;
+	}
+
+	/**
+	 * Returns the file for which this event occurred for.
+	 * 
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns what action this event occurred for.
+	 * 
+	 * @return the action value
+	 */
+	public int getAction() {
+		return action;
+	}
+
+	/**
+	 * Returns the reason the changes could not be applied.
+	 * 
+	 * @return the cause of a {@link #FAILED} event, else <code>null</code>
+	 */
+	public IOException getCause() {
+		return cause;
+	}
+
+}
@@ -0,0 +1,23 @@
+package usr.erichschroeter.applib.io;
+
+import java.util.EventListener;
+
+/**
+ * The <code>FileIndexListener</code> interface provides methods for listeners
+ * wanting to be notified when the files in a {@link FileIndex} change.
+ * 
+ * @author Erich Schroeter
+ */
+public interface FileIndexListener extends EventListener {
+
+	/**
+	 * Performs the logic when a <code>FileIndexEvent</code> is fired.
+	 * <p>
+	 * Note that this is called on the index's watch thread, not the
+	 * <em>Event Dispatch Thread</em>.
+	 * 
+	 * @param e
+	 *            the event fired
+	 */
+	public void indexChanged(FileIndexEvent e);
+}
@@ -0,0 +1,193 @@
+package usr.erichschroeter.applib.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The <code>GzipMembers</code> class consists of public static utility for
+ * writing and reading the members of a gzip file independently.
+ * <p>
+ * A gzip file may contain several <em>members</em>, each a complete gzip
+ * stream, which are decompressed as one stream. Members compressed by
+ * {@link #compress(byte[], int, int)} record their compressed length in an
+ * extra field of their header (subfield <code>'A' 'L'</code>), so a reader
+ * can find every member without decompressing the previous ones, and
+ * decompress them in parallel. Other gzip readers ignore the field.
+ *
+ * @author Erich Schroeter
+ */
+public abstract class GzipMembers {
+
+	/** The length of a member's header including the length field. */
+	static final int HEADER_LENGTH = 20;
+	/** The length of a member's trailer. */
+	static final int TRAILER_LENGTH = 8;
+
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+	private static final int FHCRC = 2;
+
+	/**
+	 * Compresses <code>length</code> bytes of <code>data</code> into a
+	 * complete gzip member recording its compressed length.
+	 *
+	 * @param data
+	 *            the bytes to compress
+	 * @param length
+	 *            the number of bytes to compress
+	 * @param level
+	 *            the <code>Deflater</code> compression level
+	 * @return a buffer containing the member
+	 */
+	public static ByteBuffer compress(byte[] data, int length, int level) {
+		Deflater deflater = new Deflater(level, true);
+		try {
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			byte[] out = new byte[length + length / 16 + 64 + HEADER_LENGTH
+					+ TRAILER_LENGTH];
+			int p = HEADER_LENGTH;
+			while (!deflater.finished()) {
+				if (p == out.length - TRAILER_LENGTH) {
+					byte[] larger = new byte[out.length * 2];
+					System.arraycopy(out, 0, larger, 0, p);
+					out = larger;
+				}
+				p += deflater.deflate(out, p, out.length - TRAILER_LENGTH - p);
+			}
+			CRC32 crc = new CRC32();
+			crc.update(data, 0, length);
+			p = putInt(out, p, (int) crc.getValue());
+			p = putInt(out, p, length);
+			// magic, deflate, extra field, no time, no extra flags, unknown OS
+			byte[] header = { 0x1f, (byte) 0x8b, 8, FEXTRA, 0, 0, 0, 0, 0,
+					(byte) 0xff, 8, 0, 'A', 'L', 4, 0 };
+			System.arraycopy(header, 0, out, 0, header.length);
+			putInt(out, header.length, p);
+			return ByteBuffer.wrap(out, 0, p);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Returns whether <code>header</code> begins a deflated gzip member.
+	 *
+	 * @param header
+	 *            the bytes to check
+	 * @return <code>true</code> if <code>header</code> is a gzip header, else
+	 *         <code>false</code>
+	 */
+	static boolean isMember(ByteBuffer header) {
+		int p = header.position();
+		return header.remaining() >= 10 && (header.get(p) & 0xff) == 0x1f
+				&& (header.get(p + 1) & 0xff) == 0x8b && header.get(p + 2) == 8;
+	}
+
+	/**
+	 * Returns the length of the member beginning with <code>header</code>,
+	 * as recorded by {@link #compress(byte[], int, int)}.
+	 *
+	 * @param header
+	 *            at least the first {@value #HEADER_LENGTH} bytes of a member
+	 * @return the length of the member, or -1 if the member does not record
+	 *         its length
+	 * @throws IOException
+	 *             if <code>header</code> is not a gzip header
+	 */
+	static int getMemberLength(ByteBuffer header) throws IOException {
+		if (!isMember(header)) {
+			throw new IOException("not in gzip format");
+		}
+		int p = header.position();
+		if ((header.get(p + 3) & FEXTRA) == 0
+				|| header.remaining() < HEADER_LENGTH
+				|| header.get(p + 12) != 'A' || header.get(p + 13) != 'L'
+				|| header.get(p + 14) != 4 || header.get(p + 15) != 0) {
+			return -1;
+		}
+		return getInt(header, p + 16);
+	}
+
+	/**
+	 * Decompresses a complete member, checking its CRC and length.
+	 *
+	 * @param member
+	 *            the member's bytes
+	 * @param length
+	 *            the length of the member
+	 * @return the decompressed bytes
+	 * @throws IOException
+	 *             if the member is corrupt
+	 */
+	static byte[] decompress(byte[] member, int length) throws IOException {
+		int flags = member[3];
+		int p = 10;
+		if ((flags & FEXTRA) != 0) {
+			p += 2 + ((member[p] & 0xff) | (member[p + 1] & 0xff) << 8);
+		}
+		if ((flags & FNAME) != 0) {
+			while (member[p++] != 0) {
+			}
+		}
+		if ((flags & FCOMMENT) != 0) {
+			while (member[p++] != 0) {
+			}
+		}
+		if ((flags & FHCRC) != 0) {
+			p += 2;
+		}
+		ByteBuffer trailer = ByteBuffer.wrap(member, length - TRAILER_LENGTH,
+				TRAILER_LENGTH);
+		int crc = getInt(trailer, trailer.position());
+		byte[] out = new byte[getInt(trailer, trailer.position() + 4)];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(member, p, length - TRAILER_LENGTH - p);
+			int n = 0;
+			while (n < out.length) {
+				int inflated = inflater.inflate(out, n, out.length - n);
+				if (inflated == 0
+						&& (inflater.finished() || inflater.needsInput() || inflater
+								.needsDictionary())) {
+					break;
+				}
+				n += inflated;
+			}
+			// the CRC below detects any other corruption
+			if (n != out.length) {
+				throw new IOException("corrupt gzip member");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("corrupt gzip member", e);
+		} finally {
+			inflater.end();
+		}
+		CRC32 check = new CRC32();
+		check.update(out, 0, out.length);
+		if ((int) check.getValue() != crc) {
+			throw new IOException("gzip member CRC mismatch");
+		}
+		return out;
+	}
+
+	private static int putInt(byte[] out, int p, int value) {
+		out[p++] = (byte) value;
+		out[p++] = (byte) (value >>> 8);
+		out[p++] = (byte) (value >>> 16);
+		out[p++] = (byte) (value >>> 24);
+		return p;
+	}
+
+	private static int getInt(ByteBuffer buffer, int p) {
+		return (buffer.get(p) & 0xff) | (buffer.get(p + 1) & 0xff) << 8
+				| (buffer.get(p + 2) & 0xff) << 16
+				| (buffer.get(p + 3) & 0xff) << 24;
+	}
+
+}
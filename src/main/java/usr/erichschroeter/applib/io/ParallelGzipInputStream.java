@@ -0,0 +1,210 @@
+package usr.erichschroeter.applib.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A <code>ParallelGzipInputStream</code> decompresses a multi-member gzip
+ * file using several threads.
+ * <p>
+ * Members which record their length, as written by {@link GzipMembers} (e.g.
+ * by <code>CsvWriter.openCompressed</code>), are read ahead and decompressed
+ * on a thread pool, and returned in order. From the first member which does
+ * not record its length, such as any member written by the standard gzip
+ * tool, the rest of the file is decompressed by a
+ * <code>GZIPInputStream</code> on the reading thread. As with
+ * <code>GZIPInputStream</code>, bytes after the last member which do not
+ * begin another member, such as zero padding, are ignored.
+ *
+ * @author Erich Schroeter
+ */
+public class ParallelGzipInputStream extends InputStream {
+
+	/** The size of the buffers of the sequential stream. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** The file being read. */
+	private final RandomAccessFile file;
+	/** The channel of the file. */
+	private final FileChannel channel;
+	/** The decompressing threads. */
+	private final ExecutorService pool;
+	/** The members being decompressed, in order. */
+	private final Deque<Future<byte[]>> pending;
+	/** The maximum number of members being decompressed at a time. */
+	private final int maxPending;
+	/** The position of the next member to read ahead. */
+	private long position;
+	/** The stream reading the members which do not record their length. */
+	private InputStream sequential;
+	/** The decompressed bytes being returned. */
+	private byte[] block;
+	/** The index of the next byte of the block. */
+	private int index;
+	/** The index after the last byte of the block. */
+	private int limit;
+	/** The buffer of the sequential stream. */
+	private byte[] buffer;
+
+	/**
+	 * Constructs a <code>ParallelGzipInputStream</code> reading
+	 * <code>file</code> with <code>threads</code> threads.
+	 *
+	 * @param file
+	 *            the gzip file to read
+	 * @param threads
+	 *            the number of threads decompressing members
+	 * @throws IOException
+	 *             if an I/O error occurs opening the file
+	 */
+	public ParallelGzipInputStream(File file, int threads) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		this.channel = this.file.getChannel();
+		this.pool = Executors.newFixedThreadPool(threads);
+		this.pending = new ArrayDeque<Future<byte[]>>();
+		this.maxPending = threads * 2;
+		this.block = new byte[0];
+	}
+
+	@Override
+	public int read() throws IOException {
+		while (index == limit) {
+			if (!nextBlock()) {
+				return -1;
+			}
+		}
+		return block[index++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (index == limit) {
+			if (!nextBlock()) {
+				return -1;
+			}
+		}
+		int n = Math.min(len, limit - index);
+		System.arraycopy(block, index, b, off, n);
+		index += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return limit - index;
+	}
+
+	/**
+	 * Stops the decompressing threads and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		pool.shutdownNow();
+		if (sequential != null) {
+			sequential.close();
+		}
+		file.close();
+	}
+
+	/**
+	 * Makes the next decompressed bytes the current block.
+	 *
+	 * @return <code>false</code> at the end of the file
+	 */
+	private boolean nextBlock() throws IOException {
+		readAhead();
+		if (!pending.isEmpty()) {
+			try {
+				block = pending.removeFirst().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted decompressing");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				throw cause instanceof IOException ? (IOException) cause
+						: new IOException(cause);
+			}
+			index = 0;
+			limit = block.length;
+			return true;
+		}
+		if (sequential != null) {
+			if (buffer == null) {
+				buffer = new byte[BUFFER_SIZE];
+			}
+			int n = sequential.read(buffer);
+			if (n < 0) {
+				return false;
+			}
+			block = buffer;
+			index = 0;
+			limit = n;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Submits members to be decompressed until enough are pending.
+	 */
+	private void readAhead() throws IOException {
+		long size = channel.size();
+		while (sequential == null && pending.size() < maxPending
+				&& position < size) {
+			ByteBuffer header = ByteBuffer.allocate(GzipMembers.HEADER_LENGTH);
+			while (header.hasRemaining()
+					&& channel.read(header, position + header.position()) > 0) {
+			}
+			header.flip();
+			if (position > 0 && !GzipMembers.isMember(header)) {
+				// trailing bytes, such as padding, are ignored like
+				// GZIPInputStream does
+				position = size;
+				return;
+			}
+			final int length = GzipMembers.isMember(header) ? GzipMembers
+					.getMemberLength(header) : -1;
+			if (length < GzipMembers.HEADER_LENGTH
+					+ GzipMembers.TRAILER_LENGTH
+					|| position + length > size) {
+				// read the rest of the file as one stream
+				channel.position(position);
+				sequential = new GZIPInputStream(new BufferedInputStream(
+						Channels.newInputStream(channel), BUFFER_SIZE),
+						BUFFER_SIZE);
+				return;
+			}
+			final ByteBuffer member = ByteBuffer.allocate(length);
+			while (member.hasRemaining()
+					&& channel.read(member, position + member.position()) > 0) {
+			}
+			position += length;
+			pending.add(pool.submit(new Callable<byte[]>() {
+
+				@Override
+				public byte[] call() throws IOException {
+					return GzipMembers.decompress(member.array(), length);
+				}
+			}));
+		}
+	}
+
+}
@@ -141,4 +141,32 @@ public class ModelManager {
 		}
 	}
 
+	/**
+	 * Adds a listener to be notified of management events.
+	 * <p>
+	 * If <code>listener</code> is <code>null</code>, this method does nothing.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 */
+	public void addModelManagerListener(ModelManagerListener listener) {
+		if (listener != null) {
+			listeners.add(listener);
+		}
+	}
+
+	/**
+	 * Removes a listener from being notified of management events.
+	 * <p>
+	 * If <code>listener</code> is <code>null</code>, this method does nothing.
+	 * 
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public void removeModelManagerListener(ModelManagerListener listener) {
+		if (listener != null) {
+			listeners.remove(listener);
+		}
+	}
+
 }
@@ -0,0 +1,78 @@
+package usr.erichschroeter.applib.utils;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+import javax.swing.Icon;
+
+/**
+ * An <code>AtlasIcon</code> is an <code>Icon</code> painting a region of an
+ * atlas image shared with other icons.
+ *
+ * @author Erich Schroeter
+ * @see IconAtlas
+ */
+public class AtlasIcon implements Icon {
+
+	/** The atlas holding the icon. */
+	private final BufferedImage atlas;
+	/** The left of the icon's region in the atlas. */
+	private final int x;
+	/** The top of the icon's region in the atlas. */
+	private final int y;
+	/** The width of the icon. */
+	private final int width;
+	/** The height of the icon. */
+	private final int height;
+
+	/**
+	 * Constructs an <code>AtlasIcon</code> of the region of
+	 * <code>atlas</code> at <code>(x, y)</code> of the specified size.
+	 *
+	 * @param atlas
+	 *            the atlas image
+	 * @param x
+	 *            the left of the region
+	 * @param y
+	 *            the top of the region
+	 * @param width
+	 *            the width of the region
+	 * @param height
+	 *            the height of the region
+	 */
+	public AtlasIcon(BufferedImage atlas, int x, int y, int width, int height) {
+		this.atlas = atlas;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Returns the icon's region of the atlas as an image sharing the atlas's
+	 * pixels.
+	 *
+	 * @return the icon's image
+	 */
+	public BufferedImage getImage() {
+		return atlas.getSubimage(x, y, width, height);
+	}
+
+	@Override
+	public void paintIcon(Component c, Graphics g, int x, int y) {
+		g.drawImage(atlas, x, y, x + width, y + height, this.x, this.y,
+				this.x + width, this.y + height, c);
+	}
+
+	@Override
+	public int getIconWidth() {
+		return width;
+	}
+
+	@Override
+	public int getIconHeight() {
+		return height;
+	}
+
+}
@@ -0,0 +1,25 @@
+package usr.erichschroeter.applib.utils;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * The <code>Browser</code> interface is the backend a {@link BrowserLauncher}
+ * opens links with.
+ * 
+ * @author Erich Schroeter
+ * @see BrowserLauncher#DESKTOP
+ */
+public interface Browser {
+
+	/**
+	 * Opens <code>uri</code> in a web browser. This may block until the
+	 * browser is launched, and is called on the launcher's thread.
+	 * 
+	 * @param uri
+	 *            the address to open
+	 * @throws IOException
+	 *             if the browser cannot be launched
+	 */
+	public void browse(URI uri) throws IOException;
+}
@@ -0,0 +1,230 @@
+package usr.erichschroeter.applib.utils;
+
+import java.awt.Desktop;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * A <code>BrowserLauncher</code> opens links in a web browser on a thread of
+ * its own, so launching a browser, which may take seconds, never blocks the
+ * caller or the <em>Event Dispatch Thread</em>.
+ * <p>
+ * Each request returns a future completing once the browser is launched.
+ * Requesting a link already being opened, or opened within the repeat
+ * interval, returns the earlier request's future instead of opening it again,
+ * so a user clicking a link several times gets one browser window. A
+ * <code>LaunchListener</code> is notified on the <em>Event Dispatch
+ * Thread</em> if the link fails to open.
+ * <p>
+ * Links are opened by a {@link Browser}, {@link #DESKTOP} by default, which
+ * may be replaced to open links some other way or to test without a browser.
+ *
+ * @author Erich Schroeter
+ * @see Utils#openInWebBrowser(String)
+ */
+public class BrowserLauncher {
+
+	/** The browser opening links with <code>java.awt.Desktop</code>. */
+	public static final Browser DESKTOP = new Browser() {
+
+		@Override
+		public void browse(URI uri) throws IOException {
+			if (!Desktop.isDesktopSupported()
+					|| !Desktop.getDesktop().isSupported(Desktop.Action.BROWSE)) {
+				throw new UnsupportedOperationException(
+						"Java is not able to launch links on this computer");
+			}
+			Desktop.getDesktop().browse(uri);
+		}
+	};
+
+	/**
+	 * The default time, in milliseconds, during which requesting a link again
+	 * returns the earlier request.
+	 */
+	public static final long DEFAULT_REPEAT_INTERVAL = 1000;
+
+	/** The launcher shared by the application, created when first needed. */
+	private static BrowserLauncher defaultLauncher;
+
+	/** The browser opening links. */
+	private volatile Browser browser;
+	/** The repeat interval in nanoseconds. */
+	private final long repeatInterval;
+	/** The thread opening links. */
+	private final ExecutorService executor;
+	/** The recent requests keyed by address. */
+	private final Map<URI, Request> requests;
+
+	/**
+	 * Constructs a <code>BrowserLauncher</code> opening links with
+	 * <code>browser</code>.
+	 *
+	 * @param browser
+	 *            the browser opening links
+	 */
+	public BrowserLauncher(Browser browser) {
+		this(browser, DEFAULT_REPEAT_INTERVAL);
+	}
+
+	/**
+	 * Constructs a <code>BrowserLauncher</code> opening links with
+	 * <code>browser</code>.
+	 *
+	 * @param browser
+	 *            the browser opening links
+	 * @param repeatInterval
+	 *            the time, in milliseconds, during which requesting a link
+	 *            again returns the earlier request
+	 */
+	public BrowserLauncher(Browser browser, long repeatInterval) {
+		this.browser = browser;
+		this.repeatInterval = TimeUnit.MILLISECONDS.toNanos(repeatInterval);
+		this.requests = new HashMap<URI, Request>();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 5,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "browser-launcher");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns the launcher shared by the application, opening links with
+	 * {@link #DESKTOP} unless its browser is replaced.
+	 *
+	 * @return the default launcher
+	 */
+	public static synchronized BrowserLauncher getDefault() {
+		if (defaultLauncher == null) {
+			defaultLauncher = new BrowserLauncher(DESKTOP);
+		}
+		return defaultLauncher;
+	}
+
+	/**
+	 * Sets the browser opening links.
+	 *
+	 * @param browser
+	 *            the browser
+	 */
+	public void setBrowser(Browser browser) {
+		this.browser = browser;
+	}
+
+	/**
+	 * Returns the browser opening links.
+	 *
+	 * @return the browser
+	 */
+	public Browser getBrowser() {
+		return browser;
+	}
+
+	/**
+	 * Opens <code>uri</code> in the background.
+	 *
+	 * @param uri
+	 *            the address to open
+	 * @return the pending launch
+	 * @see #browse(URI, LaunchListener)
+	 */
+	public Future<Void> browse(URI uri) {
+		return browse(uri, null);
+	}
+
+	/**
+	 * Opens <code>uri</code> in the background, unless it is being opened or
+	 * was requested within the repeat interval, in which case the earlier
+	 * request is returned and <code>listener</code> is ignored.
+	 * <p>
+	 * The returned future throws an <code>ExecutionException</code> wrapping
+	 * the failure if the link cannot be opened, which is also fired to
+	 * <code>listener</code> on the <em>Event Dispatch Thread</em>.
+	 *
+	 * @param uri
+	 *            the address to open
+	 * @param listener
+	 *            the listener notified of a failure, or <code>null</code>
+	 * @return the pending launch
+	 */
+	public Future<Void> browse(final URI uri, final LaunchListener listener) {
+		long now = System.nanoTime();
+		Request request;
+		synchronized (requests) {
+			Iterator<Request> i = requests.values().iterator();
+			while (i.hasNext()) {
+				Request r = i.next();
+				if (r.isDone() && now - r.time >= repeatInterval) {
+					i.remove();
+				}
+			}
+			request = requests.get(uri);
+			if (request != null) {
+				return request;
+			}
+			request = new Request(now, new Callable<Void>() {
+
+				@Override
+				public Void call() throws IOException {
+					browser.browse(uri);
+					return null;
+				}
+			}) {
+
+				@Override
+				protected void setException(Throwable t) {
+					super.setException(t);
+					if (listener != null && t instanceof Exception) {
+						final LaunchEvent e = new LaunchEvent(
+								BrowserLauncher.this, uri, (Exception) t);
+						SwingUtilities.invokeLater(new Runnable() {
+
+							@Override
+							public void run() {
+								listener.launchFailed(e);
+							}
+						});
+					}
+				}
+			};
+			requests.put(uri, request);
+		}
+		executor.execute(request);
+		return request;
+	}
+
+	/**
+	 * A request to open a link and when it was made.
+	 */
+	private static class Request extends FutureTask<Void> {
+
+		final long time;
+
+		Request(long time, Callable<Void> callable) {
+			super(callable);
+			this.time = time;
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package usr.erichschroeter.applib.utils;
+
+import java.io.IOException;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * A <code>ByteArrayImageInputStream</code> reads an image from a range of a
+ * byte array. Unlike the streams created by
+ * <code>ImageIO.createImageInputStream</code>, it never caches the data,
+ * whether in memory or in a temporary file, since it is already in memory.
+ * 
+ * @author Erich Schroeter
+ */
+class ByteArrayImageInputStream extends ImageInputStreamImpl {
+
+	/** The array holding the image. */
+	private final byte[] data;
+	/** The index of the first byte of the image. */
+	private final int offset;
+	/** The number of bytes of the image. */
+	private final int length;
+
+	/**
+	 * Constructs a <code>ByteArrayImageInputStream</code> reading
+	 * <code>length</code> bytes of <code>data</code> from
+	 * <code>offset</code>.
+	 * 
+	 * @param data
+	 *            the array holding the image
+	 * @param offset
+	 *            the index of the first byte
+	 * @param length
+	 *            the number of bytes
+	 */
+	ByteArrayImageInputStream(byte[] data, int offset, int length) {
+		this.data = data;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public int read() throws IOException {
+		checkClosed();
+		bitOffset = 0;
+		if (streamPos >= length) {
+			return -1;
+		}
+		return data[offset + (int) streamPos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		checkClosed();
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		bitOffset = 0;
+		if (len == 0) {
+			return 0;
+		} else if (streamPos >= length) {
+			return -1;
+		}
+		int n = (int) Math.min(len, length - streamPos);
+		System.arraycopy(data, offset + (int) streamPos, b, off, n);
+		streamPos += n;
+		return n;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+
+}
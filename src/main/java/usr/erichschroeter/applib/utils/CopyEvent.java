@@ -0,0 +1,108 @@
+package usr.erichschroeter.applib.utils;
+
+import java.io.File;
+import java.util.EventObject;
+
+/**
+ * A <code>CopyEvent</code> gets delivered when part of a file has been copied
+ * by {@link FileUtils}.
+ * 
+ * @author Erich Schroeter
+ */
+@SuppressWarnings("serial")
+public class CopyEvent extends EventObject {
+
+	/** The file being copied. */
+	private File file;
+	/** The file being written. */
+	private File target;
+	/** The number of bytes of the file copied so far. */
+	private long bytes;
+	/** The length of the file. */
+	private long length;
+	/** The number of bytes copied so far by the whole operation. */
+	private long totalBytes;
+
+	/**
+	 * Constructs a <code>CopyEvent</code> specifying the file and the
+	 * progress of its copy.
+	 * 
+	 * @param source
+	 *            the object on which the event initially occurred
+	 * @param file
+	 *            the file being copied
+	 * @param target
+	 *            the file being written
+	 * @param bytes
+	 *            the number of bytes of the file copied so far
+	 * @param length
+	 *            the length of the file
+	 * @param totalBytes
+	 *            the number of bytes copied so far by the whole operation
+	 */
+	public CopyEvent(Object source, File file, File target, long bytes,
+			long length, long totalBytes) {
+		super(source);
+		this.file = file;
+		this.target = target;
+		this.bytes = bytes;
+		this.length = length;
+		this.totalBytes = totalBytes;
+	}
+
+	/**
+	 * Returns the file being copied.
+	 * 
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the file being written.
+	 * 
+	 * @return the copy
+	 */
+	public File getTarget() {
+		return target;
+	}
+
+	/**
+	 * Returns the number of bytes of the file copied so far.
+	 * 
+	 * @return the bytes copied
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the length of the file.
+	 * 
+	 * @return the length in bytes
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns whether the whole file has been copied.
+	 * 
+	 * @return <code>true</code> if this is the file's last event
+	 */
+	public boolean isComplete() {
+		return bytes == length;
+	}
+
+	/**
+	 * Returns the number of bytes copied so far by the whole operation, which
+	 * for a tree copy includes the other files copied.
+	 * 
+	 * @return the total bytes copied
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+}
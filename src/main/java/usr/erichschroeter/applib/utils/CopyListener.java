@@ -0,0 +1,25 @@
+package usr.erichschroeter.applib.utils;
+
+import java.util.EventListener;
+
+/**
+ * The <code>CopyListener</code> interface provides methods for listeners
+ * wanting to be notified of the progress of copies made by {@link FileUtils}.
+ * 
+ * @author Erich Schroeter
+ */
+public interface CopyListener extends EventListener {
+
+	/**
+	 * Performs the logic when a <code>CopyEvent</code> is fired, after each
+	 * chunk of a file is copied.
+	 * <p>
+	 * Note that this is called on the thread copying the file, which for a
+	 * tree copy is one of several worker threads, not the
+	 * <em>Event Dispatch Thread</em>.
+	 * 
+	 * @param e
+	 *            the event fired
+	 */
+	public void copyProgressed(CopyEvent e);
+}
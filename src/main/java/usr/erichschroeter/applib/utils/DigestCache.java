@@ -0,0 +1,253 @@
+package usr.erichschroeter.applib.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A <code>DigestCache</code> remembers the digests of files, keyed by their
+ * path, size and last modified time, to tell which files have changed.
+ * <p>
+ * Once a file is cached, {@link #hasChanged(File)} only reads the file's
+ * attributes while its size and time are unchanged. When they do change the
+ * file is hashed again, so a file rewritten with the same contents is still
+ * reported as unchanged. Files are hashed with
+ * {@link FileUtils#treeDigest(File, int)}.
+ * <p>
+ * The cache may be saved and loaded between runs, letting a pipeline skip the
+ * inputs that have not changed since it last ran:
+ *
+ * <pre>
+ * DigestCache cache = new DigestCache();
+ * if (state.exists()) {
+ * 	cache.load(state);
+ * }
+ * for (File input : inputs) {
+ * 	if (cache.hasChanged(input)) {
+ * 		process(input);
+ * 	}
+ * }
+ * cache.save(state);
+ * </pre>
+ *
+ * A <code>DigestCache</code> is thread safe.
+ *
+ * @author Erich Schroeter
+ */
+public class DigestCache {
+
+	/** The magic number identifying a saved cache. */
+	private static final int MAGIC = 0x44474331;
+	/** The version of the saved cache format. */
+	private static final int VERSION = 1;
+	/** The size of the buffers loading and saving the cache. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The cached digests keyed by absolute path. */
+	private final Map<String, Entry> entries;
+	/** The number of threads hashing a file. */
+	private final int threads;
+
+	/**
+	 * Constructs a <code>DigestCache</code> hashing with a thread for each
+	 * processor.
+	 */
+	public DigestCache() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs a <code>DigestCache</code> hashing each file with up to
+	 * <code>threads</code> threads.
+	 *
+	 * @param threads
+	 *            the number of threads hashing a file
+	 */
+	public DigestCache(int threads) {
+		this.entries = new ConcurrentHashMap<String, Entry>();
+		this.threads = threads;
+	}
+
+	/**
+	 * Returns the digest of <code>file</code>, hashing it unless it is cached
+	 * with the file's current size and last modified time.
+	 *
+	 * @param file
+	 *            the file to hash
+	 * @return the digest
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public byte[] getDigest(File file) throws IOException {
+		return update(file).digest.clone();
+	}
+
+	/**
+	 * Returns whether the contents of <code>file</code> have changed since it
+	 * was last cached, caching its current digest. A file not yet cached has
+	 * changed.
+	 *
+	 * @param file
+	 *            the file to check
+	 * @return <code>true</code> if the file has changed, else
+	 *         <code>false</code>
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public boolean hasChanged(File file) throws IOException {
+		Entry previous = entries.get(key(file));
+		Entry current = update(file);
+		return previous == null
+				|| (previous != current && !MessageDigest.isEqual(
+						previous.digest, current.digest));
+	}
+
+	/**
+	 * Removes the digest of <code>file</code>.
+	 *
+	 * @param file
+	 *            the file to forget
+	 */
+	public void remove(File file) {
+		entries.remove(key(file));
+	}
+
+	/**
+	 * Removes all digests.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Returns the number of files cached.
+	 *
+	 * @return the number of files
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Adds the digests saved in <code>file</code> by {@link #save(File)}.
+	 *
+	 * @param file
+	 *            the saved cache
+	 * @throws IOException
+	 *             if an I/O error occurs, or <code>file</code> is not a saved
+	 *             cache
+	 */
+	public void load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file), BUFFER_SIZE));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a saved digest cache");
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = in.readUTF();
+				long size = in.readLong();
+				long modified = in.readLong();
+				byte[] digest = new byte[in.readUnsignedByte()];
+				in.readFully(digest);
+				entries.put(path, new Entry(size, modified, digest));
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Saves the digests to <code>file</code>, replacing it atomically where
+	 * the file system supports it.
+	 *
+	 * @param file
+	 *            the file to write
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void save(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(temp), BUFFER_SIZE));
+		try {
+			// a snapshot, since other threads may be updating the cache
+			Map<String, Entry> snapshot = new HashMap<String, Entry>(entries);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(snapshot.size());
+			for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+				Entry e = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(e.size);
+				out.writeLong(e.modified);
+				out.writeByte(e.digest.length);
+				out.write(e.digest);
+			}
+		} finally {
+			out.close();
+		}
+		try {
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Returns the entry of <code>file</code>, hashing the file if the cached
+	 * entry is missing or out of date.
+	 */
+	private Entry update(File file) throws IOException {
+		String key = key(file);
+		BasicFileAttributes attrs = Files.readAttributes(file.toPath(),
+				BasicFileAttributes.class);
+		long size = attrs.size();
+		long modified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+		Entry entry = entries.get(key);
+		if (entry == null || entry.size != size || entry.modified != modified) {
+			entry = new Entry(size, modified, FileUtils.treeDigest(file,
+					threads));
+			entries.put(key, entry);
+		}
+		return entry;
+	}
+
+	private static String key(File file) {
+		return file.getAbsolutePath();
+	}
+
+	/**
+	 * The digest of a file and the attributes it was hashed with.
+	 */
+	private static class Entry {
+
+		private final long size;
+		private final long modified;
+		private final byte[] digest;
+
+		Entry(long size, long modified, byte[] digest) {
+			this.size = size;
+			this.modified = modified;
+			this.digest = digest;
+		}
+	}
+
+}
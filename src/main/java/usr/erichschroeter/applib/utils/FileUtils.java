@@ -1,15 +1,78 @@
 package usr.erichschroeter.applib.utils;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
 /**
  * The <code>FileUtils</code> class consists of public static utility for files
  * whose methods may not be unique for any particular class.
+ * <p>
+ * Besides <code>File</code>s, names may be given as <code>CharSequence</code>s.
+ * Those methods return index ranges rather than substrings and compare in
+ * place, so they do not allocate and are suited to loops over many directory
+ * entries. A name given as a <code>CharSequence</code> may include its parent
+ * directories, separated by <code>'/'</code> or {@link File#separatorChar}.
+ * The <code>Path</code> overloads check {@link Path#toString()} with the
+ * <code>CharSequence</code> methods, and the ranges of a <code>Path</code>
+ * are found by passing its <code>toString()</code> value to them.
+ * <p>
+ * Files are copied with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}, letting the operating system copy
+ * the bytes without passing them through the Java heap. Combined with
+ * {@link #changeExtension(File, String)}, {@link #move(File, File)} renames
+ * files in batches:
+ * 
+ * <pre>
+ * for (File file : files) {
+ * 	FileUtils.move(file, FileUtils.changeExtension(file, &quot;bak&quot;));
+ * }
+ * </pre>
+ * <p>
+ * File contents are hashed from memory mapped segments. A
+ * {@link DigestCache} remembers the digests of files so unchanged files need
+ * not be read again.
  * 
  * @author Erich Schroeter
  */
 public abstract class FileUtils {
 
+	/** The extensions of compressed files. */
+	private static final String[] COMPRESSION_EXTENSIONS = { "gz", "gzip",
+			"deflate", "zz" };
+	/** The number of bytes transferred between progress events. */
+	private static final long COPY_CHUNK_SIZE = 8L << 20;
+	/** The number of bytes mapped at a time when hashing a file. */
+	private static final int HASH_SEGMENT_SIZE = 64 << 20;
+	/** The size of the segments hashed by {@link #treeDigest(File, int)}. */
+	public static final int TREE_SEGMENT_SIZE = 8 << 20;
+	/** Segments smaller than this are read rather than mapped. */
+	private static final int MAP_THRESHOLD = 256 << 10;
+
 	/**
 	 * Returns whether <code>file</code> has an extension.
 	 * <p>
@@ -23,26 +86,209 @@ public abstract class FileUtils {
 	 *         rules above, else <code>false</code>
 	 */
 	public static boolean hasExtension(File file) {
-		if (file.isDirectory()) {
+		return !file.isDirectory() && hasExtension(file.getName());
+	}
+
+	/**
+	 * Returns whether the name at the end of <code>path</code> has an
+	 * extension, following the rules of {@link #hasExtension(File)} without
+	 * checking whether it is a directory.
+	 *
+	 * @param path
+	 *            the name to check
+	 * @return <code>true</code> if <code>path</code> has an extension, else
+	 *         <code>false</code>
+	 */
+	public static boolean hasExtension(CharSequence path) {
+		int start = getNameStart(path);
+		int end = path.length();
+		if (end - start < 2 || path.charAt(start) == '.'
+				|| path.charAt(end - 1) == '.') {
 			return false;
 		}
-		boolean exists = false;
-		byte[] name = file.getName().getBytes();
-		for (int i = 0; i < name.length; i++) {
-			// make sure '.' is not the first char
-			if (i == 0 && name[i] == '.') {
-				exists = false;
-			}
-			// make sure '.' is not the last char
-			if (i == (name.length - 1) && name[name.length - 1] == '.') {
-				exists = false;
+		return getExtensionStart(path) < end;
+	}
+
+	/**
+	 * Returns whether the name of <code>path</code> has an extension.
+	 *
+	 * @param path
+	 *            the path to check
+	 * @return <code>true</code> if <code>path</code> has an extension, else
+	 *         <code>false</code>
+	 * @see #hasExtension(CharSequence)
+	 */
+	public static boolean hasExtension(Path path) {
+		return hasExtension(path.toString());
+	}
+
+	/**
+	 * Returns whether the extension of the name at the end of
+	 * <code>path</code> is <code>ext</code>, ignoring case.
+	 *
+	 * @param path
+	 *            the name to check
+	 * @param ext
+	 *            the extension (excluding the <code>'.'</code>)
+	 * @return <code>true</code> if <code>path</code> has the extension, else
+	 *         <code>false</code>
+	 */
+	public static boolean hasExtension(CharSequence path, String ext) {
+		return regionMatches(path, getExtensionStart(path), path.length(),
+				ext);
+	}
+
+	/**
+	 * Returns whether the extension of <code>path</code> is <code>ext</code>,
+	 * ignoring case.
+	 *
+	 * @param path
+	 *            the path to check
+	 * @param ext
+	 *            the extension (excluding the <code>'.'</code>)
+	 * @return <code>true</code> if <code>path</code> has the extension, else
+	 *         <code>false</code>
+	 * @see #hasExtension(CharSequence, String)
+	 */
+	public static boolean hasExtension(Path path, String ext) {
+		return hasExtension(path.toString(), ext);
+	}
+
+	/**
+	 * Returns whether the extension of the name at the end of
+	 * <code>path</code>, once decompressed, is <code>ext</code>, ignoring
+	 * case. For example both <code>data.csv</code> and
+	 * <code>data.csv.gz</code> have the uncompressed extension
+	 * <code>"csv"</code>.
+	 *
+	 * @param path
+	 *            the name to check
+	 * @param ext
+	 *            the extension (excluding the <code>'.'</code>)
+	 * @return <code>true</code> if <code>path</code> has the extension, else
+	 *         <code>false</code>
+	 * @see #isCompressed(CharSequence)
+	 */
+	public static boolean hasUncompressedExtension(CharSequence path,
+			String ext) {
+		int end = path.length();
+		int start = getExtensionStart(path, end);
+		if (isCompressed(path, start, end)) {
+			end = start;
+			start = getExtensionStart(path, end);
+		}
+		return regionMatches(path, start, end, ext);
+	}
+
+	/**
+	 * Returns whether the extension of <code>path</code>, once decompressed,
+	 * is <code>ext</code>, ignoring case.
+	 *
+	 * @param path
+	 *            the path to check
+	 * @param ext
+	 *            the extension (excluding the <code>'.'</code>)
+	 * @return <code>true</code> if <code>path</code> has the extension, else
+	 *         <code>false</code>
+	 * @see #hasUncompressedExtension(CharSequence, String)
+	 */
+	public static boolean hasUncompressedExtension(Path path, String ext) {
+		return hasUncompressedExtension(path.toString(), ext);
+	}
+
+	/**
+	 * Returns the index of the first char of the name at the end of
+	 * <code>path</code>, which is <code>0</code> if <code>path</code> has no
+	 * parent directories.
+	 *
+	 * @param path
+	 *            the name to check
+	 * @return the index of the name
+	 */
+	public static int getNameStart(CharSequence path) {
+		for (int i = path.length() - 1; i >= 0; i--) {
+			char c = path.charAt(i);
+			if (c == '/' || c == File.separatorChar) {
+				return i + 1;
 			}
-			// as long as '.' exists elsewhere it has an extension
-			if (name[i] == '.') {
-				exists = true;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the index of the <code>'.'</code> beginning the extension of
+	 * the name at the end of <code>path</code>, or the length of
+	 * <code>path</code> if the name does not contain a <code>'.'</code>. The
+	 * base name is then the range from {@link #getNameStart(CharSequence)} to
+	 * this index, and the extension, as returned by
+	 * {@link #getExtension(File)}, the range from this index to the end.
+	 *
+	 * @param path
+	 *            the name to check
+	 * @return the index of the extension
+	 */
+	public static int getExtensionStart(CharSequence path) {
+		return getExtensionStart(path, path.length());
+	}
+
+	/**
+	 * Returns the index of the <code>'.'</code> beginning the extension of
+	 * the name at the end of the range of <code>path</code> ending at
+	 * <code>end</code>, or <code>end</code> if there is none. Passing the
+	 * index of an extension returns the extension before it, such as the
+	 * <code>".csv"</code> of <code>data.csv.gz</code>.
+	 *
+	 * @param path
+	 *            the name to check
+	 * @param end
+	 *            the index after the last char of the name
+	 * @return the index of the extension
+	 */
+	public static int getExtensionStart(CharSequence path, int end) {
+		for (int i = end - 1; i >= 0; i--) {
+			char c = path.charAt(i);
+			if (c == '.') {
+				return i;
+			} else if (c == '/' || c == File.separatorChar) {
+				break;
 			}
 		}
-		return exists;
+		return end;
+	}
+
+	/**
+	 * Compares the extensions of the names at the end of <code>a</code> and
+	 * <code>b</code> lexicographically, ignoring case.
+	 *
+	 * @param a
+	 *            the first name
+	 * @param b
+	 *            the second name
+	 * @return a negative integer, zero, or a positive integer as the extension
+	 *         of <code>a</code> is less than, equal to, or greater than that
+	 *         of <code>b</code>
+	 */
+	public static int compareExtensions(CharSequence a, CharSequence b) {
+		return compareIgnoreCase(a, getExtensionStart(a), a.length(), b,
+				getExtensionStart(b), b.length());
+	}
+
+	/**
+	 * Compares the base names, the names excluding their extensions, at the
+	 * end of <code>a</code> and <code>b</code> lexicographically, ignoring
+	 * case.
+	 *
+	 * @param a
+	 *            the first name
+	 * @param b
+	 *            the second name
+	 * @return a negative integer, zero, or a positive integer as the base name
+	 *         of <code>a</code> is less than, equal to, or greater than that
+	 *         of <code>b</code>
+	 */
+	public static int compareBaseNames(CharSequence a, CharSequence b) {
+		return compareIgnoreCase(a, getNameStart(a), getExtensionStart(a), b,
+				getNameStart(b), getExtensionStart(b));
 	}
 
 	/**
@@ -66,6 +312,101 @@ public abstract class FileUtils {
 		return ext;
 	}
 
+	/**
+	 * Returns whether <code>file</code> has the extension of a compressed
+	 * file: <code>.gz</code>, <code>.gzip</code>, <code>.deflate</code> or
+	 * <code>.zz</code>.
+	 *
+	 * @param file
+	 *            the file to check
+	 * @return <code>true</code> if <code>file</code> is named as a compressed
+	 *         file, else <code>false</code>
+	 */
+	public static boolean isCompressed(File file) {
+		return file != null && isCompressed(file.getName());
+	}
+
+	/**
+	 * Returns whether the name at the end of <code>path</code> has the
+	 * extension of a compressed file.
+	 *
+	 * @param path
+	 *            the name to check
+	 * @return <code>true</code> if <code>path</code> is named as a compressed
+	 *         file, else <code>false</code>
+	 * @see #isCompressed(File)
+	 */
+	public static boolean isCompressed(CharSequence path) {
+		int end = path.length();
+		return isCompressed(path, getExtensionStart(path, end), end);
+	}
+
+	/**
+	 * Returns whether <code>path</code> has the extension of a compressed
+	 * file.
+	 *
+	 * @param path
+	 *            the path to check
+	 * @return <code>true</code> if <code>path</code> is named as a compressed
+	 *         file, else <code>false</code>
+	 * @see #isCompressed(File)
+	 */
+	public static boolean isCompressed(Path path) {
+		return isCompressed(path.toString());
+	}
+
+	/**
+	 * Returns the file's extension, including the extension before a
+	 * compression extension (e.g. <code>".csv.gz"</code> for
+	 * <code>data.csv.gz</code>).
+	 *
+	 * @param file
+	 *            the file to check
+	 * @return <code>file</code>'s compound extension, or an empty string
+	 * @see #isCompressed(File)
+	 */
+	public static String getCompoundExtension(File file) {
+		if (!isCompressed(file)) {
+			return getExtension(file);
+		}
+		return getExtension(removeCompressionExtension(file))
+				+ getExtension(file);
+	}
+
+	/**
+	 * Returns the extension of the file once decompressed (e.g.
+	 * <code>".csv"</code> for both <code>data.csv.gz</code> and
+	 * <code>data.csv</code>).
+	 *
+	 * @param file
+	 *            the file to check
+	 * @return <code>file</code>'s extension excluding any compression
+	 *         extension, or an empty string
+	 * @see #isCompressed(File)
+	 */
+	public static String getUncompressedExtension(File file) {
+		return getExtension(removeCompressionExtension(file));
+	}
+
+	/**
+	 * Returns a new file without the compression extension of
+	 * <code>file</code>, or <code>file</code> if it is not named as a
+	 * compressed file.
+	 *
+	 * @param file
+	 *            the file to change
+	 * @return the file named as if decompressed
+	 * @see #isCompressed(File)
+	 */
+	public static File removeCompressionExtension(File file) {
+		if (!isCompressed(file)) {
+			return file;
+		}
+		String name = file.getName();
+		return new File(file.getParent(), name.substring(0,
+				name.lastIndexOf('.')));
+	}
+
 	/**
 	 * Returns a new file with the specified extension.
 	 * 
@@ -92,4 +433,457 @@ public abstract class FileUtils {
 		return new File(file.getParent(), name);
 	}
 
+	/**
+	 * Copies the contents of <code>source</code> to <code>target</code>,
+	 * replacing the contents of <code>target</code> if it exists.
+	 * 
+	 * @param source
+	 *            the file to copy
+	 * @param target
+	 *            the file to write
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static long copy(File source, File target) throws IOException {
+		return copy(source, target, null);
+	}
+
+	/**
+	 * Copies the contents of <code>source</code> to <code>target</code>,
+	 * replacing the contents of <code>target</code> if it exists, notifying
+	 * <code>listener</code> as each chunk is copied.
+	 * 
+	 * @param source
+	 *            the file to copy
+	 * @param target
+	 *            the file to write
+	 * @param listener
+	 *            notified of the progress, or <code>null</code>
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 *             if an I/O error occurs, or the thread is interrupted
+	 */
+	public static long copy(File source, File target, CopyListener listener)
+			throws IOException {
+		return copy(source, source, target, listener, new AtomicLong());
+	}
+
+	/**
+	 * Moves <code>source</code> to <code>target</code>, replacing
+	 * <code>target</code> if it exists.
+	 * <p>
+	 * The move is atomic when the file system supports it, so other processes
+	 * see either the old or the new <code>target</code>. Otherwise, such as
+	 * when moving to another file system, a file is copied and then deleted,
+	 * and a directory is moved by {@link Files#move(Path, Path,
+	 * java.nio.file.CopyOption...)}, which requires it to be empty.
+	 * 
+	 * @param source
+	 *            the file to move
+	 * @param target
+	 *            the new location of the file
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static void move(File source, File target) throws IOException {
+		Path from = source.toPath();
+		Path to = target.toPath();
+		try {
+			Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			if (Files.isRegularFile(from, LinkOption.NOFOLLOW_LINKS)) {
+				copy(source, target);
+				Files.delete(from);
+			} else {
+				Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	/**
+	 * Moves <code>file</code> to a file with the specified extension.
+	 * 
+	 * @param file
+	 *            the file to rename
+	 * @param ext
+	 *            the extension (excluding the <code>'.'</code>)
+	 * @return the renamed file
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @see #changeExtension(File, String)
+	 * @see #move(File, File)
+	 */
+	public static File renameExtension(File file, String ext)
+			throws IOException {
+		File target = changeExtension(file, ext);
+		move(file, target);
+		return target;
+	}
+
+	/**
+	 * Copies the directory <code>source</code>, and everything within it, to
+	 * <code>target</code> using a worker thread for each processor.
+	 * 
+	 * @param source
+	 *            the directory to copy
+	 * @param target
+	 *            the directory to write
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 *             if an I/O error occurs, or the thread is interrupted
+	 * @see #copyTree(File, File, int, CopyListener)
+	 */
+	public static long copyTree(File source, File target) throws IOException {
+		return copyTree(source, target, Runtime.getRuntime()
+				.availableProcessors(), null);
+	}
+
+	/**
+	 * Copies the directory <code>source</code>, and everything within it, to
+	 * <code>target</code>, merging with and replacing files in
+	 * <code>target</code> if it exists.
+	 * <p>
+	 * Directories are created as the tree is walked, and files are copied by
+	 * up to <code>threads</code> worker threads. At most twice as many files
+	 * as threads are waiting to be copied at once, so walking a large tree
+	 * does not queue every file in memory. Symbolic links are copied as links
+	 * and other special files are skipped. The first failure stops the copy.
+	 * 
+	 * @param source
+	 *            the directory to copy
+	 * @param target
+	 *            the directory to write
+	 * @param threads
+	 *            the number of worker threads, where <code>1</code> copies on
+	 *            the calling thread
+	 * @param listener
+	 *            notified of the progress, or <code>null</code>
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 *             if an I/O error occurs, or the thread is interrupted
+	 */
+	public static long copyTree(final File source, File target, int threads,
+			final CopyListener listener) throws IOException {
+		final Path from = source.toPath().toAbsolutePath().normalize();
+		final Path to = target.toPath().toAbsolutePath().normalize();
+		if (to.startsWith(from)) {
+			throw new IOException("cannot copy " + source + " into itself");
+		}
+		final AtomicLong total = new AtomicLong();
+		final ExecutorService workers = threads > 1 ? Executors
+				.newFixedThreadPool(threads) : null;
+		final int maxPending = threads * 2;
+		final Deque<Future<Long>> pending = new ArrayDeque<Future<Long>>();
+		try {
+			Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir,
+						BasicFileAttributes attrs) throws IOException {
+					Files.createDirectories(to.resolve(from.relativize(dir)));
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file,
+						BasicFileAttributes attrs) throws IOException {
+					Path copy = to.resolve(from.relativize(file));
+					if (attrs.isSymbolicLink()) {
+						Files.copy(file, copy, LinkOption.NOFOLLOW_LINKS,
+								StandardCopyOption.REPLACE_EXISTING);
+					} else if (attrs.isRegularFile()) {
+						final File in = file.toFile();
+						final File out = copy.toFile();
+						if (workers == null) {
+							copy(source, in, out, listener, total);
+						} else {
+							if (pending.size() >= maxPending) {
+								await(pending.removeFirst());
+							}
+							pending.add(workers.submit(new Callable<Long>() {
+
+								@Override
+								public Long call() throws IOException {
+									return copy(source, in, out, listener,
+											total);
+								}
+							}));
+						}
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+			while (!pending.isEmpty()) {
+				await(pending.removeFirst());
+			}
+		} finally {
+			if (workers != null) {
+				// interrupts the copies still running after a failure
+				workers.shutdownNow();
+			}
+		}
+		return total.get();
+	}
+
+	/**
+	 * Copies <code>source</code> to <code>target</code> in chunks, adding
+	 * each chunk to <code>total</code> and notifying <code>listener</code>.
+	 */
+	private static long copy(Object eventSource, File source, File target,
+			CopyListener listener, AtomicLong total) throws IOException {
+		FileChannel in = FileChannel.open(source.toPath(),
+				StandardOpenOption.READ);
+		try {
+			FileChannel out = FileChannel.open(target.toPath(),
+					StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				long length = in.size();
+				long position = 0;
+				do {
+					long n = in.transferTo(position,
+							Math.min(COPY_CHUNK_SIZE, length - position), out);
+					if (n <= 0 && position < length) {
+						// the file was truncated while copying
+						length = position;
+					}
+					position += n;
+					long copied = total.addAndGet(n);
+					if (listener != null) {
+						listener.copyProgressed(new CopyEvent(eventSource,
+								source, target, position, length, copied));
+					}
+				} while (position < length);
+				return position;
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the digest of segment <code>index</code> of a tree digest.
+	 */
+	private static byte[] hashSegment(MessageDigest digest,
+			FileChannel channel, int index, long length) throws IOException {
+		long position = (long) index * TREE_SEGMENT_SIZE;
+		digest.update(segment(channel, position,
+				Math.min(TREE_SEGMENT_SIZE, length - position)));
+		return digest.digest();
+	}
+
+	/**
+	 * Returns the <code>size</code> bytes of <code>channel</code> at
+	 * <code>position</code>, mapped unless the segment is small.
+	 */
+	private static ByteBuffer segment(FileChannel channel, long position,
+			long size) throws IOException {
+		if (size >= MAP_THRESHOLD) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("file truncated while reading");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Returns a new SHA-256 message digest.
+	 */
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Waits for the result of a worker thread, rethrowing its failure.
+	 */
+	private static <T> T await(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("interrupted waiting for workers");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Returns the CRC-32 checksum of the contents of <code>file</code>.
+	 * 
+	 * @param file
+	 *            the file to check
+	 * @return the checksum
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		try {
+			long length = channel.size();
+			for (long position = 0; position < length;) {
+				long size = Math.min(HASH_SEGMENT_SIZE, length - position);
+				crc.update(segment(channel, position, size));
+				position += size;
+			}
+		} finally {
+			channel.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns the SHA-256 digest of the contents of <code>file</code>.
+	 * 
+	 * @param file
+	 *            the file to check
+	 * @return the digest
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static byte[] digest(File file) throws IOException {
+		MessageDigest digest = sha256();
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		try {
+			long length = channel.size();
+			for (long position = 0; position < length;) {
+				long size = Math.min(HASH_SEGMENT_SIZE, length - position);
+				digest.update(segment(channel, position, size));
+				position += size;
+			}
+		} finally {
+			channel.close();
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Returns the SHA-256 tree digest of the contents of <code>file</code>,
+	 * hashing its segments on up to <code>threads</code> worker threads.
+	 * <p>
+	 * The tree digest is the SHA-256 of the SHA-256 digests of each
+	 * {@link #TREE_SEGMENT_SIZE} segment of the file, in order. It is a
+	 * different value than {@link #digest(File)}, but as strong a fingerprint
+	 * of the contents, and does not depend on the number of threads.
+	 * 
+	 * @param file
+	 *            the file to check
+	 * @param threads
+	 *            the number of worker threads, where <code>1</code> hashes on
+	 *            the calling thread
+	 * @return the tree digest
+	 * @throws IOException
+	 *             if an I/O error occurs, or the thread is interrupted
+	 */
+	public static byte[] treeDigest(File file, int threads) throws IOException {
+		MessageDigest root = sha256();
+		final FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		try {
+			final long length = channel.size();
+			int segments = (int) ((length + TREE_SEGMENT_SIZE - 1)
+					/ TREE_SEGMENT_SIZE);
+			threads = Math.min(threads, segments);
+			if (threads <= 1) {
+				MessageDigest digest = sha256();
+				for (int i = 0; i < segments; i++) {
+					root.update(hashSegment(digest, channel, i, length));
+				}
+				return root.digest();
+			}
+			ExecutorService workers = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<byte[]>> digests = new ArrayList<Future<byte[]>>(
+						segments);
+				for (int i = 0; i < segments; i++) {
+					final int segment = i;
+					digests.add(workers.submit(new Callable<byte[]>() {
+
+						@Override
+						public byte[] call() throws IOException {
+							return hashSegment(sha256(), channel, segment,
+									length);
+						}
+					}));
+				}
+				for (Future<byte[]> digest : digests) {
+					root.update(await(digest));
+				}
+				return root.digest();
+			} finally {
+				workers.shutdownNow();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns whether the range of <code>path</code> is a compression
+	 * extension.
+	 */
+	private static boolean isCompressed(CharSequence path, int start, int end) {
+		for (String compressed : COMPRESSION_EXTENSIONS) {
+			if (regionMatches(path, start, end, compressed)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the range of <code>s</code> is a <code>'.'</code>
+	 * followed by <code>ext</code>, ignoring case.
+	 */
+	private static boolean regionMatches(CharSequence s, int start, int end,
+			String ext) {
+		if (end - start != ext.length() + 1 || s.charAt(start) != '.') {
+			return false;
+		}
+		return compareIgnoreCase(s, start + 1, end, ext, 0, ext.length()) == 0;
+	}
+
+	/**
+	 * Compares two ranges lexicographically, ignoring case as
+	 * {@link String#compareToIgnoreCase(String)} does.
+	 */
+	private static int compareIgnoreCase(CharSequence a, int aStart,
+			int aEnd, CharSequence b, int bStart, int bEnd) {
+		int length = Math.min(aEnd - aStart, bEnd - bStart);
+		for (int i = 0; i < length; i++) {
+			char c1 = a.charAt(aStart + i);
+			char c2 = b.charAt(bStart + i);
+			if (c1 != c2) {
+				c1 = Character.toLowerCase(Character.toUpperCase(c1));
+				c2 = Character.toLowerCase(Character.toUpperCase(c2));
+				if (c1 != c2) {
+					return c1 - c2;
+				}
+			}
+		}
+		return (aEnd - aStart) - (bEnd - bStart);
+	}
+
 }
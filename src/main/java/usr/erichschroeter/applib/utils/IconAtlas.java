@@ -0,0 +1,153 @@
+package usr.erichschroeter.applib.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An <code>IconAtlas</code> provides the icons packed into one image by an
+ * {@link IconAtlasPacker}.
+ * <p>
+ * Loading an atlas reads and decodes a single resource, however many icons it
+ * holds. Each icon is an {@link AtlasIcon} painting its region of the shared
+ * atlas image, so no per-icon image is created.
+ *
+ * <pre>
+ * IconAtlas icons = IconAtlas.load(&quot;usr/example/icons.png&quot;,
+ * 		getClass().getClassLoader());
+ * saveButton.setIcon(icons.getIcon(&quot;toolbar/save.png&quot;));
+ * </pre>
+ *
+ * @author Erich Schroeter
+ */
+public class IconAtlas {
+
+	/** The extension appended to the atlas resource to name its index. */
+	public static final String INDEX_EXTENSION = ".idx";
+
+	/** The decoded atlas. */
+	private final BufferedImage image;
+	/** The icons keyed by name. */
+	private final Map<String, AtlasIcon> icons;
+
+	private IconAtlas(BufferedImage image, Map<String, AtlasIcon> icons) {
+		this.image = image;
+		this.icons = icons;
+	}
+
+	/**
+	 * Loads the atlas <code>resource</code> and its index, the resource
+	 * followed by {@link #INDEX_EXTENSION}.
+	 *
+	 * @param resource
+	 *            the atlas image resource
+	 * @param classLoader
+	 *            the class loader from which to get the resources
+	 * @return the atlas
+	 * @throws IOException
+	 *             if a resource does not exist, cannot be read, or the index
+	 *             is malformed
+	 */
+	public static IconAtlas load(String resource, ClassLoader classLoader)
+			throws IOException {
+		String indexResource = resource + INDEX_EXTENSION;
+		InputStream in = classLoader.getResourceAsStream(indexResource);
+		if (in == null) {
+			throw new FileNotFoundException("resource not found: "
+					+ indexResource);
+		}
+		Map<String, AtlasIcon> icons = new LinkedHashMap<String, AtlasIcon>();
+		BufferedImage image;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in,
+				"UTF-8"));
+		try {
+			image = Utils.readImage(resource, classLoader);
+			String line;
+			int number = 0;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				if (line.isEmpty() || line.charAt(0) == '#') {
+					continue;
+				}
+				String[] fields = line.split("\t", 5);
+				try {
+					int x = Integer.parseInt(fields[0]);
+					int y = Integer.parseInt(fields[1]);
+					int width = Integer.parseInt(fields[2]);
+					int height = Integer.parseInt(fields[3]);
+					if (x < 0 || y < 0 || x + width > image.getWidth()
+							|| y + height > image.getHeight()) {
+						throw new IOException(indexResource + ":" + number
+								+ ": region outside the atlas");
+					}
+					icons.put(fields[4], new AtlasIcon(image, x, y, width,
+							height));
+				} catch (RuntimeException e) {
+					throw new IOException(indexResource + ":" + number
+							+ ": malformed line", e);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return new IconAtlas(image, icons);
+	}
+
+	/**
+	 * Returns the icon packed as <code>name</code>.
+	 *
+	 * @param name
+	 *            the name of the icon
+	 * @return the icon, or <code>null</code> if the atlas does not contain it
+	 */
+	public AtlasIcon getIcon(String name) {
+		return icons.get(name);
+	}
+
+	/**
+	 * Returns whether the atlas contains the icon <code>name</code>.
+	 *
+	 * @param name
+	 *            the name of the icon
+	 * @return <code>true</code> if the atlas contains the icon, else
+	 *         <code>false</code>
+	 */
+	public boolean contains(String name) {
+		return icons.containsKey(name);
+	}
+
+	/**
+	 * Returns the names of the icons in the atlas.
+	 *
+	 * @return the unmodifiable names
+	 */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(icons.keySet());
+	}
+
+	/**
+	 * Returns the number of icons in the atlas.
+	 *
+	 * @return the number of icons
+	 */
+	public int size() {
+		return icons.size();
+	}
+
+	/**
+	 * Returns the decoded atlas image shared by the icons.
+	 *
+	 * @return the atlas image
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+}
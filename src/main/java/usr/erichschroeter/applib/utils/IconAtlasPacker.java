@@ -0,0 +1,239 @@
+package usr.erichschroeter.applib.utils;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * An <code>IconAtlasPacker</code> packs many small images into one atlas image
+ * and writes an index of where each image is, to be loaded at runtime by an
+ * {@link IconAtlas}. It is meant to be run when building an application:
+ *
+ * <pre>
+ * java usr.erichschroeter.applib.utils.IconAtlasPacker src/main/resources/icons build/resources/icons.png
+ * </pre>
+ *
+ * packs every PNG below the directory into <code>icons.png</code> and
+ * <code>icons.png.idx</code>, naming each image by its path relative to the
+ * directory, such as <code>"toolbar/save.png"</code>.
+ * <p>
+ * Images are packed in rows, tallest first, with a transparent pixel between
+ * them so scaled icons do not bleed into their neighbours. The index is a text
+ * file with a line for each image: its x, y, width, height and name,
+ * separated by tabs.
+ *
+ * @author Erich Schroeter
+ */
+public class IconAtlasPacker {
+
+	/** The transparent pixels between images. */
+	private static final int PADDING = 1;
+
+	/** The images to pack keyed by name, in the order added. */
+	private final Map<String, BufferedImage> images;
+
+	/**
+	 * Constructs an empty <code>IconAtlasPacker</code>.
+	 */
+	public IconAtlasPacker() {
+		images = new LinkedHashMap<String, BufferedImage>();
+	}
+
+	/**
+	 * Adds <code>image</code> to be packed as <code>name</code>, replacing
+	 * any image previously added with that name.
+	 *
+	 * @param name
+	 *            the name of the image in the atlas
+	 * @param image
+	 *            the image
+	 */
+	public void add(String name, BufferedImage image) {
+		if (name.indexOf('\t') != -1 || name.indexOf('\n') != -1) {
+			throw new IllegalArgumentException("invalid name: " + name);
+		}
+		images.put(name, image);
+	}
+
+	/**
+	 * Adds every PNG image below <code>root</code>, named by its path
+	 * relative to <code>root</code> with <code>'/'</code> separators.
+	 *
+	 * @param root
+	 *            the directory of the images
+	 * @throws IOException
+	 *             if an image cannot be read
+	 */
+	public void addTree(File root) throws IOException {
+		addTree(root, "");
+	}
+
+	private void addTree(File dir, String prefix) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			throw new IOException("cannot list " + dir);
+		}
+		// sorted so the atlas is the same on every build
+		List<File> sorted = new ArrayList<File>();
+		Collections.addAll(sorted, files);
+		Collections.sort(sorted);
+		for (File file : sorted) {
+			if (file.isDirectory()) {
+				addTree(file, prefix + file.getName() + "/");
+			} else if (FileUtils.hasExtension(file.getName(), "png")) {
+				BufferedImage image = ImageIO.read(file);
+				if (image == null) {
+					throw new IOException("cannot decode " + file);
+				}
+				add(prefix + file.getName(), image);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of images added.
+	 *
+	 * @return the number of images
+	 */
+	public int size() {
+		return images.size();
+	}
+
+	/**
+	 * Packs the images and writes the atlas as a PNG <code>image</code> and
+	 * the index to <code>image</code>'s path followed by
+	 * {@link IconAtlas#INDEX_EXTENSION}.
+	 *
+	 * @param image
+	 *            the atlas file to write
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void write(File image) throws IOException {
+		write(image, new File(image.getPath() + IconAtlas.INDEX_EXTENSION));
+	}
+
+	/**
+	 * Packs the images and writes the atlas as a PNG <code>image</code> and
+	 * the <code>index</code>.
+	 *
+	 * @param image
+	 *            the atlas file to write
+	 * @param index
+	 *            the index file to write
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void write(File image, File index) throws IOException {
+		if (images.isEmpty()) {
+			throw new IOException("no images to pack");
+		}
+		List<Map.Entry<String, BufferedImage>> entries;
+		entries = new ArrayList<Map.Entry<String, BufferedImage>>(
+				images.entrySet());
+		Collections.sort(entries,
+				new Comparator<Map.Entry<String, BufferedImage>>() {
+
+					@Override
+					public int compare(Map.Entry<String, BufferedImage> a,
+							Map.Entry<String, BufferedImage> b) {
+						int c = b.getValue().getHeight()
+								- a.getValue().getHeight();
+						return c != 0 ? c : a.getKey().compareTo(b.getKey());
+					}
+				});
+
+		// rows about as wide as the atlas is tall
+		long area = 0;
+		int widest = 0;
+		for (Map.Entry<String, BufferedImage> entry : entries) {
+			BufferedImage i = entry.getValue();
+			area += (long) (i.getWidth() + PADDING) * (i.getHeight() + PADDING);
+			widest = Math.max(widest, i.getWidth() + PADDING);
+		}
+		int rowWidth = Math.max(widest, (int) Math.ceil(Math.sqrt(area)));
+
+		int[][] bounds = new int[entries.size()][];
+		int x = 0;
+		int y = 0;
+		int rowHeight = 0;
+		int width = 0;
+		for (int i = 0; i < entries.size(); i++) {
+			BufferedImage img = entries.get(i).getValue();
+			if (x + img.getWidth() > rowWidth) {
+				x = 0;
+				y += rowHeight + PADDING;
+				rowHeight = 0;
+			}
+			bounds[i] = new int[] { x, y, img.getWidth(), img.getHeight() };
+			x += img.getWidth() + PADDING;
+			rowHeight = Math.max(rowHeight, img.getHeight());
+			width = Math.max(width, x - PADDING);
+		}
+		int height = y + rowHeight;
+
+		BufferedImage atlas = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = atlas.createGraphics();
+		try {
+			for (int i = 0; i < entries.size(); i++) {
+				g.drawImage(entries.get(i).getValue(), bounds[i][0],
+						bounds[i][1], null);
+			}
+		} finally {
+			g.dispose();
+		}
+		if (!ImageIO.write(atlas, "png", image)) {
+			throw new IOException("no PNG writer available");
+		}
+
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(index), "UTF-8"));
+		try {
+			out.write("# x\ty\twidth\theight\tname\n");
+			for (int i = 0; i < entries.size(); i++) {
+				out.write(bounds[i][0] + "\t" + bounds[i][1] + "\t"
+						+ bounds[i][2] + "\t" + bounds[i][3] + "\t"
+						+ entries.get(i).getKey() + "\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Packs the PNG images below a directory into an atlas.
+	 * <p>
+	 * Usage: <code>IconAtlasPacker directory atlas.png</code>
+	 *
+	 * @param args
+	 *            the directory of the images and the atlas file to write
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("usage: IconAtlasPacker directory atlas.png");
+			System.exit(1);
+		}
+		IconAtlasPacker packer = new IconAtlasPacker();
+		packer.addTree(new File(args[0]));
+		packer.write(new File(args[1]));
+		System.out.println("packed " + packer.size() + " images into "
+				+ args[1]);
+	}
+
+}
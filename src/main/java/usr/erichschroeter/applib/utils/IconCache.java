@@ -0,0 +1,301 @@
+package usr.erichschroeter.applib.utils;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.ImageIcon;
+
+/**
+ * An <code>IconCache</code> caches the <code>ImageIcon</code>s decoded from
+ * resources, keyed by the class loader and the resource's name.
+ * <p>
+ * A resource is decoded at most once while cached, even if several threads
+ * request it at the same time; the other threads wait for the first to
+ * finish. A failed decode is not cached. The cache holds at most
+ * <code>maxSize</code> icons, evicting the least recently used, and holds them
+ * by soft references so the garbage collector may reclaim them when memory is
+ * low. Class loaders are held by weak references, so caching an icon does not
+ * keep its class loader from being unloaded.
+ * <p>
+ * The icons are shared by everyone requesting the same resource and should not
+ * be modified.
+ * <p>
+ * Setting a {@link PixelCache} makes the decoded pixels persist across runs
+ * of the application, so resources decoded by an earlier run are built from
+ * the pixel cache instead of being decoded again.
+ *
+ * @author Erich Schroeter
+ * @see Utils#imageIcon(String, ClassLoader)
+ */
+public class IconCache {
+
+	/** The default maximum number of icons cached. */
+	public static final int DEFAULT_MAX_SIZE = 256;
+
+	/** The cached icons, least recently used first. */
+	private final Map<Key, SoftReference<FutureTask<ImageIcon>>> entries;
+	/** The maximum number of icons cached. */
+	private final int maxSize;
+	/** The number of requests answered from the cache. */
+	private final AtomicLong hits;
+	/** The number of requests decoding the resource. */
+	private final AtomicLong misses;
+	/** The persistent cache of decoded pixels, if any. */
+	private volatile PixelCache pixelCache;
+
+	/**
+	 * Constructs an <code>IconCache</code> holding at most
+	 * {@link #DEFAULT_MAX_SIZE} icons.
+	 */
+	public IconCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Constructs an <code>IconCache</code> holding at most
+	 * <code>maxSize</code> icons.
+	 *
+	 * @param maxSize
+	 *            the maximum number of icons cached
+	 */
+	public IconCache(final int maxSize) {
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<Key, SoftReference<FutureTask<ImageIcon>>>(
+				16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Key, SoftReference<FutureTask<ImageIcon>>> eldest) {
+				return size() > maxSize;
+			}
+		};
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+	}
+
+	/**
+	 * Returns the <code>resource</code> as an <code>ImageIcon</code>, decoding
+	 * it if it is not cached.
+	 *
+	 * @param resource
+	 *            the icon resource
+	 * @param classLoader
+	 *            the class loader from which to get the resource
+	 * @return the icon
+	 * @throws IOException
+	 *             if the resource does not exist or cannot be decoded
+	 */
+	public ImageIcon getIcon(final String resource,
+			final ClassLoader classLoader) throws IOException {
+		Key key = new Key(resource, classLoader);
+		FutureTask<ImageIcon> task;
+		boolean created = false;
+		synchronized (entries) {
+			SoftReference<FutureTask<ImageIcon>> reference = entries.get(key);
+			task = reference == null ? null : reference.get();
+			if (task == null) {
+				task = new FutureTask<ImageIcon>(new Callable<ImageIcon>() {
+
+					@Override
+					public ImageIcon call() throws IOException {
+						return decode(resource, classLoader);
+					}
+				});
+				entries.put(key, new SoftReference<FutureTask<ImageIcon>>(task));
+				created = true;
+			}
+		}
+		if (created) {
+			misses.incrementAndGet();
+			task.run();
+		} else {
+			hits.incrementAndGet();
+		}
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted decoding " + resource, e);
+		} catch (ExecutionException e) {
+			remove(key, task);
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Decodes the <code>resource</code>. This may be called from several
+	 * threads at once for different resources.
+	 *
+	 * @param resource
+	 *            the icon resource
+	 * @param classLoader
+	 *            the class loader from which to get the resource
+	 * @return the decoded icon
+	 * @throws IOException
+	 *             if the resource does not exist or cannot be decoded
+	 * @see Utils#readImage(String, ClassLoader)
+	 * @see PixelCache#readImage(String, ClassLoader)
+	 */
+	protected ImageIcon decode(String resource, ClassLoader classLoader)
+			throws IOException {
+		PixelCache cache = pixelCache;
+		if (cache != null) {
+			return new ImageIcon(cache.readImage(resource, classLoader));
+		}
+		return new ImageIcon(Utils.readImage(resource, classLoader));
+	}
+
+	/**
+	 * Sets the persistent cache of decoded pixels from which resources are
+	 * read, or <code>null</code> to always decode them.
+	 *
+	 * @param pixelCache
+	 *            the pixel cache, or <code>null</code>
+	 */
+	public void setPixelCache(PixelCache pixelCache) {
+		this.pixelCache = pixelCache;
+	}
+
+	/**
+	 * Returns the persistent cache of decoded pixels from which resources are
+	 * read.
+	 *
+	 * @return the pixel cache, or <code>null</code> if there is none
+	 */
+	public PixelCache getPixelCache() {
+		return pixelCache;
+	}
+
+	/**
+	 * Removes the icon of <code>resource</code>, if cached.
+	 *
+	 * @param resource
+	 *            the icon resource
+	 * @param classLoader
+	 *            the class loader of the resource
+	 */
+	public void remove(String resource, ClassLoader classLoader) {
+		synchronized (entries) {
+			entries.remove(new Key(resource, classLoader));
+		}
+	}
+
+	/**
+	 * Removes all icons and resets the hit and miss counts.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+		hits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * Returns the number of icons cached, including icons already reclaimed
+	 * by the garbage collector but not yet evicted.
+	 *
+	 * @return the number of cached icons
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Returns the maximum number of icons cached.
+	 *
+	 * @return the maximum size
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Returns the number of requests answered by an icon already cached or
+	 * being decoded.
+	 *
+	 * @return the hit count
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of requests which decoded the resource.
+	 *
+	 * @return the miss count
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Removes the entry of <code>key</code> if it is still
+	 * <code>task</code>.
+	 */
+	private void remove(Key key, FutureTask<ImageIcon> task) {
+		synchronized (entries) {
+			SoftReference<FutureTask<ImageIcon>> reference = entries.get(key);
+			if (reference != null && reference.get() == task) {
+				entries.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * The resource name and the weakly referenced class loader of an icon.
+	 */
+	private static class Key {
+
+		private final String resource;
+		private final WeakReference<ClassLoader> classLoader;
+		private final int hash;
+
+		Key(String resource, ClassLoader classLoader) {
+			this.resource = resource;
+			this.classLoader = new WeakReference<ClassLoader>(classLoader);
+			this.hash = resource.hashCode() * 31
+					+ System.identityHashCode(classLoader);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			ClassLoader loader = classLoader.get();
+			// entries of unloaded class loaders only equal themselves
+			return loader != null && hash == other.hash
+					&& loader == other.classLoader.get()
+					&& resource.equals(other.resource);
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+package usr.erichschroeter.applib.utils;
+
+import java.net.URI;
+import java.util.EventObject;
+
+/**
+ * A <code>LaunchEvent</code> gets delivered when a {@link BrowserLauncher}
+ * fails to open a link.
+ * 
+ * @author Erich Schroeter
+ */
+@SuppressWarnings("serial")
+public class LaunchEvent extends EventObject {
+
+	/** The address which failed to open. */
+	private URI uri;
+	/** The reason the address failed to open. */
+	private Exception cause;
+
+	/**
+	 * Constructs a <code>LaunchEvent</code> specifying the address and why it
+	 * failed to open.
+	 * 
+	 * @param source
+	 *            the object on which the event initially occurred
+	 * @param uri
+	 *            the address which failed to open
+	 * @param cause
+	 *            the reason the address failed to open
+	 */
+	public LaunchEvent(Object source, URI uri, Exception cause) {
+		super(source);
+		this.uri = uri;
+		this.cause = cause;
+	}
+
+	/**
+	 * Returns the address which failed to open.
+	 * 
+	 * @return the address
+	 */
+	public URI getURI() {
+		return uri;
+	}
+
+	/**
+	 * Returns the reason the address failed to open, an
+	 * <code>UnsupportedOperationException</code> if the platform cannot open
+	 * links at all.
+	 * 
+	 * @return the cause
+	 */
+	public Exception getCause() {
+		return cause;
+	}
+}
@@ -0,0 +1,24 @@
+package usr.erichschroeter.applib.utils;
+
+import java.util.EventListener;
+
+/**
+ * The <code>LaunchListener</code> interface provides methods for listeners
+ * wanting to be notified when a {@link BrowserLauncher} fails to open a link.
+ * 
+ * @author Erich Schroeter
+ */
+public interface LaunchListener extends EventListener {
+
+	/**
+	 * Performs the logic when a <code>LaunchEvent</code> is fired, after the
+	 * browser failed to open a link.
+	 * <p>
+	 * This is called on the <em>Event Dispatch Thread</em>, so it may show a
+	 * dialog to the user.
+	 * 
+	 * @param e
+	 *            the event fired
+	 */
+	public void launchFailed(LaunchEvent e);
+}
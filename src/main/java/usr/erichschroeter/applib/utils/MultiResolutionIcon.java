@@ -0,0 +1,215 @@
+package usr.erichschroeter.applib.utils;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+
+/**
+ * A <code>MultiResolutionIcon</code> is an <code>Icon</code> drawn from one
+ * of several image resources of different sizes, decoding only the variants
+ * actually needed.
+ * <p>
+ * Variants are registered by their width in pixels and the name of their
+ * resource, which is not read until a variant is needed. When painted, the
+ * smallest variant at least as wide as the icon will be on screen, taking the
+ * scale of the <code>Graphics</code> into account, is decoded and drawn. A
+ * variant which is not the size the icon will be on screen is drawn scaled
+ * ahead of time by {@link Utils#scaleImage(Image, int, int)}, rather than on
+ * every paint. Decoded variants are kept by the icon, and shared with
+ * {@link Utils#imageIcon(String, ClassLoader)}.
+ *
+ * <pre>
+ * MultiResolutionIcon icon = new MultiResolutionIcon(16, 16)
+ * 		.addVariant(16, R.png(&quot;app-16x16.png&quot;))
+ * 		.addVariant(32, R.png(&quot;app-32x32.png&quot;))
+ * 		.addVariant(48, R.png(&quot;app-48x48.png&quot;));
+ * frame.setIconImages(icon.getWindowImages());
+ * </pre>
+ *
+ * @author Erich Schroeter
+ */
+public class MultiResolutionIcon implements Icon {
+
+	/** The sizes of the images a window manager typically shows. */
+	private static final int[] WINDOW_SIZES = { 16, 32 };
+
+	/** The width of the icon. */
+	private final int width;
+	/** The height of the icon. */
+	private final int height;
+	/** The class loader from which to get the resources. */
+	private final ClassLoader classLoader;
+	/** The resources of the variants keyed by width. */
+	private final TreeMap<Integer, String> resources;
+	/** The decoded variants keyed by width. */
+	private final Map<Integer, Image> images;
+
+	/**
+	 * Constructs a <code>MultiResolutionIcon</code> of the specified size,
+	 * getting its resources from the class loader of {@link Utils}.
+	 *
+	 * @param width
+	 *            the width of the icon
+	 * @param height
+	 *            the height of the icon
+	 */
+	public MultiResolutionIcon(int width, int height) {
+		this(width, height, Utils.class.getClassLoader());
+	}
+
+	/**
+	 * Constructs a <code>MultiResolutionIcon</code> of the specified size.
+	 *
+	 * @param width
+	 *            the width of the icon
+	 * @param height
+	 *            the height of the icon
+	 * @param classLoader
+	 *            the class loader from which to get the resources
+	 */
+	public MultiResolutionIcon(int width, int height, ClassLoader classLoader) {
+		this.width = width;
+		this.height = height;
+		this.classLoader = classLoader;
+		this.resources = new TreeMap<Integer, String>();
+		this.images = new TreeMap<Integer, Image>();
+	}
+
+	/**
+	 * Registers the image <code>resource</code> as the variant
+	 * <code>size</code> pixels wide. The resource is not read until the
+	 * variant is needed.
+	 *
+	 * @param size
+	 *            the width of the variant in pixels
+	 * @param resource
+	 *            the image resource
+	 * @return this icon
+	 */
+	public synchronized MultiResolutionIcon addVariant(int size,
+			String resource) {
+		resources.put(size, resource);
+		images.remove(size);
+		return this;
+	}
+
+	/**
+	 * Returns the widths of the registered variants, in ascending order.
+	 *
+	 * @return the variant sizes
+	 */
+	public synchronized List<Integer> getVariantSizes() {
+		return new ArrayList<Integer>(resources.keySet());
+	}
+
+	/**
+	 * Returns whether the variant <code>size</code> pixels wide has been
+	 * decoded.
+	 *
+	 * @param size
+	 *            the width of the variant
+	 * @return <code>true</code> if the variant is decoded, else
+	 *         <code>false</code>
+	 */
+	public synchronized boolean isDecoded(int size) {
+		return images.containsKey(size);
+	}
+
+	/**
+	 * Returns the image of the smallest variant at least <code>size</code>
+	 * pixels wide, or the largest variant if none is, decoding it if needed.
+	 *
+	 * @param size
+	 *            the width needed in pixels
+	 * @return the image, or <code>null</code> if there are no variants or the
+	 *         variant cannot be read
+	 */
+	public synchronized Image getImage(int size) {
+		if (resources.isEmpty()) {
+			return null;
+		}
+		Integer variant = resources.ceilingKey(size);
+		if (variant == null) {
+			variant = resources.lastKey();
+		}
+		Image image = images.get(variant);
+		if (image == null) {
+			ImageIcon icon = Utils.imageIcon(resources.get(variant),
+					classLoader);
+			if (icon == null) {
+				return null;
+			}
+			image = icon.getImage();
+			images.put(variant, image);
+		}
+		return image;
+	}
+
+	/**
+	 * Returns the images of the variants best suited to the
+	 * <code>sizes</code>, without duplicates, decoding only those variants.
+	 *
+	 * @param sizes
+	 *            the widths needed in pixels
+	 * @return the images
+	 */
+	public List<Image> getImages(int... sizes) {
+		List<Image> list = new ArrayList<Image>(sizes.length);
+		for (int size : sizes) {
+			Image image = getImage(size);
+			if (image != null && !list.contains(image)) {
+				list.add(image);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the images for <code>Window.setIconImages</code>: the variants
+	 * for the small and large icons of a window, 16 and 32 pixels scaled to
+	 * the screen's resolution.
+	 *
+	 * @return the window icon images
+	 */
+	public List<Image> getWindowImages() {
+		double scale = 1;
+		if (!GraphicsEnvironment.isHeadless()) {
+			scale = Math.max(1, Toolkit.getDefaultToolkit()
+					.getScreenResolution() / 96.0);
+		}
+		int[] sizes = new int[WINDOW_SIZES.length];
+		for (int i = 0; i < sizes.length; i++) {
+			sizes[i] = (int) Math.ceil(WINDOW_SIZES[i] * scale);
+		}
+		return getImages(sizes);
+	}
+
+	@Override
+	public void paintIcon(Component c, Graphics g, int x, int y) {
+		double scale = Utils.getScale(g);
+		Image image = getImage((int) Math.ceil(width * scale));
+		if (image != null) {
+			Utils.drawScaledImage(g, image, x, y, width, height, c);
+		}
+	}
+
+	@Override
+	public int getIconWidth() {
+		return width;
+	}
+
+	@Override
+	public int getIconHeight() {
+		return height;
+	}
+
+}
@@ -0,0 +1,407 @@
+package usr.erichschroeter.applib.utils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+
+/**
+ * A <code>PixelCache</code> keeps the decoded pixels of image resources in a
+ * file, so later runs of an application can build the images from the file
+ * instead of decoding them again.
+ * <p>
+ * The file is memory-mapped when the cache is opened, and a cached image is
+ * built by copying its ARGB pixels out of the mapping, which is much cheaper
+ * than inflating and unfiltering a PNG. Entries are keyed by the resource's
+ * name and checksum, so an image whose resource changes is decoded again. The
+ * checksum of a resource in a jar is the CRC-32 recorded in the jar's
+ * directory, and that of a resource in a directory is the CRC-32 of its file;
+ * resources from elsewhere are not cached.
+ * <p>
+ * Entries are appended to the file, under a file lock so several
+ * applications may share it, until it reaches its maximum size. The header
+ * records the end of the last complete entry, and is only updated once an
+ * entry has been written, so an entry left incomplete by an application
+ * which died while appending it is ignored and overwritten by the next one.
+ * Entries added after the cache was opened are not seen until it is opened
+ * again.
+ *
+ * <pre>
+ * Utils.getIconCache().setPixelCache(
+ * 		new PixelCache(PixelCache.getDefaultFile()));
+ * </pre>
+ *
+ * @author Erich Schroeter
+ * @see IconCache#setPixelCache(PixelCache)
+ */
+public class PixelCache {
+
+	/** The default maximum size of the file in bytes. */
+	public static final long DEFAULT_MAX_SIZE = 64L << 20;
+
+	/** The first bytes of a pixel cache file, "PXC1". */
+	private static final int MAGIC = 0x50584331;
+	/** The version of the file format. */
+	private static final int VERSION = 2;
+	/** The offset of the end of the entries within the header. */
+	private static final int END_OFFSET = 8;
+	/** The size of the file's header: magic, version and end of entries. */
+	private static final int HEADER_SIZE = 16;
+	/** The size of an entry's fields besides its name and pixels. */
+	private static final int ENTRY_SIZE = 4 + 8 + 4 + 4;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** The cache file. */
+	private final File file;
+	/** The maximum size of the file in bytes. */
+	private final long maxSize;
+	/** The file as it was when opened. */
+	private final ByteBuffer mapped;
+	/** The offsets of the entries' pixels in the file keyed by name. */
+	private final Map<String, Entry> entries;
+	/** The checksums of the directory resources, keyed by URL. */
+	private final Map<String, Long> fileChecksums;
+
+	/**
+	 * Opens the cache <code>file</code>, which may hold at most
+	 * {@link #DEFAULT_MAX_SIZE} bytes.
+	 *
+	 * @param file
+	 *            the cache file, created if it does not exist
+	 * @throws IOException
+	 *             if the file cannot be created or read
+	 */
+	public PixelCache(File file) throws IOException {
+		this(file, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Opens the cache <code>file</code>, which may hold at most
+	 * <code>maxSize</code> bytes.
+	 * <p>
+	 * A file which is not a pixel cache or of a different version is
+	 * replaced by an empty cache.
+	 *
+	 * @param file
+	 *            the cache file, created if it does not exist
+	 * @param maxSize
+	 *            the maximum size of the file in bytes
+	 * @throws IOException
+	 *             if the file cannot be created or read
+	 */
+	public PixelCache(File file, long maxSize) throws IOException {
+		this.file = file;
+		this.maxSize = maxSize;
+		this.entries = new HashMap<String, Entry>();
+		this.fileChecksums = new HashMap<String, Long>();
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("cannot create " + dir);
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			long end = getEnd(channel);
+			if (end < 0) {
+				raf.close();
+				reset();
+				raf = new RandomAccessFile(file, "rw");
+				channel = raf.getChannel();
+				end = HEADER_SIZE;
+			}
+			long size = Math.min(end, Integer.MAX_VALUE);
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			raf.close();
+		}
+		index();
+	}
+
+	/**
+	 * Returns the default cache file, <code>applib/pixels.cache</code> in the
+	 * user's cache directory: <code>%LOCALAPPDATA%</code> on Windows,
+	 * <code>~/Library/Caches</code> on Mac OS X, and
+	 * <code>$XDG_CACHE_HOME</code> or <code>~/.cache</code> elsewhere.
+	 *
+	 * @return the default cache file
+	 */
+	public static File getDefaultFile() {
+		String os = System.getProperty("os.name", "").toLowerCase();
+		String home = System.getProperty("user.home");
+		File dir;
+		if (os.startsWith("windows") && System.getenv("LOCALAPPDATA") != null) {
+			dir = new File(System.getenv("LOCALAPPDATA"));
+		} else if (os.startsWith("mac")) {
+			dir = new File(home, "Library/Caches");
+		} else if (System.getenv("XDG_CACHE_HOME") != null) {
+			dir = new File(System.getenv("XDG_CACHE_HOME"));
+		} else {
+			dir = new File(home, ".cache");
+		}
+		return new File(new File(dir, "applib"), "pixels.cache");
+	}
+
+	/**
+	 * Returns the image <code>resource</code>, built from the cached pixels
+	 * if its checksum matches, else decoded and added to the cache.
+	 *
+	 * @param resource
+	 *            the image resource
+	 * @param classLoader
+	 *            the class loader from which to get the resource
+	 * @return the image
+	 * @throws IOException
+	 *             if the resource does not exist or cannot be decoded
+	 * @see Utils#readImage(String, ClassLoader)
+	 */
+	public BufferedImage readImage(String resource, ClassLoader classLoader)
+			throws IOException {
+		URL url = classLoader.getResource(resource);
+		long checksum = url == null ? -1 : checksum(url);
+		if (checksum == -1) {
+			return Utils.readImage(resource, classLoader);
+		}
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(resource);
+		}
+		if (entry != null && entry.checksum == checksum) {
+			if (entry.offset >= 0) {
+				return getImage(entry);
+			}
+			// added since the file was mapped
+			return Utils.readImage(resource, classLoader);
+		}
+		BufferedImage image = Utils.readImage(resource, classLoader);
+		putImage(resource, checksum, image);
+		return image;
+	}
+
+	/**
+	 * Returns whether the cache holds the pixels of <code>resource</code>,
+	 * whatever its checksum.
+	 *
+	 * @param resource
+	 *            the image resource
+	 * @return <code>true</code> if the resource is cached, else
+	 *         <code>false</code>
+	 */
+	public synchronized boolean contains(String resource) {
+		return entries.containsKey(resource);
+	}
+
+	/**
+	 * Returns the number of images cached.
+	 *
+	 * @return the number of images
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the cache file.
+	 *
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Builds the image of <code>entry</code> from the mapped pixels.
+	 */
+	private BufferedImage getImage(Entry entry) {
+		BufferedImage image = new BufferedImage(entry.width, entry.height,
+				BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer())
+				.getData();
+		ByteBuffer buffer = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(entry.offset);
+		buffer.asIntBuffer().get(pixels);
+		return image;
+	}
+
+	/**
+	 * Appends the pixels of <code>image</code> to the file, if it has room.
+	 */
+	private void putImage(String resource, long checksum, BufferedImage image)
+			throws IOException {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		byte[] name = resource.getBytes(UTF_8);
+		int size = ENTRY_SIZE + name.length + width * height * 4;
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(
+				ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(name.length).put(name).putLong(checksum).putInt(width)
+				.putInt(height);
+		IntBuffer pixels = buffer.asIntBuffer();
+		pixels.put(image.getRGB(0, 0, width, height, null, 0, width));
+		buffer.rewind();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			FileLock lock = channel.lock();
+			try {
+				long end = getEnd(channel);
+				if (end < 0 || end + size > maxSize) {
+					return;
+				}
+				while (buffer.hasRemaining()) {
+					channel.write(buffer, end + buffer.position());
+				}
+				// commits the entry
+				ByteBuffer header = ByteBuffer.allocate(8);
+				header.putLong(0, end + size);
+				while (header.hasRemaining()) {
+					channel.write(header, END_OFFSET + header.position());
+				}
+			} finally {
+				lock.release();
+			}
+		} finally {
+			raf.close();
+		}
+		synchronized (this) {
+			entries.put(resource, new Entry(checksum, width, height, -1));
+		}
+	}
+
+	/**
+	 * Reads the entries of the mapped file, which ends after the last
+	 * committed entry, stopping at an entry which is malformed.
+	 */
+	private void index() {
+		ByteBuffer buffer = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(HEADER_SIZE);
+		while (buffer.remaining() >= ENTRY_SIZE) {
+			int nameLength = buffer.getInt();
+			if (nameLength < 0 || buffer.remaining() < nameLength + 16) {
+				break;
+			}
+			byte[] name = new byte[nameLength];
+			buffer.get(name);
+			long checksum = buffer.getLong();
+			int width = buffer.getInt();
+			int height = buffer.getInt();
+			long length = (long) width * height * 4;
+			if (width <= 0 || height <= 0 || length > buffer.remaining()) {
+				break;
+			}
+			entries.put(new String(name, UTF_8), new Entry(checksum, width,
+					height, buffer.position()));
+			buffer.position(buffer.position() + (int) length);
+		}
+	}
+
+	/**
+	 * Returns the checksum of the resource at <code>url</code>, or
+	 * <code>-1</code> if it is unknown.
+	 */
+	private long checksum(URL url) throws IOException {
+		if ("jar".equals(url.getProtocol())) {
+			URLConnection connection = url.openConnection();
+			if (connection instanceof JarURLConnection) {
+				JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+				return entry == null ? -1 : entry.getCrc();
+			}
+		} else if ("file".equals(url.getProtocol())) {
+			String key = url.toString();
+			synchronized (fileChecksums) {
+				Long checksum = fileChecksums.get(key);
+				if (checksum != null) {
+					return checksum;
+				}
+			}
+			try {
+				long checksum = FileUtils.checksum(new File(url.toURI()));
+				synchronized (fileChecksums) {
+					fileChecksums.put(key, checksum);
+				}
+				return checksum;
+			} catch (URISyntaxException e) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the end of the committed entries recorded in the header of
+	 * <code>channel</code>, or <code>-1</code> if it does not begin with this
+	 * version's header.
+	 */
+	private static long getEnd(FileChannel channel) throws IOException {
+		long size = channel.size();
+		if (size < HEADER_SIZE) {
+			return -1;
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0) {
+				return -1;
+			}
+		}
+		header.flip();
+		if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+			return -1;
+		}
+		long end = header.getLong();
+		return end < HEADER_SIZE || end > size ? -1 : end;
+	}
+
+	/**
+	 * Replaces the file by an empty cache. The file is replaced rather than
+	 * truncated as another application may have it mapped.
+	 */
+	private void reset() throws IOException {
+		File temp = File.createTempFile(file.getName(), ".tmp", file
+				.getAbsoluteFile().getParentFile());
+		RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+		try {
+			raf.setLength(0);
+			raf.writeInt(MAGIC);
+			raf.writeInt(VERSION);
+			raf.writeLong(HEADER_SIZE);
+		} finally {
+			raf.close();
+		}
+		FileUtils.move(temp, file);
+	}
+
+	/**
+	 * The checksum, size and location of a cached image in the mapped file.
+	 * The offset of an image added since the file was mapped is
+	 * <code>-1</code>.
+	 */
+	private static class Entry {
+
+		final long checksum;
+		final int width;
+		final int height;
+		final int offset;
+
+		Entry(long checksum, int width, int height, int offset) {
+			this.checksum = checksum;
+			this.width = width;
+			this.height = height;
+			this.offset = offset;
+		}
+	}
+
+}
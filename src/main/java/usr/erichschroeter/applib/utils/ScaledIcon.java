@@ -0,0 +1,117 @@
+package usr.erichschroeter.applib.utils;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import javax.swing.Icon;
+
+/**
+ * A <code>ScaledIcon</code> is an <code>Icon</code> painting an image scaled
+ * ahead of time for the scale of the <code>Graphics</code> it is painted in.
+ * <p>
+ * When constructed, the icon starts scaling its image on a background thread
+ * for each of the screens' {@link Utils#getScaleFactors() scale factors}, so
+ * painting on a high resolution screen draws a pre-scaled image pixel for
+ * pixel. If painted at a scale which is not ready, the image is drawn scaled
+ * for that paint only, and the component is repainted once its variant is.
+ * The variants are kept by {@link Utils#scaleImage(Image, int, int)} as long
+ * as the image is, and are shared by the icons of the same image.
+ *
+ * @author Erich Schroeter
+ * @see Utils#scaledIcon(String, ClassLoader)
+ */
+public class ScaledIcon implements Icon {
+
+	/** The image at the icon's size. */
+	private final Image image;
+	/** The width of the icon. */
+	private final int width;
+	/** The height of the icon. */
+	private final int height;
+
+	/**
+	 * Constructs a <code>ScaledIcon</code> the size of the loaded
+	 * <code>image</code>.
+	 *
+	 * @param image
+	 *            the loaded image
+	 */
+	public ScaledIcon(Image image) {
+		this(image, image.getWidth(null), image.getHeight(null));
+	}
+
+	/**
+	 * Constructs a <code>ScaledIcon</code> of the specified size, and starts
+	 * scaling <code>image</code> for the screens' scale factors.
+	 *
+	 * @param image
+	 *            the loaded image
+	 * @param width
+	 *            the width of the icon
+	 * @param height
+	 *            the height of the icon
+	 */
+	public ScaledIcon(Image image, int width, int height) {
+		this.image = image;
+		this.width = width;
+		this.height = height;
+		prepare(Utils.getScaleFactors());
+	}
+
+	/**
+	 * Starts scaling the image for each of the <code>scales</code> for which
+	 * it is not already its size on screen.
+	 *
+	 * @param scales
+	 *            the scale factors
+	 * @return the pending scaled images
+	 */
+	public List<Future<Image>> prepare(Collection<Double> scales) {
+		List<Future<Image>> images = new ArrayList<Future<Image>>();
+		for (double scale : scales) {
+			int w = (int) Math.ceil(width * scale);
+			int h = (int) Math.ceil(height * scale);
+			if (!isSize(w, h)) {
+				images.add(Utils.scaleImage(image, w, h));
+			}
+		}
+		return images;
+	}
+
+	/**
+	 * Returns the image at the icon's size.
+	 *
+	 * @return the image
+	 */
+	public Image getImage() {
+		return image;
+	}
+
+	@Override
+	public void paintIcon(Component c, Graphics g, int x, int y) {
+		Utils.drawScaledImage(g, image, x, y, width, height, c);
+	}
+
+	@Override
+	public int getIconWidth() {
+		return width;
+	}
+
+	@Override
+	public int getIconHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns whether the image is <code>w</code> by <code>h</code> pixels.
+	 */
+	private boolean isSize(int w, int h) {
+		return image.getWidth(null) == w && image.getHeight(null) == h;
+	}
+
+}
@@ -1,19 +1,35 @@
 package usr.erichschroeter.applib.utils;
 
-import java.awt.Desktop;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Map;
 
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import javax.swing.SwingConstants;
+import javax.swing.UIManager;
 
 /**
  * A <code>SwingLink</code> is <code>JLabel</code> that acts as a hyperlink.
  * Clicking this label will open the link in a web browser.
- * 
+ * <p>
+ * The link paints its text and underline itself, with the font's metrics
+ * cached, rather than as HTML, so hovering over it toggles the underline
+ * with a repaint instead of parsing HTML and rebuilding its view each time.
+ * Only the text is painted; an icon set on the label is not. All links share
+ * a single mouse listener.
+ *
  * @author dimo414 (<a
  *         href="http://stackoverflow.com/questions/527719/how-to-add-hyperlink
  *         -in-jlabel/4518502#4518502">StackOverflow</a>), Erich Schroeter
@@ -21,8 +37,56 @@ import javax.swing.JOptionPane;
 @SuppressWarnings("serial")
 public class SwingLink extends JLabel {
 
+	/** The color of a link's text. */
+	private static final Color LINK_COLOR = new Color(0x000099);
+
+	/** Opens the link clicked and underlines the link the mouse is not over. */
+	private static final MouseAdapter LINK_LISTENER = new MouseAdapter() {
+
+		@Override
+		public void mouseClicked(MouseEvent e) {
+			open(((SwingLink) e.getSource()).uri);
+		}
+
+		@Override
+		public void mouseEntered(MouseEvent e) {
+			SwingLink link = (SwingLink) e.getSource();
+			link.setText(link.text, false);
+		}
+
+		@Override
+		public void mouseExited(MouseEvent e) {
+			SwingLink link = (SwingLink) e.getSource();
+			link.setText(link.text, true);
+		}
+	};
+
+	/** Tells the user a link failed to open. */
+	private static final LaunchListener LAUNCH_FAILED = new LaunchListener() {
+
+		@Override
+		public void launchFailed(LaunchEvent e) {
+			if (e.getCause() instanceof UnsupportedOperationException) {
+				JOptionPane.showMessageDialog(null,
+						"Java is not able to launch links on your computer.",
+						"Cannot Launch Link", JOptionPane.WARNING_MESSAGE);
+			} else {
+				JOptionPane.showMessageDialog(null,
+						"Failed to launch the link, "
+								+ "your computer is likely misconfigured.",
+						"Cannot Launch Link", JOptionPane.WARNING_MESSAGE);
+			}
+		}
+	};
+
 	private String text;
 	private URI uri;
+	/** Whether the text is underlined. */
+	private boolean underline;
+	/** The metrics of the font, or <code>null</code> until needed. */
+	private FontMetrics metrics;
+	/** The width of the text in the font. */
+	private int textWidth;
 
 	public SwingLink(String text, URI uri) {
 		super();
@@ -48,20 +112,10 @@ public class SwingLink extends JLabel {
 		text = t;
 		uri = u;
 		setText(text);
+		setForeground(LINK_COLOR);
 		setToolTipText(uri.toString());
-		addMouseListener(new MouseAdapter() {
-			public void mouseClicked(MouseEvent e) {
-				open(uri);
-			}
-
-			public void mouseEntered(MouseEvent e) {
-				setText(text, false);
-			}
-
-			public void mouseExited(MouseEvent e) {
-				setText(text, true);
-			}
-		});
+		removeMouseListener(LINK_LISTENER);
+		addMouseListener(LINK_LISTENER);
 	}
 
 	@Override
@@ -70,31 +124,130 @@ public class SwingLink extends JLabel {
 	}
 
 	public void setText(String text, boolean ul) {
-		String link = ul ? "<u>" + text + "</u>" : text;
-		super.setText("<html><span style=\"color: #000099;\">" + link
-				+ "</span></html>");
+		if (text == null ? getText() != null : !text.equals(getText())) {
+			metrics = null;
+			super.setText(text);
+		}
 		this.text = text;
+		if (underline != ul) {
+			underline = ul;
+			repaint();
+		}
 	}
 
 	public String getRawText() {
 		return text;
 	}
 
-	private static void open(URI uri) {
-		if (Desktop.isDesktopSupported()) {
-			Desktop desktop = Desktop.getDesktop();
-			try {
-				desktop.browse(uri);
-			} catch (IOException e) {
-				JOptionPane.showMessageDialog(null,
-						"Failed to launch the link, "
-								+ "your computer is likely misconfigured.",
-						"Cannot Launch Link", JOptionPane.WARNING_MESSAGE);
+	/**
+	 * Returns whether the text is underlined, which it is unless the mouse is
+	 * over the link.
+	 *
+	 * @return <code>true</code> if the text is underlined, else
+	 *         <code>false</code>
+	 */
+	public boolean isUnderlined() {
+		return underline;
+	}
+
+	@Override
+	public void setFont(Font font) {
+		metrics = null;
+		super.setFont(font);
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		if (isPreferredSizeSet() || getFont() == null) {
+			return super.getPreferredSize();
+		}
+		FontMetrics fm = getMetrics();
+		Insets insets = getInsets();
+		return new Dimension(insets.left + textWidth + insets.right,
+				insets.top + fm.getHeight() + insets.bottom);
+	}
+
+	@Override
+	public int getBaseline(int width, int height) {
+		if (getFont() == null) {
+			return super.getBaseline(width, height);
+		}
+		FontMetrics fm = getMetrics();
+		Insets insets = getInsets();
+		int available = height - insets.top - insets.bottom;
+		return insets.top + (available - fm.getHeight()) / 2 + fm.getAscent();
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		if (isOpaque()) {
+			g.setColor(getBackground());
+			g.fillRect(0, 0, getWidth(), getHeight());
+		}
+		String s = getText();
+		if (s == null || s.isEmpty() || getFont() == null) {
+			return;
+		}
+		FontMetrics fm = getMetrics();
+		Insets insets = getInsets();
+		int available = getWidth() - insets.left - insets.right;
+		int x = insets.left;
+		boolean leftToRight = getComponentOrientation().isLeftToRight();
+		int alignment = getHorizontalAlignment();
+		if (alignment == SwingConstants.LEADING) {
+			alignment = leftToRight ? SwingConstants.LEFT : SwingConstants.RIGHT;
+		} else if (alignment == SwingConstants.TRAILING) {
+			alignment = leftToRight ? SwingConstants.RIGHT : SwingConstants.LEFT;
+		}
+		if (alignment == SwingConstants.CENTER) {
+			x += (available - textWidth) / 2;
+		} else if (alignment == SwingConstants.RIGHT) {
+			x += available - textWidth;
+		}
+		int y = getBaseline(getWidth(), getHeight());
+
+		Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			Map<?, ?> hints = (Map<?, ?>) Toolkit.getDefaultToolkit()
+					.getDesktopProperty("awt.font.desktophints");
+			if (hints != null) {
+				g2.addRenderingHints(hints);
+			} else {
+				g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+						RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			}
+			Color color = getForeground();
+			if (!isEnabled()) {
+				color = UIManager.getColor("Label.disabledForeground");
+				if (color == null) {
+					color = Color.GRAY;
+				}
 			}
-		} else {
-			JOptionPane.showMessageDialog(null,
-					"Java is not able to launch links on your computer.",
-					"Cannot Launch Link", JOptionPane.WARNING_MESSAGE);
+			g2.setColor(color);
+			g2.setFont(getFont());
+			g2.drawString(s, x, y);
+			if (underline) {
+				g2.drawLine(x, y + 1, x + textWidth - 1, y + 1);
+			}
+		} finally {
+			g2.dispose();
+		}
+	}
+
+	/**
+	 * Returns the metrics of the font, measuring the text when the font or
+	 * text has changed.
+	 */
+	private FontMetrics getMetrics() {
+		if (metrics == null || metrics.getFont() != getFont()) {
+			metrics = getFontMetrics(getFont());
+			String s = getText();
+			textWidth = s == null ? 0 : metrics.stringWidth(s);
 		}
+		return metrics;
+	}
+
+	private static void open(URI uri) {
+		BrowserLauncher.getDefault().browse(uri, LAUNCH_FAILED);
 	}
-}
\ No newline at end of file
+}
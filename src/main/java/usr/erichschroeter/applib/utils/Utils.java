@@ -1,16 +1,43 @@
 package usr.erichschroeter.applib.utils;
 
-import java.awt.Desktop;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 
@@ -22,6 +49,35 @@ import javax.swing.ImageIcon;
  */
 public class Utils {
 
+	/** The icons decoded by {@link #imageIcon(String, ClassLoader)}. */
+	private static final IconCache ICON_CACHE = new IconCache();
+	/** The threads decoding icons, created when first needed. */
+	private static ExecutorService iconLoader;
+	/** The largest buffer kept by a thread for reading resources. */
+	private static final int MAX_POOLED_BUFFER_SIZE = 1 << 20;
+	/** The images converted by {@link #iconToImage(Icon)} keyed by icon. */
+	private static final Map<Icon, ConvertedIcon> CONVERTED_ICONS = new WeakHashMap<Icon, ConvertedIcon>();
+	/** The scaled variants of images keyed by the original image. */
+	private static final Map<Image, Map<Dimension, ScaleTask>> SCALED_IMAGES = new WeakHashMap<Image, Map<Dimension, ScaleTask>>();
+	/** The buffer each thread reads resources into. */
+	private static final ThreadLocal<byte[]> RESOURCE_BUFFER = new ThreadLocal<byte[]>() {
+
+		@Override
+		protected byte[] initialValue() {
+			return new byte[64 * 1024];
+		}
+	};
+
+	/**
+	 * Returns the cache of the icons returned by
+	 * {@link #imageIcon(String, ClassLoader)}.
+	 * 
+	 * @return the shared icon cache
+	 */
+	public static IconCache getIconCache() {
+		return ICON_CACHE;
+	}
+
 	/**
 	 * Returns the <code>resource</code> as an <code>ImageIcon</code>.
 	 * 
@@ -36,56 +92,541 @@ public class Utils {
 
 	/**
 	 * Returns the <code>resource</code> as an <code>ImageIcon</code>.
+	 * <p>
+	 * Icons are decoded once and kept in the {@link #getIconCache() icon
+	 * cache}, so the returned icon may be shared and should not be modified.
 	 * 
 	 * @param resource
 	 *            the icon resource
 	 * @param classLoader
 	 *            the class loader from which to get the resource as a stream
-	 * @return the <code>resource</code> as an <code>ImageIcon</code>
+	 * @return the <code>resource</code> as an <code>ImageIcon</code>, or
+	 *         <code>null</code> if it cannot be read
 	 */
 	public static ImageIcon imageIcon(String resource, ClassLoader classLoader) {
 		ImageIcon icon = null;
 		try {
-			icon = new ImageIcon(ImageIO.read(classLoader
-					.getResourceAsStream(resource)));
+			icon = ICON_CACHE.getIcon(resource, classLoader);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 		return icon;
 	}
 
+	/**
+	 * Returns the <code>resource</code> as a <code>ScaledIcon</code>.
+	 * 
+	 * @param resource
+	 *            the icon resource
+	 * @return the <code>resource</code> as a <code>ScaledIcon</code>
+	 * @see #scaledIcon(String, ClassLoader)
+	 */
+	public static ScaledIcon scaledIcon(String resource) {
+		return scaledIcon(resource, Utils.class.getClassLoader());
+	}
+
+	/**
+	 * Returns the <code>resource</code> as a <code>ScaledIcon</code>, which
+	 * paints variants of the icon scaled ahead of time for the screens'
+	 * {@link #getScaleFactors() scale factors} instead of scaling it on every
+	 * paint.
+	 * 
+	 * @param resource
+	 *            the icon resource
+	 * @param classLoader
+	 *            the class loader from which to get the resource as a stream
+	 * @return the <code>resource</code> as a <code>ScaledIcon</code>, or
+	 *         <code>null</code> if it cannot be read
+	 * @see #imageIcon(String, ClassLoader)
+	 */
+	public static ScaledIcon scaledIcon(String resource, ClassLoader classLoader) {
+		ImageIcon icon = imageIcon(resource, classLoader);
+		return icon == null ? null : new ScaledIcon(icon.getImage());
+	}
+
+	/**
+	 * Reads and decodes the image <code>resource</code>.
+	 * <p>
+	 * The resource is read once into a buffer reused by the calling thread,
+	 * and then decoded from memory, so unlike <code>ImageIO.read</code> the
+	 * decoder never caches the stream in a temporary file.
+	 * 
+	 * @param resource
+	 *            the image resource
+	 * @param classLoader
+	 *            the class loader from which to get the resource as a stream
+	 * @return the decoded image
+	 * @throws IOException
+	 *             if the resource does not exist, cannot be read, or is not a
+	 *             supported image format
+	 */
+	public static BufferedImage readImage(String resource,
+			ClassLoader classLoader) throws IOException {
+		InputStream in = classLoader.getResourceAsStream(resource);
+		if (in == null) {
+			throw new FileNotFoundException("resource not found: " + resource);
+		}
+		byte[] buffer = RESOURCE_BUFFER.get();
+		int length = 0;
+		try {
+			int n;
+			while ((n = in.read(buffer, length, buffer.length - length)) != -1) {
+				length += n;
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+			}
+		} finally {
+			in.close();
+		}
+		if (buffer.length <= MAX_POOLED_BUFFER_SIZE) {
+			RESOURCE_BUFFER.set(buffer);
+		}
+		ImageInputStream image = new ByteArrayImageInputStream(buffer, 0,
+				length);
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(image);
+			if (!readers.hasNext()) {
+				throw new IOException("unsupported image format: " + resource);
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(image, true, true);
+				return reader.read(0);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			image.close();
+		}
+	}
+
+	/**
+	 * Starts decoding the <code>resources</code> in the background.
+	 * 
+	 * @param resources
+	 *            the icon resources
+	 * @return the pending icons
+	 * @see #preloadIcons(Collection, ClassLoader)
+	 */
+	public static List<Future<ImageIcon>> preloadIcons(
+			Collection<String> resources) {
+		return preloadIcons(resources, Utils.class.getClassLoader());
+	}
+
+	/**
+	 * Starts decoding the <code>resources</code> in parallel on background
+	 * threads, adding them to the {@link #getIconCache() icon cache}.
+	 * <p>
+	 * This lets an application declare the icons it needs up front and have
+	 * them decoded while it initializes. A later call to
+	 * {@link #imageIcon(String, ClassLoader)} returns the decoded icon, or
+	 * waits for it if it is still being decoded, rather than decoding it
+	 * again. The returned futures are in the order of <code>resources</code>
+	 * and throw an <code>ExecutionException</code> wrapping the failure of a
+	 * resource which cannot be read.
+	 * 
+	 * @param resources
+	 *            the icon resources
+	 * @param classLoader
+	 *            the class loader from which to get the resources
+	 * @return the pending icons
+	 */
+	public static List<Future<ImageIcon>> preloadIcons(
+			Collection<String> resources, final ClassLoader classLoader) {
+		ExecutorService loader = getIconLoader();
+		List<Future<ImageIcon>> icons = new ArrayList<Future<ImageIcon>>(
+				resources.size());
+		for (final String resource : resources) {
+			icons.add(loader.submit(new Callable<ImageIcon>() {
+
+				@Override
+				public ImageIcon call() throws IOException {
+					return ICON_CACHE.getIcon(resource, classLoader);
+				}
+			}));
+		}
+		return icons;
+	}
+
+	/**
+	 * Returns the threads decoding icons, a thread for each processor which
+	 * stops once idle, so it does not outlive the application's startup.
+	 */
+	private static synchronized ExecutorService getIconLoader() {
+		if (iconLoader == null) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+					threads, 5, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+						private final AtomicInteger count = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "icon-loader-"
+									+ count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+			iconLoader = executor;
+		}
+		return iconLoader;
+	}
+
+	/**
+	 * Returns the distinct scale factors of the screens' default graphics
+	 * configurations, in ascending order, or only <code>1</code> in a
+	 * headless environment.
+	 * 
+	 * @return the scale factors
+	 */
+	public static List<Double> getScaleFactors() {
+		List<Double> factors = new ArrayList<Double>();
+		if (GraphicsEnvironment.isHeadless()) {
+			factors.add(1.0);
+			return factors;
+		}
+		GraphicsEnvironment ge = GraphicsEnvironment
+				.getLocalGraphicsEnvironment();
+		for (GraphicsDevice gd : ge.getScreenDevices()) {
+			Double scale = gd.getDefaultConfiguration().getDefaultTransform()
+					.getScaleX();
+			if (!factors.contains(scale)) {
+				factors.add(scale);
+			}
+		}
+		Collections.sort(factors);
+		return factors;
+	}
+
+	/**
+	 * Returns <code>image</code> scaled to <code>width</code> by
+	 * <code>height</code> pixels, scaling it on a background thread if it has
+	 * not been already.
+	 * <p>
+	 * Images are scaled with high quality: reduced by halving the image in
+	 * bilinear steps, so every source pixel contributes, and enlarged with
+	 * bicubic interpolation. The scaled images are kept as long as
+	 * <code>image</code> is, so each size is scaled once.
+	 * 
+	 * @param image
+	 *            the loaded image to scale
+	 * @param width
+	 *            the width of the scaled image
+	 * @param height
+	 *            the height of the scaled image
+	 * @return the pending scaled image
+	 */
+	public static Future<Image> scaleImage(Image image, int width, int height) {
+		return scaleTask(image, width, height);
+	}
+
+	/**
+	 * Returns <code>image</code> scaled to <code>width</code> by
+	 * <code>height</code> pixels if it has been scaled already, else starts
+	 * scaling it and returns <code>null</code>, repainting
+	 * <code>component</code> once the image is scaled.
+	 * 
+	 * @param image
+	 *            the loaded image to scale
+	 * @param width
+	 *            the width of the scaled image
+	 * @param height
+	 *            the height of the scaled image
+	 * @param component
+	 *            the component to repaint, or <code>null</code>
+	 * @return the scaled image, or <code>null</code> if it is not ready or
+	 *         cannot be scaled
+	 */
+	static Image getScaledImage(Image image, int width, int height,
+			Component component) {
+		ScaleTask task = scaleTask(image, width, height);
+		if (!task.isDone()) {
+			if (component != null) {
+				task.repaintWhenDone(component);
+			}
+			return null;
+		}
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the scale at which <code>g</code> paints, which is
+	 * <code>1</code> unless it is a <code>Graphics2D</code> with a scaling
+	 * transform.
+	 * 
+	 * @param g
+	 *            the graphics to check
+	 * @return the horizontal scale factor of <code>g</code>
+	 */
+	static double getScale(Graphics g) {
+		if (g instanceof Graphics2D) {
+			return Math.abs(((Graphics2D) g).getTransform().getScaleX());
+		}
+		return 1;
+	}
+
+	/**
+	 * Draws <code>image</code> in the <code>width</code> by
+	 * <code>height</code> area at <code>x</code>, <code>y</code>, using the
+	 * variant scaled for the {@link #getScale(Graphics) scale} of
+	 * <code>g</code> if it is ready. Otherwise the image is scaled while
+	 * drawing, with bilinear interpolation if <code>g</code> is a
+	 * <code>Graphics2D</code>, and <code>component</code> is repainted once
+	 * the variant is ready.
+	 * 
+	 * @param g
+	 *            the graphics to draw in
+	 * @param image
+	 *            the loaded image
+	 * @param x
+	 *            the x coordinate of the area
+	 * @param y
+	 *            the y coordinate of the area
+	 * @param width
+	 *            the width of the area
+	 * @param height
+	 *            the height of the area
+	 * @param component
+	 *            the component being painted, or <code>null</code>
+	 */
+	static void drawScaledImage(Graphics g, Image image, int x, int y,
+			int width, int height, Component component) {
+		double scale = getScale(g);
+		int w = (int) Math.ceil(width * scale);
+		int h = (int) Math.ceil(height * scale);
+		if (image.getWidth(null) == w && image.getHeight(null) == h) {
+			g.drawImage(image, x, y, width, height, component);
+			return;
+		}
+		Image scaled = getScaledImage(image, w, h, component);
+		if (scaled != null) {
+			g.drawImage(scaled, x, y, width, height, component);
+		} else if (g instanceof Graphics2D) {
+			Graphics2D g2 = (Graphics2D) g.create();
+			try {
+				g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+						RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				g2.drawImage(image, x, y, width, height, component);
+			} finally {
+				g2.dispose();
+			}
+		} else {
+			g.drawImage(image, x, y, width, height, component);
+		}
+	}
+
+	/**
+	 * Returns the task scaling <code>image</code>, starting it if there is
+	 * none.
+	 */
+	private static ScaleTask scaleTask(final Image image, final int width,
+			final int height) {
+		Dimension size = new Dimension(width, height);
+		ScaleTask task;
+		synchronized (SCALED_IMAGES) {
+			Map<Dimension, ScaleTask> variants = SCALED_IMAGES.get(image);
+			if (variants == null) {
+				variants = new HashMap<Dimension, ScaleTask>();
+				SCALED_IMAGES.put(image, variants);
+			}
+			task = variants.get(size);
+			if (task != null) {
+				return task;
+			}
+			// the task drops its reference to image once run, so the cached
+			// variants do not keep image from being collected
+			task = new ScaleTask(new Callable<Image>() {
+
+				@Override
+				public Image call() {
+					return scale(image, width, height);
+				}
+			});
+			variants.put(size, task);
+		}
+		getIconLoader().execute(task);
+		return task;
+	}
+
+	/**
+	 * Scales <code>image</code> to <code>width</code> by <code>height</code>
+	 * pixels.
+	 */
+	private static BufferedImage scale(Image image, int width, int height) {
+		int w = image.getWidth(null);
+		int h = image.getHeight(null);
+		if (w <= 0 || h <= 0 || width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("cannot scale " + w + "x" + h
+					+ " image to " + width + "x" + height);
+		}
+		Object interpolation = RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+		if (width > w || height > h) {
+			interpolation = RenderingHints.VALUE_INTERPOLATION_BICUBIC;
+		}
+		Image current = image;
+		do {
+			w = w > width ? Math.max(w / 2, width) : width;
+			h = h > height ? Math.max(h / 2, height) : height;
+			BufferedImage step = new BufferedImage(w, h,
+					BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = step.createGraphics();
+			try {
+				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+						interpolation);
+				g.setRenderingHint(RenderingHints.KEY_RENDERING,
+						RenderingHints.VALUE_RENDER_QUALITY);
+				g.drawImage(current, 0, 0, w, h, null);
+			} finally {
+				g.dispose();
+			}
+			current = step;
+		} while (w != width || h != height);
+		return (BufferedImage) current;
+	}
+
 	/**
 	 * Converts the specified <code>Icon</code> to an <code>Image</code>.
 	 * <p>
 	 * If <code>icon</code> is an <code>ImageIcon</code> this simply calls
-	 * {@link ImageIcon#getImage()}, otherwise the <code>icon</code> is painted
-	 * in a <code>BufferedImage</code>.
+	 * {@link ImageIcon#getImage()}, and if it is an {@link AtlasIcon} this
+	 * returns its region of the atlas. Otherwise the <code>icon</code> is painted
+	 * in a translucent <code>BufferedImage</code>, compatible with the default
+	 * screen, or an ARGB image in a headless environment.
+	 * <p>
+	 * Converted images are cached by icon and size until the icon is garbage
+	 * collected, so converting the same icon again returns the same image unless
+	 * its size changed. An icon whose appearance changes without changing its
+	 * size should be copied before converting, as the cached image will not
+	 * reflect the change.
 	 * 
 	 * @param icon
 	 *            the icon to convert
 	 * @return the converted image
+	 * @see #iconsToImages(Collection)
 	 */
 	public static Image iconToImage(Icon icon) {
 		if (icon instanceof ImageIcon) {
 			return ((ImageIcon) icon).getImage();
+		}
+		Image image = getConvertedImage(icon);
+		if (image == null) {
+			image = convertIcon(icon, getDefaultConfiguration());
+		}
+		return image;
+	}
+
+	/**
+	 * Converts the specified <code>Icon</code>s to <code>Image</code>s, as
+	 * {@link #iconToImage(Icon)} does, looking up the screen's graphics
+	 * configuration once for all of them.
+	 * 
+	 * @param icons
+	 *            the icons to convert
+	 * @return the converted images, in the order of <code>icons</code>
+	 */
+	public static List<Image> iconsToImages(Collection<? extends Icon> icons) {
+		List<Image> images = new ArrayList<Image>(icons.size());
+		GraphicsConfiguration gc = null;
+		boolean configured = false;
+		for (Icon icon : icons) {
+			Image image;
+			if (icon instanceof ImageIcon) {
+				image = ((ImageIcon) icon).getImage();
+			} else {
+				image = getConvertedImage(icon);
+				if (image == null) {
+					if (!configured) {
+						gc = getDefaultConfiguration();
+						configured = true;
+					}
+					image = convertIcon(icon, gc);
+				}
+			}
+			images.add(image);
+		}
+		return images;
+	}
+
+	/**
+	 * Returns the cached conversion of <code>icon</code> if it is still the
+	 * icon's size, else <code>null</code>.
+	 */
+	private static Image getConvertedImage(Icon icon) {
+		ConvertedIcon converted;
+		synchronized (CONVERTED_ICONS) {
+			converted = CONVERTED_ICONS.get(icon);
+		}
+		if (converted != null && converted.width == icon.getIconWidth()
+				&& converted.height == icon.getIconHeight()) {
+			return converted.image;
+		}
+		return null;
+	}
+
+	/**
+	 * Converts <code>icon</code> to an image compatible with <code>gc</code>,
+	 * or an ARGB image if <code>gc</code> is <code>null</code>, and caches it.
+	 */
+	private static Image convertIcon(Icon icon, GraphicsConfiguration gc) {
+		int w = icon.getIconWidth();
+		int h = icon.getIconHeight();
+		Image image;
+		if (icon instanceof AtlasIcon) {
+			image = ((AtlasIcon) icon).getImage();
 		} else {
-			int w = icon.getIconWidth();
-			int h = icon.getIconHeight();
-			GraphicsEnvironment ge = GraphicsEnvironment
-					.getLocalGraphicsEnvironment();
-			GraphicsDevice gd = ge.getDefaultScreenDevice();
-			GraphicsConfiguration gc = gd.getDefaultConfiguration();
-			BufferedImage image = gc.createCompatibleImage(w, h);
-			Graphics2D g = image.createGraphics();
-			icon.paintIcon(null, g, 0, 0);
-			g.dispose();
-			return image;
+			BufferedImage buffer;
+			if (gc == null) {
+				buffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+			} else {
+				buffer = gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+			}
+			Graphics2D g = buffer.createGraphics();
+			try {
+				icon.paintIcon(null, g, 0, 0);
+			} finally {
+				g.dispose();
+			}
+			image = buffer;
 		}
+		synchronized (CONVERTED_ICONS) {
+			CONVERTED_ICONS.put(icon, new ConvertedIcon(w, h, image));
+		}
+		return image;
+	}
+
+	/**
+	 * Returns the default screen's graphics configuration, or <code>null</code>
+	 * in a headless environment.
+	 */
+	private static GraphicsConfiguration getDefaultConfiguration() {
+		if (GraphicsEnvironment.isHeadless()) {
+			return null;
+		}
+		GraphicsEnvironment ge = GraphicsEnvironment
+				.getLocalGraphicsEnvironment();
+		GraphicsDevice gd = ge.getDefaultScreenDevice();
+		return gd.getDefaultConfiguration();
 	}
 
 	/**
 	 * Handles opening the <code>url</code> in the default web browser and
 	 * returns whether it was successful.
+	 * <p>
+	 * The browser is launched in the background by the
+	 * {@link BrowserLauncher#getDefault() default launcher}, so this returns
+	 * without waiting for it, and does not report a browser which fails to
+	 * launch. Use the launcher directly to be notified of failures.
 	 * 
 	 * @param url
 	 *            a valid website address
@@ -96,15 +637,66 @@ public class Utils {
 		boolean successful = false;
 		if (url != null) {
 			try {
-				Desktop.getDesktop().browse(URI.create(url));
+				BrowserLauncher.getDefault().browse(URI.create(url));
 				successful = true;
 			} catch (IllegalArgumentException e1) {
 				successful = false;
-			} catch (IOException e1) {
-				successful = false;
 			}
 		}
 		return successful;
 	}
 
+	/**
+	 * An image converted from an icon and the icon's size when converted.
+	 */
+	private static class ConvertedIcon {
+
+		final int width;
+		final int height;
+		final Image image;
+
+		ConvertedIcon(int width, int height, Image image) {
+			this.width = width;
+			this.height = height;
+			this.image = image;
+		}
+	}
+
+	/**
+	 * A task scaling an image, repainting the components waiting for it once
+	 * done.
+	 */
+	private static class ScaleTask extends FutureTask<Image> {
+
+		private final List<Component> components = new ArrayList<Component>();
+
+		ScaleTask(Callable<Image> callable) {
+			super(callable);
+		}
+
+		void repaintWhenDone(Component component) {
+			synchronized (components) {
+				if (!isDone()) {
+					if (!components.contains(component)) {
+						components.add(component);
+					}
+					return;
+				}
+			}
+			component.repaint();
+		}
+
+		@Override
+		protected void done() {
+			List<Component> waiting;
+			synchronized (components) {
+				waiting = new ArrayList<Component>(components);
+				components.clear();
+			}
+			for (Component component : waiting) {
+				component.repaint();
+			}
+		}
+	}
+
 }
@@ -0,0 +1,230 @@
+package usr.erichschroeter.applib.xml;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Validator;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import usr.erichschroeter.applib.io.Compression;
+
+/**
+ * A <code>BatchValidator</code> validates many XML files against a schema
+ * compiled by a {@link SchemaCache}, spreading the files across worker
+ * threads.
+ * <p>
+ * Each worker thread reuses its own <code>Validator</code>. The result of
+ * each file is passed to a {@link ValidationListener} as soon as it is known,
+ * and a {@link ValidationReport} summarizes the batch.
+ *
+ * <pre>
+ * BatchValidator validator = new BatchValidator(new SchemaCache());
+ * try {
+ * 	ValidationReport report = validator.validate(xsd, files,
+ * 			new ValidationListener() {
+ *
+ * 				public void validated(ValidationResult result) {
+ * 					if (!result.isValid()) {
+ * 						System.err.println(result);
+ * 					}
+ * 				}
+ * 			});
+ * 	System.out.println(report);
+ * } finally {
+ * 	validator.close();
+ * }
+ * </pre>
+ *
+ * @author Erich Schroeter
+ */
+public class BatchValidator implements Closeable {
+
+	/** The default number of slowest files reported. */
+	public static final int DEFAULT_SLOWEST_COUNT = 10;
+
+	/** The compiled schemas. */
+	private final SchemaCache cache;
+	/** The workers validating files. */
+	private final ExecutorService workers;
+	/** The number of slowest files reported. */
+	private int slowestCount;
+
+	/**
+	 * Constructs a <code>BatchValidator</code> with a worker thread for each
+	 * processor.
+	 *
+	 * @param cache
+	 *            the compiled schemas
+	 */
+	public BatchValidator(SchemaCache cache) {
+		this(cache, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs a <code>BatchValidator</code> with <code>threads</code>
+	 * worker threads.
+	 *
+	 * @param cache
+	 *            the compiled schemas
+	 * @param threads
+	 *            the number of worker threads
+	 */
+	public BatchValidator(SchemaCache cache, int threads) {
+		this.cache = cache;
+		this.workers = Executors.newFixedThreadPool(threads);
+		this.slowestCount = DEFAULT_SLOWEST_COUNT;
+	}
+
+	/**
+	 * Returns the compiled schemas.
+	 *
+	 * @return the cache
+	 */
+	public SchemaCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Sets the number of slowest files kept by each report.
+	 *
+	 * @param slowestCount
+	 *            the number of slowest files
+	 */
+	public void setSlowestCount(int slowestCount) {
+		this.slowestCount = slowestCount;
+	}
+
+	/**
+	 * Validates a single file on the calling thread.
+	 *
+	 * @param schema
+	 *            the schema file
+	 * @param file
+	 *            the XML file to validate
+	 * @return the result
+	 * @throws SAXException
+	 *             if the schema cannot be compiled
+	 */
+	public ValidationResult validate(File schema, File file)
+			throws SAXException {
+		Validator validator = cache.getValidator(schema);
+		final List<SAXParseException> errors = new ArrayList<SAXParseException>();
+		validator.setErrorHandler(new ErrorHandler() {
+
+			@Override
+			public void warning(SAXParseException exception) {
+			}
+
+			@Override
+			public void error(SAXParseException exception) {
+				errors.add(exception);
+			}
+
+			@Override
+			public void fatalError(SAXParseException exception)
+					throws SAXException {
+				throw exception;
+			}
+		});
+		Exception failure = null;
+		long start = System.nanoTime();
+		try {
+			InputStream in = Compression.open(file);
+			try {
+				validator.validate(new StreamSource(in, file.toURI()
+						.toString()));
+			} finally {
+				in.close();
+			}
+		} catch (SAXException e) {
+			failure = e;
+		} catch (IOException e) {
+			failure = e;
+		}
+		return new ValidationResult(file, errors, failure, System.nanoTime()
+				- start);
+	}
+
+	/**
+	 * Validates the <code>files</code> on the worker threads, waiting until
+	 * all have been validated.
+	 *
+	 * @param schema
+	 *            the schema file
+	 * @param files
+	 *            the XML files to validate
+	 * @param listener
+	 *            notified of each result as it is known, or <code>null</code>
+	 * @return the summary of the batch
+	 * @throws SAXException
+	 *             if the schema cannot be compiled
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public ValidationReport validate(final File schema,
+			Collection<File> files, final ValidationListener listener)
+			throws SAXException, InterruptedException {
+		// fail early, and compile once rather than on every worker
+		cache.getSchema(schema);
+		final ValidationReport report = new ValidationReport(slowestCount);
+		long start = System.nanoTime();
+		List<Future<?>> pending = new ArrayList<Future<?>>(files.size());
+		for (final File file : files) {
+			pending.add(workers.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					ValidationResult result = validate(schema, file);
+					report.add(result, file.length());
+					if (listener != null) {
+						listener.validated(result);
+					}
+					return null;
+				}
+			}));
+		}
+		try {
+			for (Future<?> future : pending) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SAXException) {
+				throw (SAXException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new SAXException(e);
+		} catch (InterruptedException e) {
+			for (Future<?> future : pending) {
+				future.cancel(true);
+			}
+			throw e;
+		}
+		report.setElapsed(System.nanoTime() - start);
+		return report;
+	}
+
+	/**
+	 * Stops the worker threads after the pending files are validated.
+	 */
+	@Override
+	public void close() {
+		workers.shutdown();
+	}
+
+}
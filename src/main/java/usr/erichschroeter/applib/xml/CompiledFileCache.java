@@ -0,0 +1,133 @@
+package usr.erichschroeter.applib.xml;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A <code>CompiledFileCache</code> caches an object compiled from a file,
+ * keyed by the file's path, until the file's modification time or length
+ * changes.
+ * <p>
+ * A file is compiled at most once per change, even if several threads request
+ * it at the same time; the other threads wait for the first to finish. A
+ * failed compilation is not cached.
+ *
+ * @param <T>
+ *            the type of the compiled object
+ * @author Erich Schroeter
+ */
+abstract class CompiledFileCache<T> {
+
+	/** The compiled objects keyed by absolute file. */
+	private final ConcurrentMap<File, Entry<T>> entries;
+
+	CompiledFileCache() {
+		entries = new ConcurrentHashMap<File, Entry<T>>();
+	}
+
+	/**
+	 * Compiles <code>file</code>. This may be called from several threads at
+	 * once for different files.
+	 *
+	 * @param file
+	 *            the absolute file to compile
+	 * @return the compiled object
+	 * @throws Exception
+	 *             if the file cannot be compiled
+	 */
+	protected abstract T compile(File file) throws Exception;
+
+	/**
+	 * Returns the compiled object for <code>file</code>, compiling it if it is
+	 * not cached or has changed.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the compiled object
+	 * @throws ExecutionException
+	 *             wrapping the exception thrown by {@link #compile(File)}
+	 */
+	T get(File file) throws ExecutionException {
+		final File key = file.getAbsoluteFile();
+		long lastModified = key.lastModified();
+		long length = key.length();
+		while (true) {
+			Entry<T> entry = entries.get(key);
+			if (entry == null || entry.lastModified != lastModified
+					|| entry.length != length) {
+				Entry<T> created = new Entry<T>(lastModified, length,
+						new FutureTask<T>(new Callable<T>() {
+
+							@Override
+							public T call() throws Exception {
+								return compile(key);
+							}
+						}));
+				boolean added = entry == null ? entries.putIfAbsent(key,
+						created) == null : entries.replace(key, entry, created);
+				if (!added) {
+					// another thread updated the entry first
+					continue;
+				}
+				created.task.run();
+				entry = created;
+			}
+			try {
+				return entry.task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ExecutionException(e);
+			} catch (ExecutionException e) {
+				entries.remove(key, entry);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Removes the compiled object for <code>file</code>, if cached.
+	 *
+	 * @param file
+	 *            the file
+	 */
+	public void remove(File file) {
+		entries.remove(file.getAbsoluteFile());
+	}
+
+	/**
+	 * Removes all compiled objects.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Returns the number of files cached.
+	 *
+	 * @return the number of cached files
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * A compiled object and the state of the file it was compiled from.
+	 */
+	private static class Entry<T> {
+
+		final long lastModified;
+		final long length;
+		final FutureTask<T> task;
+
+		Entry(long lastModified, long length, FutureTask<T> task) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.task = task;
+		}
+	}
+
+}
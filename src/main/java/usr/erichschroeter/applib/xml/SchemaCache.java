@@ -0,0 +1,131 @@
+package usr.erichschroeter.applib.xml;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import javax.xml.XMLConstants;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import org.xml.sax.SAXException;
+
+/**
+ * A <code>SchemaCache</code> caches compiled XML schemas.
+ * <p>
+ * Each <code>.xsd</code> file is compiled once into a <code>Schema</code>
+ * and recompiled only when its modification time or length changes. Schemas
+ * it includes or imports are not checked; call {@link #remove(File)} after
+ * changing them.
+ * <p>
+ * A <code>Schema</code> is thread safe but a <code>Validator</code> is not,
+ * so {@link #getValidator(File)} keeps one validator per schema for each
+ * thread and resets it before returning it.
+ *
+ * @author Erich Schroeter
+ */
+public class SchemaCache extends CompiledFileCache<Schema> {
+
+	/** The factory compiling schemas, which is not thread safe. */
+	private final SchemaFactory factory;
+	/** Each thread's validators keyed by absolute schema file. */
+	private final ThreadLocal<Map<File, ThreadValidator>> validators;
+
+	/**
+	 * Constructs a <code>SchemaCache</code> compiling W3C XML schemas.
+	 */
+	public SchemaCache() {
+		this(SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI));
+	}
+
+	/**
+	 * Constructs a <code>SchemaCache</code> compiling schemas with
+	 * <code>factory</code>. The factory must not be used elsewhere.
+	 *
+	 * @param factory
+	 *            the factory compiling schemas
+	 */
+	public SchemaCache(SchemaFactory factory) {
+		this.factory = factory;
+		this.validators = new ThreadLocal<Map<File, ThreadValidator>>() {
+
+			@Override
+			protected Map<File, ThreadValidator> initialValue() {
+				return new HashMap<File, ThreadValidator>();
+			}
+		};
+	}
+
+	/**
+	 * Returns the compiled schema, compiling it if it is not cached or has
+	 * changed.
+	 *
+	 * @param schema
+	 *            the schema file
+	 * @return the compiled schema
+	 * @throws SAXException
+	 *             if the schema cannot be compiled
+	 */
+	public Schema getSchema(File schema) throws SAXException {
+		try {
+			return get(schema);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SAXException) {
+				throw (SAXException) cause;
+			}
+			throw new SAXException(cause instanceof Exception ? (Exception) cause
+					: e);
+		}
+	}
+
+	/**
+	 * Returns the calling thread's validator for <code>schema</code>, reset to
+	 * its original configuration. The validator must only be used by the
+	 * calling thread.
+	 *
+	 * @param schema
+	 *            the schema file
+	 * @return the validator
+	 * @throws SAXException
+	 *             if the schema cannot be compiled
+	 */
+	public Validator getValidator(File schema) throws SAXException {
+		Schema compiled = getSchema(schema);
+		Map<File, ThreadValidator> map = validators.get();
+		File key = schema.getAbsoluteFile();
+		ThreadValidator cached = map.get(key);
+		// a validator of an outdated schema is replaced
+		if (cached == null || cached.schema != compiled) {
+			cached = new ThreadValidator(compiled);
+			map.put(key, cached);
+		} else {
+			cached.validator.reset();
+		}
+		return cached.validator;
+	}
+
+	@Override
+	protected Schema compile(File file) throws Exception {
+		synchronized (factory) {
+			return factory.newSchema(file);
+		}
+	}
+
+	/**
+	 * A validator and the schema it was created from.
+	 */
+	private static class ThreadValidator {
+
+		final Schema schema;
+		final Validator validator;
+
+		ThreadValidator(Schema schema) {
+			this.schema = schema;
+			this.validator = schema.newValidator();
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package usr.erichschroeter.applib.xml;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * A <code>TemplatesCache</code> caches compiled XSLT stylesheets.
+ * <p>
+ * Compiling a stylesheet costs far more than applying it, so each
+ * <code>.xsl</code> or <code>.xslt</code> file is compiled once into
+ * <code>Templates</code> and recompiled only when its modification time or
+ * length changes. Stylesheets it includes or imports are not checked; call
+ * {@link #remove(File)} after changing them.
+ * <p>
+ * A <code>TemplatesCache</code> is thread safe, as are the
+ * <code>Templates</code> it returns.
+ *
+ * @author Erich Schroeter
+ */
+public class TemplatesCache extends CompiledFileCache<Templates> {
+
+	/** The factory compiling stylesheets, which is not thread safe. */
+	private final TransformerFactory factory;
+
+	/**
+	 * Constructs a <code>TemplatesCache</code> using the default
+	 * <code>TransformerFactory</code>.
+	 */
+	public TemplatesCache() {
+		this(TransformerFactory.newInstance());
+	}
+
+	/**
+	 * Constructs a <code>TemplatesCache</code> compiling stylesheets with
+	 * <code>factory</code>. The factory must not be used elsewhere.
+	 *
+	 * @param factory
+	 *            the factory compiling stylesheets
+	 */
+	public TemplatesCache(TransformerFactory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Returns the compiled stylesheet, compiling it if it is not cached or has
+	 * changed.
+	 *
+	 * @param stylesheet
+	 *            the stylesheet file
+	 * @return the compiled stylesheet
+	 * @throws TransformerConfigurationException
+	 *             if the stylesheet cannot be compiled
+	 */
+	public Templates getTemplates(File stylesheet)
+			throws TransformerConfigurationException {
+		try {
+			return get(stylesheet);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TransformerConfigurationException) {
+				throw (TransformerConfigurationException) cause;
+			}
+			throw new TransformerConfigurationException(cause);
+		}
+	}
+
+	@Override
+	protected Templates compile(File file) throws Exception {
+		synchronized (factory) {
+			return factory.newTemplates(new StreamSource(file));
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package usr.erichschroeter.applib.xml;
+
+/**
+ * A <code>ValidationListener</code> is notified as each file of a batch is
+ * validated by a {@link BatchValidator}.
+ * <p>
+ * Listeners are called from the validator's worker threads, in the order the
+ * files finish.
+ *
+ * @author Erich Schroeter
+ */
+public interface ValidationListener {
+
+	/**
+	 * Called when a file has been validated.
+	 *
+	 * @param result
+	 *            the result of validating the file
+	 */
+	void validated(ValidationResult result);
+
+}
@@ -0,0 +1,139 @@
+package usr.erichschroeter.applib.xml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A <code>ValidationReport</code> summarizes a batch validated by a
+ * {@link BatchValidator}: how many files were invalid, the throughput, and
+ * which files took the longest.
+ *
+ * @author Erich Schroeter
+ */
+public class ValidationReport {
+
+	/** Orders results from fastest to slowest. */
+	private static final Comparator<ValidationResult> BY_ELAPSED = new Comparator<ValidationResult>() {
+
+		@Override
+		public int compare(ValidationResult o1, ValidationResult o2) {
+			return Long.compare(o1.getElapsed(), o2.getElapsed());
+		}
+	};
+
+	/** The number of slowest results kept. */
+	private final int slowestCount;
+	/** The slowest results, with the fastest of them at the head. */
+	private final PriorityQueue<ValidationResult> slowest;
+	/** The number of files validated. */
+	private int fileCount;
+	/** The number of invalid files. */
+	private int invalidCount;
+	/** The number of bytes validated. */
+	private long byteCount;
+	/** The time taken to validate the batch in nanoseconds. */
+	private long elapsed;
+
+	ValidationReport(int slowestCount) {
+		this.slowestCount = slowestCount;
+		this.slowest = new PriorityQueue<ValidationResult>(
+				Math.max(1, slowestCount + 1), BY_ELAPSED);
+	}
+
+	/**
+	 * Adds the result of validating a file of <code>length</code> bytes.
+	 */
+	synchronized void add(ValidationResult result, long length) {
+		fileCount++;
+		byteCount += length;
+		if (!result.isValid()) {
+			invalidCount++;
+		}
+		if (slowestCount > 0) {
+			slowest.add(result);
+			if (slowest.size() > slowestCount) {
+				slowest.poll();
+			}
+		}
+	}
+
+	synchronized void setElapsed(long elapsed) {
+		this.elapsed = elapsed;
+	}
+
+	/**
+	 * Returns the number of files validated.
+	 *
+	 * @return the number of files
+	 */
+	public synchronized int getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * Returns the number of files which were not valid.
+	 *
+	 * @return the number of invalid files
+	 */
+	public synchronized int getInvalidCount() {
+		return invalidCount;
+	}
+
+	/**
+	 * Returns the total size of the files validated.
+	 *
+	 * @return the number of bytes
+	 */
+	public synchronized long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Returns the time taken to validate the batch.
+	 *
+	 * @return the elapsed time in nanoseconds
+	 */
+	public synchronized long getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * Returns the number of files validated per second.
+	 *
+	 * @return the file throughput
+	 */
+	public synchronized double getFilesPerSecond() {
+		return elapsed == 0 ? 0 : fileCount * 1e9 / elapsed;
+	}
+
+	/**
+	 * Returns the number of bytes validated per second.
+	 *
+	 * @return the byte throughput
+	 */
+	public synchronized double getBytesPerSecond() {
+		return elapsed == 0 ? 0 : byteCount * 1e9 / elapsed;
+	}
+
+	/**
+	 * Returns the results which took the longest, slowest first.
+	 *
+	 * @return the slowest results
+	 */
+	public synchronized List<ValidationResult> getSlowest() {
+		List<ValidationResult> list = new ArrayList<ValidationResult>(slowest);
+		Collections.sort(list, Collections.reverseOrder(BY_ELAPSED));
+		return list;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d files (%d invalid) in %.3f s: %.1f files/s, "
+				+ "%.1f MB/s", fileCount, invalidCount, elapsed / 1e9,
+				getFilesPerSecond(), getBytesPerSecond() / 1e6);
+	}
+
+}
@@ -0,0 +1,87 @@
+package usr.erichschroeter.applib.xml;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.xml.sax.SAXParseException;
+
+/**
+ * A <code>ValidationResult</code> is the outcome of validating one file with
+ * a {@link BatchValidator}.
+ *
+ * @author Erich Schroeter
+ */
+public class ValidationResult {
+
+	/** The file validated. */
+	private final File file;
+	/** The errors reported by the validator. */
+	private final List<SAXParseException> errors;
+	/** The exception which stopped validation, or <code>null</code>. */
+	private final Exception exception;
+	/** The time taken to validate the file in nanoseconds. */
+	private final long elapsed;
+
+	public ValidationResult(File file, List<SAXParseException> errors,
+			Exception exception, long elapsed) {
+		this.file = file;
+		this.errors = Collections.unmodifiableList(errors);
+		this.exception = exception;
+		this.elapsed = elapsed;
+	}
+
+	/**
+	 * Returns the file validated.
+	 *
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns whether the file is valid, i.e. no errors were reported and
+	 * validation was not stopped.
+	 *
+	 * @return <code>true</code> if valid, else <code>false</code>
+	 */
+	public boolean isValid() {
+		return errors.isEmpty() && exception == null;
+	}
+
+	/**
+	 * Returns the recoverable errors reported by the validator.
+	 *
+	 * @return the errors, which may be empty
+	 */
+	public List<SAXParseException> getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Returns the exception which stopped validation, such as a fatal parse
+	 * error or an I/O error.
+	 *
+	 * @return the exception, or <code>null</code> if validation finished
+	 */
+	public Exception getException() {
+		return exception;
+	}
+
+	/**
+	 * Returns the time taken to validate the file.
+	 *
+	 * @return the elapsed time in nanoseconds
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	@Override
+	public String toString() {
+		return file + (isValid() ? " valid" : " invalid") + " ("
+				+ elapsed / 1000000 + " ms)";
+	}
+
+}
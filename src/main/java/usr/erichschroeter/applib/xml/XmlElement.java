@@ -0,0 +1,132 @@
+package usr.erichschroeter.applib.xml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A <code>XmlElement</code> is a lightweight, read only copy of an element
+ * read by a {@link XmlModelLoader}: its name, attributes, text and child
+ * elements.
+ * <p>
+ * Only the elements matching a loader's paths, and their descendants, are
+ * copied, so the size of a <code>XmlElement</code> depends on the size of one
+ * record rather than the size of the file.
+ *
+ * @author Erich Schroeter
+ */
+public class XmlElement {
+
+	/** The qualified name. */
+	private final String name;
+	/** The attribute values keyed by qualified name. */
+	private final Map<String, String> attributes;
+	/** The child elements. */
+	private final List<XmlElement> children;
+	/** The text directly within the element. */
+	private final StringBuilder text;
+
+	XmlElement(String name) {
+		this.name = name;
+		this.attributes = new LinkedHashMap<String, String>();
+		this.children = new ArrayList<XmlElement>();
+		this.text = new StringBuilder();
+	}
+
+	void setAttribute(String name, String value) {
+		attributes.put(name, value);
+	}
+
+	void addChild(XmlElement child) {
+		children.add(child);
+	}
+
+	void appendText(char[] chars, int start, int length) {
+		text.append(chars, start, length);
+	}
+
+	/**
+	 * Returns the element's qualified name, including any prefix.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the value of the attribute with the qualified <code>name</code>.
+	 *
+	 * @param name
+	 *            the attribute's name
+	 * @return the value, or <code>null</code> if the attribute is not present
+	 */
+	public String getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	/**
+	 * Returns the attribute values keyed by qualified name, in document order.
+	 *
+	 * @return the attributes
+	 */
+	public Map<String, String> getAttributes() {
+		return Collections.unmodifiableMap(attributes);
+	}
+
+	/**
+	 * Returns the text directly within the element, excluding the text of
+	 * child elements.
+	 *
+	 * @return the text, which may be empty
+	 */
+	public String getText() {
+		return text.toString();
+	}
+
+	/**
+	 * Returns the child elements, in document order.
+	 *
+	 * @return the children
+	 */
+	public List<XmlElement> getChildren() {
+		return Collections.unmodifiableList(children);
+	}
+
+	/**
+	 * Returns the first child element with the qualified <code>name</code>.
+	 *
+	 * @param name
+	 *            the child's name
+	 * @return the child, or <code>null</code> if there is none
+	 */
+	public XmlElement getChild(String name) {
+		for (XmlElement child : children) {
+			if (child.name.equals(name)) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the text of the first child element with the qualified
+	 * <code>name</code>.
+	 *
+	 * @param name
+	 *            the child's name
+	 * @return the child's text, or <code>null</code> if there is no such child
+	 */
+	public String getChildText(String name) {
+		XmlElement child = getChild(name);
+		return child == null ? null : child.getText();
+	}
+
+	@Override
+	public String toString() {
+		return "<" + name + attributes + ">";
+	}
+
+}
@@ -0,0 +1,862 @@
+package usr.erichschroeter.applib.xml;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * A <code>XmlIndex</code> records where the elements matching a path are in
+ * an XML file, so a single element of a huge file can be read without parsing
+ * the rest of the file.
+ * <p>
+ * {@link #open(File, String)} scans the XML file once and writes the byte
+ * offsets of the matching elements to a sidecar file named after the XML file
+ * with a {@value #EXTENSION} extension appended (e.g.
+ * <code>data.xml.xidx</code>). Later calls map the sidecar file, as long as it
+ * was built for the same path from an XML file of the same size and
+ * modification time. Otherwise the sidecar file is rebuilt.
+ * <p>
+ * A path is a list of element names separated by <code>'/'</code>, where
+ * <code>*</code> matches any element. A path beginning with <code>"/"</code>
+ * matches from the root element, e.g. <code>/catalog/book</code>, while a path
+ * beginning with <code>"//"</code> matches at any depth, e.g.
+ * <code>//book</code>. Names are compared with the qualified names in the
+ * file, including any prefix.
+ *
+ * <pre>
+ * XmlIndex index = XmlIndex.open(file, &quot;/catalog/book&quot;);
+ * try {
+ * 	Element book = index.parse(index.size() - 1);
+ * } finally {
+ * 	index.close();
+ * }
+ * </pre>
+ * <p>
+ * The XML file must be uncompressed, since the offsets are of the file's
+ * bytes, and use an ASCII compatible encoding, such as UTF-8. A
+ * fragment is parsed on its own, so it must not use namespace prefixes or
+ * entities declared outside of it; fragments are therefore parsed without
+ * namespace awareness.
+ *
+ * @author Erich Schroeter
+ */
+public class XmlIndex implements Closeable {
+
+	/** The extension appended to an XML file's name for its sidecar file. */
+	public static final String EXTENSION = ".xidx";
+
+	/** Identifies a sidecar file. */
+	private static final int MAGIC = 0x58444958;
+	/** The version of the sidecar file format. */
+	private static final int VERSION = 1;
+	/** The encoding of strings in the sidecar file. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	/** The number of bytes read from the XML file at a time. */
+	private static final int READ_SIZE = 1 << 20;
+	/** The number of entries written to the sidecar file at a time. */
+	private static final int ENTRY_BATCH = 1 << 16;
+	/** Finds the encoding in an XML declaration. */
+	private static final Pattern ENCODING = Pattern
+			.compile("^<\\?xml[^>]*encoding\\s*=\\s*[\"']([A-Za-z0-9._\\-]+)[\"']");
+
+	/** Parses fragments as DOM elements. */
+	private static final DocumentBuilderFactory DOCUMENT_FACTORY = DocumentBuilderFactory
+			.newInstance();
+	/** Parses fragments as StAX streams. */
+	private static final XMLInputFactory STREAM_FACTORY = XMLInputFactory
+			.newInstance();
+	static {
+		STREAM_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE,
+				Boolean.FALSE);
+	}
+
+	/** The XML file being read. */
+	private final RandomAccessFile file;
+	/** The path the index was built for. */
+	private final String path;
+	/** The encoding of the XML file. */
+	private final String encoding;
+	/** The start and end offset of each element. */
+	private final LongBuffer entries;
+
+	private XmlIndex(RandomAccessFile file, String path, String encoding,
+			LongBuffer entries) {
+		this.file = file;
+		this.path = path;
+		this.encoding = encoding;
+		this.entries = entries;
+	}
+
+	/**
+	 * Returns the sidecar file used for <code>xml</code>.
+	 *
+	 * @param xml
+	 *            the XML file
+	 * @return the sidecar file
+	 */
+	public static File getSidecarFile(File xml) {
+		return new File(xml.getPath() + EXTENSION);
+	}
+
+	/**
+	 * Opens the index of the elements of <code>xml</code> matching
+	 * <code>path</code>, building its sidecar file first if it does not exist
+	 * or is out of date.
+	 *
+	 * @param xml
+	 *            the XML file
+	 * @param path
+	 *            the path of the elements to index
+	 * @return the index, which must be closed
+	 * @throws IOException
+	 *             if an I/O error occurs or the XML file is malformed
+	 */
+	public static XmlIndex open(File xml, String path) throws IOException {
+		File sidecar = getSidecarFile(xml);
+		if (!isCurrent(xml, sidecar, path)) {
+			build(xml, sidecar, path);
+		}
+		return map(xml, sidecar);
+	}
+
+	/**
+	 * Returns whether <code>sidecar</code> was built for <code>path</code>
+	 * from the current version of <code>xml</code>.
+	 *
+	 * @param xml
+	 *            the XML file
+	 * @param sidecar
+	 *            the sidecar file
+	 * @param path
+	 *            the path of the elements indexed
+	 * @return <code>true</code> if the sidecar file is up to date, else
+	 *         <code>false</code>
+	 */
+	public static boolean isCurrent(File xml, File sidecar, String path) {
+		if (!sidecar.isFile() || sidecar.lastModified() < xml.lastModified()) {
+			return false;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(sidecar, "r")) {
+			Header header = Header.read(raf.getChannel());
+			return header != null && header.length == xml.length()
+					&& header.modified == xml.lastModified()
+					&& header.path.equals(path);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Scans <code>xml</code> and writes the offsets of the elements matching
+	 * <code>path</code> to <code>sidecar</code>. The sidecar file is written
+	 * to a temporary file first and then moved, so a partially written
+	 * sidecar file is never opened.
+	 *
+	 * @param xml
+	 *            the XML file
+	 * @param sidecar
+	 *            the sidecar file to write
+	 * @param path
+	 *            the path of the elements to index
+	 * @throws IOException
+	 *             if an I/O error occurs or the XML file is malformed
+	 */
+	public static void build(File xml, File sidecar, String path)
+			throws IOException {
+		byte[][] steps = parsePath(path);
+		boolean absolute = !path.startsWith("//");
+		File temp = File.createTempFile(sidecar.getName(), ".tmp",
+				sidecar.getAbsoluteFile().getParentFile());
+		try {
+			long length = xml.length();
+			long modified = xml.lastModified();
+			try (RandomAccessFile in = new RandomAccessFile(xml, "r");
+					RandomAccessFile out = new RandomAccessFile(temp, "rw")) {
+				String encoding = detectEncoding(in.getChannel());
+				Header header = new Header(length, modified, 0, encoding, path);
+				Scanner scanner = new Scanner(in.getChannel(),
+						out.getChannel(), header.length(), steps, absolute);
+				header.count = scanner.scan();
+				ByteBuffer head = header.toBuffer();
+				while (head.hasRemaining()) {
+					out.getChannel().write(head, head.position());
+				}
+			}
+			try {
+				Files.move(temp.toPath(), sidecar.toPath(),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), sidecar.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Maps a sidecar file of <code>xml</code>.
+	 *
+	 * @param xml
+	 *            the XML file
+	 * @param sidecar
+	 *            the sidecar file
+	 * @return the index, which must be closed
+	 * @throws IOException
+	 *             if an I/O error occurs or the file is not a sidecar file
+	 */
+	public static XmlIndex map(File xml, File sidecar) throws IOException {
+		Header header;
+		LongBuffer entries;
+		try (RandomAccessFile raf = new RandomAccessFile(sidecar, "r")) {
+			FileChannel channel = raf.getChannel();
+			header = Header.read(channel);
+			if (header == null) {
+				throw new IOException(sidecar + " is not a sidecar file");
+			}
+			entries = channel
+					.map(FileChannel.MapMode.READ_ONLY, header.length(),
+							header.count * 16).order(ByteOrder.LITTLE_ENDIAN)
+					.asLongBuffer();
+		}
+		return new XmlIndex(new RandomAccessFile(xml, "r"), header.path,
+				header.encoding, entries);
+	}
+
+	/**
+	 * Returns the path of the elements indexed.
+	 *
+	 * @return the path
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the encoding of the XML file, from its XML declaration.
+	 *
+	 * @return the encoding
+	 */
+	public String getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Returns the number of elements indexed.
+	 *
+	 * @return the number of elements
+	 */
+	public int size() {
+		return entries.limit() / 2;
+	}
+
+	/**
+	 * Returns the offset of the <code>'&lt;'</code> beginning the element at
+	 * <code>index</code>.
+	 *
+	 * @param index
+	 *            the index of the element, in document order
+	 * @return the start offset
+	 */
+	public long getStart(int index) {
+		return entries.get(index * 2);
+	}
+
+	/**
+	 * Returns the offset after the <code>'&gt;'</code> ending the element at
+	 * <code>index</code>.
+	 *
+	 * @param index
+	 *            the index of the element, in document order
+	 * @return the end offset
+	 */
+	public long getEnd(int index) {
+		return entries.get(index * 2 + 1);
+	}
+
+	/**
+	 * Maps the bytes of the element at <code>index</code>.
+	 *
+	 * @param index
+	 *            the index of the element, in document order
+	 * @return a read only buffer of the element's bytes
+	 * @throws IOException
+	 *             if an I/O error occurs mapping the file
+	 */
+	public ByteBuffer getFragment(int index) throws IOException {
+		long start = getStart(index);
+		return file.getChannel().map(FileChannel.MapMode.READ_ONLY, start,
+				getEnd(index) - start);
+	}
+
+	/**
+	 * Parses the element at <code>index</code> into a DOM element.
+	 *
+	 * @param index
+	 *            the index of the element, in document order
+	 * @return the element, which is the root of its own document
+	 * @throws IOException
+	 *             if an I/O error occurs or the fragment is malformed
+	 */
+	public Element parse(int index) throws IOException {
+		DocumentBuilder builder;
+		try {
+			synchronized (DOCUMENT_FACTORY) {
+				builder = DOCUMENT_FACTORY.newDocumentBuilder();
+			}
+		} catch (ParserConfigurationException e) {
+			throw new IOException(e);
+		}
+		InputSource source = new InputSource(new BufferInputStream(
+				getFragment(index)));
+		source.setEncoding(encoding);
+		try {
+			return builder.parse(source).getDocumentElement();
+		} catch (SAXException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Creates a StAX reader of the element at <code>index</code>, which must
+	 * be closed.
+	 *
+	 * @param index
+	 *            the index of the element, in document order
+	 * @return the reader
+	 * @throws IOException
+	 *             if an I/O error occurs mapping the file
+	 * @throws XMLStreamException
+	 *             if the reader cannot be created
+	 */
+	public XMLStreamReader createReader(int index) throws IOException,
+			XMLStreamException {
+		return STREAM_FACTORY.createXMLStreamReader(new BufferInputStream(
+				getFragment(index)), encoding);
+	}
+
+	/**
+	 * Closes the XML file.
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Splits a path into the UTF-8 names of its steps, with <code>null</code>
+	 * for <code>*</code>.
+	 */
+	private static byte[][] parsePath(String path) {
+		String steps;
+		if (path.startsWith("//")) {
+			steps = path.substring(2);
+		} else if (path.startsWith("/")) {
+			steps = path.substring(1);
+		} else {
+			throw new IllegalArgumentException("path must begin with '/': "
+					+ path);
+		}
+		String[] names = steps.split("/", -1);
+		byte[][] result = new byte[names.length][];
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].isEmpty()) {
+				throw new IllegalArgumentException("empty step in path: "
+						+ path);
+			}
+			result[i] = names[i].equals("*") ? null : names[i]
+					.getBytes(UTF_8);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the encoding declared by the XML declaration at the start of
+	 * <code>channel</code>, or UTF-8.
+	 */
+	private static String detectEncoding(FileChannel channel)
+			throws IOException {
+		ByteBuffer prolog = ByteBuffer.allocate(256);
+		channel.read(prolog, 0);
+		byte[] bytes = Arrays.copyOf(prolog.array(), prolog.position());
+		if (bytes.length >= 2 && bytes[0] == 0x1f && bytes[1] == (byte) 0x8b) {
+			throw new IOException("compressed XML files cannot be indexed");
+		}
+		if (bytes.length >= 2
+				&& ((bytes[0] == (byte) 0xfe && bytes[1] == (byte) 0xff) || (bytes[0] == (byte) 0xff && bytes[1] == (byte) 0xfe))) {
+			throw new IOException("UTF-16 XML files are not supported");
+		}
+		String text = new String(bytes, Charset.forName("ISO-8859-1"));
+		if (text.startsWith("\u00ef\u00bb\u00bf")) {
+			text = text.substring(3);
+		}
+		Matcher matcher = ENCODING.matcher(text);
+		return matcher.find() ? matcher.group(1) : "UTF-8";
+	}
+
+	/**
+	 * The header of a sidecar file.
+	 */
+	private static class Header {
+
+		final long length;
+		final long modified;
+		long count;
+		final String encoding;
+		final String path;
+
+		Header(long length, long modified, long count, String encoding,
+				String path) {
+			this.length = length;
+			this.modified = modified;
+			this.count = count;
+			this.encoding = encoding;
+			this.path = path;
+		}
+
+		/**
+		 * Returns the number of bytes in the header, which is where the
+		 * entries begin.
+		 */
+		int length() {
+			return 36 + 8 + encoding.getBytes(UTF_8).length
+					+ path.getBytes(UTF_8).length;
+		}
+
+		ByteBuffer toBuffer() {
+			byte[] encodingBytes = encoding.getBytes(UTF_8);
+			byte[] pathBytes = path.getBytes(UTF_8);
+			ByteBuffer head = ByteBuffer.allocate(length()).order(
+					ByteOrder.LITTLE_ENDIAN);
+			head.putInt(MAGIC).putInt(VERSION).putInt(length());
+			head.putLong(length).putLong(modified).putLong(count);
+			head.putInt(encodingBytes.length).put(encodingBytes);
+			head.putInt(pathBytes.length).put(pathBytes);
+			head.flip();
+			return head;
+		}
+
+		/**
+		 * Reads the header of a sidecar file, or returns <code>null</code> if
+		 * it is not a sidecar file.
+		 */
+		static Header read(FileChannel channel) throws IOException {
+			ByteBuffer prefix = ByteBuffer.allocate(12).order(
+					ByteOrder.LITTLE_ENDIAN);
+			channel.read(prefix, 0);
+			prefix.flip();
+			if (prefix.remaining() < 12 || prefix.getInt() != MAGIC
+					|| prefix.getInt() != VERSION) {
+				return null;
+			}
+			int headerLength = prefix.getInt();
+			if (headerLength < 44 || headerLength > channel.size()) {
+				return null;
+			}
+			ByteBuffer head = ByteBuffer.allocate(headerLength).order(
+					ByteOrder.LITTLE_ENDIAN);
+			channel.read(head, 0);
+			head.position(12);
+			long length = head.getLong();
+			long modified = head.getLong();
+			long count = head.getLong();
+			byte[] encoding = new byte[head.getInt()];
+			head.get(encoding);
+			byte[] path = new byte[head.getInt()];
+			head.get(path);
+			if (headerLength + count * 16 > channel.size()) {
+				return null;
+			}
+			return new Header(length, modified, count, new String(encoding,
+					UTF_8), new String(path, UTF_8));
+		}
+	}
+
+	/**
+	 * Scans an XML file for the elements matching a path and writes their
+	 * offsets to a sidecar file.
+	 * <p>
+	 * The scanner only recognizes the markup needed to find elements: tags,
+	 * attribute values, comments, CDATA sections, processing instructions and
+	 * the document type declaration. It does not check the file is well
+	 * formed.
+	 */
+	private static class Scanner {
+
+		private final FileChannel in;
+		private final FileChannel out;
+		private final long entriesOffset;
+		private final byte[][] steps;
+		private final boolean absolute;
+
+		/** The bytes read from the XML file. */
+		private final ByteBuffer buffer;
+		/** The offset in the file of the buffer's first byte. */
+		private long bufferOffset;
+		/** The entries not yet written. */
+		private final ByteBuffer batch;
+		/** The index of the first entry in the batch. */
+		private long batchStart;
+		/** The number of entries. */
+		private long count;
+
+		/** The names of the open elements. */
+		private byte[][] names;
+		/** The length of the names of the open elements. */
+		private int[] nameLengths;
+		/** The entry of each open element, or -1 if it does not match. */
+		private long[] open;
+		/** The number of open elements. */
+		private int depth;
+
+		Scanner(FileChannel in, FileChannel out, long entriesOffset,
+				byte[][] steps, boolean absolute) {
+			this.in = in;
+			this.out = out;
+			this.entriesOffset = entriesOffset;
+			this.steps = steps;
+			this.absolute = absolute;
+			this.buffer = ByteBuffer.allocate(READ_SIZE);
+			this.buffer.flip();
+			this.batch = ByteBuffer.allocate(ENTRY_BATCH * 16).order(
+					ByteOrder.LITTLE_ENDIAN);
+			this.names = new byte[16][64];
+			this.nameLengths = new int[16];
+			this.open = new long[16];
+		}
+
+		/**
+		 * Scans the file.
+		 *
+		 * @return the number of entries written
+		 */
+		long scan() throws IOException {
+			int b;
+			while ((b = read()) != -1) {
+				if (b != '<') {
+					continue;
+				}
+				long start = position() - 1;
+				b = read();
+				if (b == '?') {
+					skipUntil('?', '>');
+				} else if (b == '!') {
+					b = read();
+					if (b == '-') {
+						read();
+						skipUntil('-', '-', '>');
+					} else if (b == '[') {
+						skipUntil(']', ']', '>');
+					} else {
+						skipDeclaration();
+					}
+				} else if (b == '/') {
+					endTag();
+				} else if (b != -1) {
+					startTag(b, start);
+				}
+			}
+			if (depth > 0) {
+				throw new IOException("unexpected end of file in element "
+						+ new String(names[depth - 1], 0,
+								nameLengths[depth - 1], UTF_8));
+			}
+			flushBatch();
+			return count;
+		}
+
+		private void startTag(int b, long start) throws IOException {
+			if (depth == names.length) {
+				names = Arrays.copyOf(names, depth * 2);
+				nameLengths = Arrays.copyOf(nameLengths, depth * 2);
+				open = Arrays.copyOf(open, depth * 2);
+			}
+			byte[] name = names[depth];
+			if (name == null) {
+				name = names[depth] = new byte[64];
+			}
+			int n = 0;
+			while (b != -1 && b != '>' && b != '/' && !isSpace(b)) {
+				if (n == name.length) {
+					name = names[depth] = Arrays.copyOf(name, n * 2);
+				}
+				name[n++] = (byte) b;
+				b = read();
+			}
+			nameLengths[depth] = n;
+			// skip the attributes, which may contain '>'
+			int previous = 0;
+			while (b != '>') {
+				if (b == -1) {
+					throw new IOException("unexpected end of file in tag at "
+							+ start);
+				}
+				if (b == '"' || b == '\'') {
+					int quote = b;
+					while ((b = read()) != quote) {
+						if (b == -1) {
+							throw new IOException(
+									"unexpected end of file in attribute at "
+											+ start);
+						}
+					}
+				}
+				previous = b;
+				b = read();
+			}
+			depth++;
+			open[depth - 1] = matches() ? addEntry(start) : -1;
+			if (previous == '/') {
+				endElement();
+			}
+		}
+
+		private void endTag() throws IOException {
+			int b;
+			while ((b = read()) != '>') {
+				if (b == -1) {
+					throw new IOException("unexpected end of file in end tag");
+				}
+			}
+			if (depth == 0) {
+				throw new IOException("unexpected end tag at " + position());
+			}
+			endElement();
+		}
+
+		/**
+		 * Closes the innermost open element, which ended at the current
+		 * position.
+		 */
+		private void endElement() throws IOException {
+			depth--;
+			long entry = open[depth];
+			if (entry >= 0) {
+				setEnd(entry, position());
+			}
+		}
+
+		/**
+		 * Returns whether the open elements match the path.
+		 */
+		private boolean matches() {
+			if (absolute ? depth != steps.length : depth < steps.length) {
+				return false;
+			}
+			for (int i = 0; i < steps.length; i++) {
+				byte[] step = steps[steps.length - 1 - i];
+				int level = depth - 1 - i;
+				if (step != null
+						&& (step.length != nameLengths[level] || !equals(step,
+								names[level]))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static boolean equals(byte[] step, byte[] name) {
+			for (int i = 0; i < step.length; i++) {
+				if (step[i] != name[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private long addEntry(long start) throws IOException {
+			if (!batch.hasRemaining()) {
+				flushBatch();
+			}
+			batch.putLong(start).putLong(-1);
+			return count++;
+		}
+
+		private void setEnd(long entry, long end) throws IOException {
+			if (entry >= batchStart) {
+				batch.putLong((int) (entry - batchStart) * 16 + 8, end);
+			} else {
+				// the entry was written while the element was open
+				ByteBuffer value = ByteBuffer.allocate(8).order(
+						ByteOrder.LITTLE_ENDIAN);
+				value.putLong(end).flip();
+				long position = entriesOffset + entry * 16 + 8;
+				while (value.hasRemaining()) {
+					position += out.write(value, position);
+				}
+			}
+		}
+
+		private void flushBatch() throws IOException {
+			batch.flip();
+			long position = entriesOffset + batchStart * 16;
+			while (batch.hasRemaining()) {
+				position += out.write(batch, position);
+			}
+			batch.clear();
+			batchStart = count;
+		}
+
+		/**
+		 * Skips past the next occurrence of the <code>terminator</code>, whose
+		 * bytes before the last must all be the same (e.g. <code>"--&gt;"</code>).
+		 */
+		private void skipUntil(int... terminator) throws IOException {
+			int matched = 0;
+			while (matched < terminator.length) {
+				int b = read();
+				if (b == -1) {
+					throw new IOException("unexpected end of file");
+				}
+				if (b == terminator[matched]) {
+					matched++;
+				} else if (b != terminator[0]) {
+					matched = 0;
+				}
+				// otherwise a repeated first byte, as in "---&gt;", keeps the match
+			}
+		}
+
+		/**
+		 * Skips a declaration such as <code>&lt;!DOCTYPE ...&gt;</code>,
+		 * including any internal subset.
+		 */
+		private void skipDeclaration() throws IOException {
+			int brackets = 0;
+			int b;
+			while ((b = read()) != '>' || brackets > 0) {
+				if (b == -1) {
+					throw new IOException("unexpected end of file");
+				} else if (b == '[') {
+					brackets++;
+				} else if (b == ']') {
+					brackets--;
+				} else if (b == '"' || b == '\'') {
+					int quote = b;
+					while ((b = read()) != quote && b != -1) {
+					}
+				} else if (b == '<' && brackets > 0) {
+					b = read();
+					if (b == '!') {
+						b = read();
+						if (b == '-') {
+							read();
+							skipUntil('-', '-', '>');
+							continue;
+						}
+					}
+					skipMarkupDeclaration(b);
+				}
+			}
+		}
+
+		/**
+		 * Skips a declaration in an internal subset, which may contain quoted
+		 * <code>'&gt;'</code>.
+		 */
+		private void skipMarkupDeclaration(int b) throws IOException {
+			while (b != '>') {
+				if (b == -1) {
+					throw new IOException("unexpected end of file");
+				}
+				if (b == '"' || b == '\'') {
+					int quote = b;
+					while ((b = read()) != quote && b != -1) {
+					}
+				}
+				b = read();
+			}
+		}
+
+		private static boolean isSpace(int b) {
+			return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+		}
+
+		/**
+		 * Returns the offset of the next byte.
+		 */
+		private long position() {
+			return bufferOffset + buffer.position();
+		}
+
+		/**
+		 * Returns the next byte, or -1 at the end of the file.
+		 */
+		private int read() throws IOException {
+			if (!buffer.hasRemaining()) {
+				bufferOffset += buffer.limit();
+				buffer.clear();
+				int n;
+				do {
+					n = in.read(buffer, bufferOffset);
+				} while (n == 0);
+				buffer.flip();
+				if (n < 0) {
+					return -1;
+				}
+			}
+			return buffer.get() & 0xff;
+		}
+	}
+
+	/**
+	 * An <code>InputStream</code> reading the remaining bytes of a buffer.
+	 */
+	private static class BufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+}
@@ -0,0 +1,31 @@
+package usr.erichschroeter.applib.xml;
+
+import usr.erichschroeter.applib.model.Model;
+
+/**
+ * A <code>XmlModelFactory</code> creates a {@link Model} from each element a
+ * {@link XmlModelLoader} reads at the factory's path.
+ *
+ * @author Erich Schroeter
+ */
+public interface XmlModelFactory {
+
+	/**
+	 * Returns the key the model of <code>element</code> is registered with.
+	 *
+	 * @param element
+	 *            the complete element
+	 * @return the key, or <code>null</code> to skip the element
+	 */
+	String createKey(XmlElement element);
+
+	/**
+	 * Creates the model of <code>element</code>.
+	 *
+	 * @param element
+	 *            the complete element
+	 * @return the model, or <code>null</code> to skip the element
+	 */
+	Model<?> createModel(XmlElement element);
+
+}
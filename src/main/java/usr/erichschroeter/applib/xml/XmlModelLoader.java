@@ -0,0 +1,285 @@
+package usr.erichschroeter.applib.xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import usr.erichschroeter.applib.io.Compression;
+import usr.erichschroeter.applib.model.Model;
+import usr.erichschroeter.applib.model.ModelManager;
+
+/**
+ * A <code>XmlModelLoader</code> reads {@link Model}s from an XML file and
+ * registers them with a {@link ModelManager} without building a DOM.
+ * <p>
+ * Each element path (see {@link XmlIndex} for the syntax) is mapped to a
+ * {@link XmlModelFactory}. As with <code>XmlIndex</code>, names are compared
+ * with the qualified names in the file, including any prefix, e.g.
+ * <code>/ns:state/ns:user</code>, and elements and attributes are copied
+ * under those names. The file, which may be compressed, is read with StAX,
+ * and only the elements matching a path are copied, as {@link XmlElement}s.
+ * As soon as a matching element ends, its factory creates the model and the
+ * model is registered, so memory use depends on the size of one element
+ * rather than the file, and listeners of the manager see the first models
+ * while the rest of the file is loading. Elements within a matching element
+ * belong to it and are not matched themselves.
+ *
+ * <pre>
+ * XmlModelLoader loader = new XmlModelLoader(manager);
+ * loader.addFactory(&quot;/state/users/user&quot;, new XmlModelFactory() {
+ *
+ * 	public String createKey(XmlElement element) {
+ * 		return &quot;user.&quot; + element.getAttribute(&quot;id&quot;);
+ * 	}
+ *
+ * 	public Model&lt;?&gt; createModel(XmlElement element) {
+ * 		return new Model&lt;User&gt;(new User(element.getChildText(&quot;name&quot;)));
+ * 	}
+ * });
+ * loader.load(file);
+ * </pre>
+ * <p>
+ * <code>ModelManager</code> is not thread safe, so when loading on a
+ * background thread, models should be registered on the thread using the
+ * manager, typically the event dispatch thread, with
+ * {@link #setExecutor(Executor)}.
+ *
+ * @author Erich Schroeter
+ */
+public class XmlModelLoader {
+
+	/** Registers models on the calling thread. */
+	private static final Executor DIRECT = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	/** The manager the models are registered with. */
+	private final ModelManager manager;
+	/** The factories keyed by path, in the order added. */
+	private final Map<XmlPath, XmlModelFactory> factories;
+	/** The executor registering models. */
+	private Executor executor;
+	/** The factory creating the XML readers. */
+	private final XMLInputFactory inputFactory;
+
+	/**
+	 * Constructs a <code>XmlModelLoader</code> registering models with
+	 * <code>manager</code>.
+	 *
+	 * @param manager
+	 *            the manager to register models with
+	 */
+	public XmlModelLoader(ModelManager manager) {
+		this.manager = manager;
+		this.factories = new LinkedHashMap<XmlPath, XmlModelFactory>();
+		this.executor = DIRECT;
+		this.inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		inputFactory.setProperty(
+				XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	/**
+	 * Maps the elements at <code>path</code> to the <code>factory</code>. If
+	 * several paths match an element, the first added is used.
+	 *
+	 * @param path
+	 *            the path of the elements
+	 * @param factory
+	 *            the factory creating their models
+	 */
+	public void addFactory(String path, XmlModelFactory factory) {
+		factories.put(new XmlPath(path), factory);
+	}
+
+	/**
+	 * Sets the executor registering the models, such as one calling
+	 * <code>SwingUtilities.invokeLater</code>. By default models are
+	 * registered on the thread loading them.
+	 *
+	 * @param executor
+	 *            the executor registering models
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor == null ? DIRECT : executor;
+	}
+
+	/**
+	 * Loads the models of <code>file</code>.
+	 *
+	 * @param file
+	 *            the XML file
+	 * @return the number of models loaded
+	 * @throws IOException
+	 *             if an I/O error occurs, or the thread is interrupted
+	 * @throws XMLStreamException
+	 *             if the file is malformed
+	 */
+	public int load(File file) throws IOException, XMLStreamException {
+		InputStream in = Compression.open(file);
+		try {
+			return load(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Loads the models of the XML document read from <code>in</code>, which
+	 * is not closed.
+	 *
+	 * @param in
+	 *            the stream to read
+	 * @return the number of models loaded
+	 * @throws IOException
+	 *             if the thread is interrupted
+	 * @throws XMLStreamException
+	 *             if the document is malformed
+	 */
+	public int load(InputStream in) throws IOException, XMLStreamException {
+		XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+		try {
+			return load(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Loads the models of the elements read from <code>reader</code>.
+	 *
+	 * @param reader
+	 *            the reader positioned before the elements to read
+	 * @return the number of models loaded
+	 * @throws IOException
+	 *             if the thread is interrupted
+	 * @throws XMLStreamException
+	 *             if the document is malformed
+	 */
+	public int load(XMLStreamReader reader) throws IOException,
+			XMLStreamException {
+		List<String> names = new ArrayList<String>();
+		// the elements being copied, from the matching element inwards
+		List<XmlElement> copying = new ArrayList<XmlElement>();
+		XmlModelFactory factory = null;
+		int loaded = 0;
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				String name = qualifiedName(reader.getPrefix(),
+						reader.getLocalName());
+				names.add(name);
+				if (copying.isEmpty()) {
+					factory = findFactory(names);
+					if (factory == null) {
+						break;
+					}
+				}
+				XmlElement element = new XmlElement(name);
+				for (int i = 0; i < reader.getAttributeCount(); i++) {
+					element.setAttribute(
+							qualifiedName(reader.getAttributePrefix(i),
+									reader.getAttributeLocalName(i)),
+							reader.getAttributeValue(i));
+				}
+				if (!copying.isEmpty()) {
+					copying.get(copying.size() - 1).addChild(element);
+				}
+				copying.add(element);
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				if (!copying.isEmpty()) {
+					copying.get(copying.size() - 1).appendText(
+							reader.getTextCharacters(), reader.getTextStart(),
+							reader.getTextLength());
+				}
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				names.remove(names.size() - 1);
+				if (!copying.isEmpty()) {
+					XmlElement done = copying.remove(copying.size() - 1);
+					if (copying.isEmpty() && register(factory, done)) {
+						loaded++;
+						if (Thread.interrupted()) {
+							throw new InterruptedIOException(
+									"interrupted after loading " + loaded
+											+ " models");
+						}
+					}
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Returns the name as written in the file, <code>prefix:local</code> if
+	 * the name has a prefix.
+	 */
+	private static String qualifiedName(String prefix, String local) {
+		if (prefix == null || prefix.isEmpty()) {
+			return local;
+		}
+		return prefix + ":" + local;
+	}
+
+	/**
+	 * Returns the factory of the innermost open element, or <code>null</code>
+	 * if no path matches.
+	 */
+	private XmlModelFactory findFactory(List<String> names) {
+		for (Map.Entry<XmlPath, XmlModelFactory> entry : factories.entrySet()) {
+			if (entry.getKey().matches(names)) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates the model of a complete element and registers it with the
+	 * manager on the executor.
+	 *
+	 * @return <code>true</code> if a model was created
+	 */
+	private boolean register(XmlModelFactory factory, XmlElement element) {
+		final String key = factory.createKey(element);
+		if (key == null) {
+			return false;
+		}
+		final Model<?> model = factory.createModel(element);
+		if (model == null) {
+			return false;
+		}
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				manager.registerModel(key, model);
+			}
+		});
+		return true;
+	}
+
+}
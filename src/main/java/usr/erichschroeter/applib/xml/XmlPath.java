@@ -0,0 +1,74 @@
+package usr.erichschroeter.applib.xml;
+
+import java.util.List;
+
+/**
+ * A <code>XmlPath</code> matches the names of the open elements against a
+ * path, using the same syntax as {@link XmlIndex}: a path beginning with
+ * <code>"/"</code> matches from the root element and a path beginning with
+ * <code>"//"</code> matches at any depth, while <code>*</code> matches any
+ * element. Names are compared with the qualified names in the file,
+ * including any prefix.
+ *
+ * @author Erich Schroeter
+ */
+final class XmlPath {
+
+	/** The path this was parsed from. */
+	private final String path;
+	/** The names of the steps, with <code>null</code> for <code>*</code>. */
+	private final String[] steps;
+	/** Whether the path matches from the root element. */
+	private final boolean absolute;
+
+	XmlPath(String path) {
+		String steps;
+		if (path.startsWith("//")) {
+			steps = path.substring(2);
+		} else if (path.startsWith("/")) {
+			steps = path.substring(1);
+		} else {
+			throw new IllegalArgumentException("path must begin with '/': "
+					+ path);
+		}
+		this.path = path;
+		this.absolute = !path.startsWith("//");
+		this.steps = steps.split("/", -1);
+		for (int i = 0; i < this.steps.length; i++) {
+			if (this.steps[i].isEmpty()) {
+				throw new IllegalArgumentException("empty step in path: "
+						+ path);
+			}
+			if (this.steps[i].equals("*")) {
+				this.steps[i] = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the innermost of the open elements matches the path.
+	 *
+	 * @param names
+	 *            the names of the open elements, outermost first
+	 * @return <code>true</code> if the path matches, else <code>false</code>
+	 */
+	boolean matches(List<String> names) {
+		int depth = names.size();
+		if (absolute ? depth != steps.length : depth < steps.length) {
+			return false;
+		}
+		for (int i = 0; i < steps.length; i++) {
+			String step = steps[steps.length - 1 - i];
+			if (step != null && !step.equals(names.get(depth - 1 - i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+
+}
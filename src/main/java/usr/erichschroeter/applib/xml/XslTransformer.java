@@ -0,0 +1,202 @@
+package usr.erichschroeter.applib.xml;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.xml.sax.InputSource;
+
+import usr.erichschroeter.applib.io.Compression;
+import usr.erichschroeter.applib.utils.FileUtils;
+
+/**
+ * A <code>XslTransformer</code> applies XSLT stylesheets compiled by a
+ * {@link TemplatesCache}.
+ * <p>
+ * Files are read as SAX events and the result is written as it is produced,
+ * so a W3C DOM of the input or output is never built. Compressed files are
+ * decompressed as they are read. Note an XSLT processor still keeps its own
+ * compact tree of the input while transforming. Other
+ * inputs, such as a <code>StAXSource</code>, may be transformed with
+ * {@link #transform(File, Source, Result)}.
+ * <p>
+ * Many files may be transformed at once by
+ * {@link #transformAll(File, Collection, File, String)}, which spreads them
+ * across the transformer's worker threads.
+ *
+ * <pre>
+ * XslTransformer transformer = new XslTransformer(new TemplatesCache(), 4);
+ * try {
+ * 	for (Future&lt;File&gt; result : transformer.transformAll(xsl, inputs, dir,
+ * 			&quot;html&quot;)) {
+ * 		result.get();
+ * 	}
+ * } finally {
+ * 	transformer.close();
+ * }
+ * </pre>
+ *
+ * @author Erich Schroeter
+ */
+public class XslTransformer implements Closeable {
+
+	/** The size of the buffers reading and writing files. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The compiled stylesheets. */
+	private final TemplatesCache cache;
+	/** The workers transforming batches. */
+	private final ExecutorService workers;
+
+	/**
+	 * Constructs a <code>XslTransformer</code> with a worker thread for each
+	 * processor.
+	 *
+	 * @param cache
+	 *            the compiled stylesheets
+	 */
+	public XslTransformer(TemplatesCache cache) {
+		this(cache, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs a <code>XslTransformer</code> with <code>threads</code>
+	 * worker threads transforming batches.
+	 *
+	 * @param cache
+	 *            the compiled stylesheets
+	 * @param threads
+	 *            the number of worker threads
+	 */
+	public XslTransformer(TemplatesCache cache, int threads) {
+		this.cache = cache;
+		this.workers = Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Returns the compiled stylesheets.
+	 *
+	 * @return the cache
+	 */
+	public TemplatesCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Transforms <code>input</code> into <code>output</code> with
+	 * <code>stylesheet</code>.
+	 *
+	 * @param stylesheet
+	 *            the stylesheet file
+	 * @param input
+	 *            the source to transform
+	 * @param output
+	 *            the result of the transform
+	 * @throws TransformerException
+	 *             if the stylesheet cannot be compiled or the transform fails
+	 */
+	public void transform(File stylesheet, Source input, Result output)
+			throws TransformerException {
+		cache.getTemplates(stylesheet).newTransformer()
+				.transform(input, output);
+	}
+
+	/**
+	 * Transforms the <code>input</code> file into the <code>output</code>
+	 * file with <code>stylesheet</code>.
+	 *
+	 * @param stylesheet
+	 *            the stylesheet file
+	 * @param input
+	 *            the file to transform
+	 * @param output
+	 *            the file to write
+	 * @throws IOException
+	 *             if an I/O error occurs opening the files
+	 * @throws TransformerException
+	 *             if the stylesheet cannot be compiled or the transform fails
+	 */
+	public void transform(File stylesheet, File input, File output)
+			throws IOException, TransformerException {
+		InputStream in = Compression.open(input);
+		try {
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(
+					output), BUFFER_SIZE);
+			try {
+				InputSource source = new InputSource(in);
+				// resolves relative references in the input
+				source.setSystemId(input.toURI().toString());
+				transform(stylesheet, new SAXSource(source), new StreamResult(
+						out));
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Transforms each of the <code>inputs</code> on the worker threads. The
+	 * result of each input is written to <code>outputDirectory</code> with the
+	 * input's name and the <code>extension</code>.
+	 * <p>
+	 * The returned futures are in the order of <code>inputs</code> and return
+	 * the output file, or throw an <code>ExecutionException</code> wrapping
+	 * the failure of that input. One failure does not affect the others.
+	 *
+	 * @param stylesheet
+	 *            the stylesheet file
+	 * @param inputs
+	 *            the files to transform
+	 * @param outputDirectory
+	 *            the directory to write the results to
+	 * @param extension
+	 *            the extension of the results (excluding the <code>'.'</code>)
+	 * @return the pending results
+	 */
+	public List<Future<File>> transformAll(final File stylesheet,
+			Collection<File> inputs, File outputDirectory, String extension) {
+		List<Future<File>> results = new ArrayList<Future<File>>(inputs.size());
+		for (final File input : inputs) {
+			final File output = new File(outputDirectory, FileUtils
+					.changeExtension(FileUtils.removeCompressionExtension(input),
+							extension).getName());
+			results.add(workers.submit(new Callable<File>() {
+
+				@Override
+				public File call() throws Exception {
+					transform(stylesheet, input, output);
+					return output;
+				}
+			}));
+		}
+		return results;
+	}
+
+	/**
+	 * Stops the worker threads after the pending transforms finish.
+	 */
+	@Override
+	public void close() {
+		workers.shutdown();
+	}
+
+}
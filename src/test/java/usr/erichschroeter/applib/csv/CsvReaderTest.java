@@ -0,0 +1,122 @@
+package usr.erichschroeter.applib.csv;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CsvReaderTest {
+
+	private static final String DATA = "id,name,price\r\n"
+			+ "1,\"Smith, \"\"J\"\"\",2.5\n" + "2,Zo\u00eb,-1e3\n"
+			+ "3,\"multi\nline\",0.1\n" + "4,,\n" + "5,last,7";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static CsvReader reader(String data) throws Exception {
+		return new CsvReader(ByteBuffer.wrap(data.getBytes("UTF-8")));
+	}
+
+	@Test
+	public void testRecords() throws Exception {
+		CsvReader reader = reader(DATA);
+		assertTrue(reader.next());
+		assertEquals(3, reader.getFieldCount());
+		assertTrue(reader.getField(0).contentEquals("id"));
+
+		assertTrue(reader.next());
+		assertEquals(1, reader.getField(0).getInt());
+		assertEquals("Smith, \"J\"", reader.getField(1).toString());
+		assertTrue(reader.getField(1).isQuoted());
+		assertEquals(2.5, reader.getField(2).getDouble(), 0.0);
+
+		assertTrue(reader.next());
+		assertEquals("Zo\u00eb", reader.getField(1).toString());
+		assertEquals(-1000.0, reader.getField(2).getDouble(), 0.0);
+
+		assertTrue(reader.next());
+		assertEquals("multi\nline", reader.getField(1).toString());
+
+		assertTrue(reader.next());
+		assertEquals(3, reader.getFieldCount());
+		assertTrue(reader.getField(1).isEmpty());
+		assertTrue(reader.getField(2).isEmpty());
+
+		assertTrue(reader.next());
+		assertEquals(7L, reader.getField(2).getLong());
+		assertEquals(6, reader.getRecordNumber());
+		assertFalse(reader.next());
+	}
+
+	@Test
+	public void testFieldReused() throws Exception {
+		CsvReader reader = reader("a,b\nc,d\n");
+		assertTrue(reader.next());
+		CsvField field = reader.getField(1);
+		assertTrue(reader.next());
+		assertSame(field, reader.getField(1));
+		assertEquals("d", field.toString());
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		CsvReader reader = reader("-9223372036854775808,0.000123,1.5E-3,.5,NaN");
+		assertTrue(reader.next());
+		assertEquals(Long.MIN_VALUE, reader.getField(0).getLong());
+		assertEquals(0.000123, reader.getField(1).getDouble(), 0.0);
+		assertEquals(1.5e-3, reader.getField(2).getDouble(), 0.0);
+		assertEquals(0.5, reader.getField(3).getDouble(), 0.0);
+		assertTrue(Double.isNaN(reader.getField(4).getDouble()));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testInvalidLong() throws Exception {
+		CsvReader reader = reader("12a");
+		assertTrue(reader.next());
+		reader.getField(0).getLong();
+	}
+
+	@Test(expected = CsvFormatException.class)
+	public void testUnterminatedQuote() throws Exception {
+		reader("a,\"b").next();
+	}
+
+	@Test(expected = CsvFormatException.class)
+	public void testCharacterAfterQuote() throws Exception {
+		reader("a,\"b\"c").next();
+	}
+
+	@Test
+	public void testWindows() throws Exception {
+		File file = folder.newFile("data.csv");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(DATA.getBytes("UTF-8"));
+		out.close();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			// small enough that records cross windows
+			CsvReader reader = new CsvReader(channel, 0, channel.size(), 24);
+			int records = 0;
+			String last = null;
+			while (reader.next()) {
+				records++;
+				last = reader.getField(reader.getFieldCount() - 1).toString();
+			}
+			assertEquals(6, records);
+			assertEquals("7", last);
+		} finally {
+			raf.close();
+		}
+	}
+
+}
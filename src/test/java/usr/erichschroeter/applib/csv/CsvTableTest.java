@@ -0,0 +1,75 @@
+package usr.erichschroeter.applib.csv;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import usr.erichschroeter.applib.csv.CsvTable.ColumnType;
+
+public class CsvTableTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File write(String name, String data) throws Exception {
+		File file = new File(folder.getRoot(), name);
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(data.getBytes("UTF-8"));
+		out.close();
+		return file;
+	}
+
+	@Test
+	public void testTypes() throws Exception {
+		File csv = write("data.csv", "id,price,name\n1,2.5,apple\n"
+				+ "2,,pear\n3,4,apple\n");
+		CsvTable table = CsvTable.open(csv, true);
+		assertEquals(3, table.getRowCount());
+		assertEquals(3, table.getColumnCount());
+		assertEquals("price", table.getColumnName(1));
+		assertEquals(2, table.getColumnIndex("name"));
+
+		assertEquals(ColumnType.LONG, table.getColumnType(0));
+		assertEquals(3L, table.getLong(0, 2));
+
+		assertEquals(ColumnType.DOUBLE, table.getColumnType(1));
+		assertEquals(2.5, table.getDouble(1, 0), 0.0);
+		assertTrue(Double.isNaN(table.getDouble(1, 1)));
+
+		assertEquals(ColumnType.STRING, table.getColumnType(2));
+		assertEquals(2, table.getDictionarySize(2));
+		assertEquals(table.getCode(2, 0), table.getCode(2, 2));
+		assertEquals("pear", table.getString(2, 1));
+		table.close();
+	}
+
+	@Test
+	public void testSidecarReused() throws Exception {
+		File csv = write("data.csv", "a,b\n1,x\n");
+		CsvTable.open(csv, true).close();
+		File sidecar = CsvTable.getSidecarFile(csv);
+		assertTrue(sidecar.isFile());
+		assertTrue(CsvTable.isCurrent(csv, sidecar));
+		long built = sidecar.lastModified();
+		CsvTable.open(csv, true).close();
+		assertEquals(built, sidecar.lastModified());
+	}
+
+	@Test
+	public void testSidecarRebuilt() throws Exception {
+		File csv = write("data.csv", "a,b\n1,x\n");
+		CsvTable.open(csv, true).close();
+		write("data.csv", "a,b\n1,x\n2,y\n");
+		assertFalse(CsvTable.isCurrent(csv, CsvTable.getSidecarFile(csv)));
+		CsvTable table = CsvTable.open(csv, true);
+		assertEquals(2, table.getRowCount());
+		assertEquals("y", table.getString(1, 1));
+		table.close();
+	}
+
+}
@@ -0,0 +1,123 @@
+package usr.erichschroeter.applib.csv;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CsvWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] readFully(InputStream in) throws Exception {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void testQuoting() throws Exception {
+		File file = folder.newFile("quoting.csv");
+		CsvWriter writer = CsvWriter.open(file);
+		writer.writeRecord("plain", "a,b", "say \"hi\"", "multi\nline", "",
+				null);
+		writer.close();
+
+		String content = new String(readFully(new FileInputStream(file)),
+				"UTF-8");
+		assertEquals("plain,\"a,b\",\"say \"\"hi\"\"\",\"multi\nline\",,\r\n",
+				content);
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		File file = folder.newFile("numbers.csv");
+		CsvWriter writer = CsvWriter.open(file);
+		writer.setLineSeparator("\n");
+		writer.writeField(0L).writeField(-42).writeField(Long.MIN_VALUE)
+				.endRecord();
+		writer.writeField(12.5).writeField(-0.05).writeField(3.0)
+				.writeField(1e300).endRecord();
+		writer.close();
+
+		String content = new String(readFully(new FileInputStream(file)),
+				"UTF-8");
+		assertEquals("0,-42,-9223372036854775808\n12.5,-0.05,3,1.0E300\n",
+				content);
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Random random = new Random(7);
+		int rows = 20000;
+		long[] longs = new long[rows];
+		double[] doubles = new double[rows];
+		String[] strings = new String[rows];
+		for (int i = 0; i < rows; i++) {
+			longs[i] = random.nextLong();
+			doubles[i] = i % 2 == 0 ? random.nextDouble() * 1e6 : Math
+					.round(random.nextGaussian() * 1e4) / 100.0;
+			strings[i] = "Zo\u00eb \"" + i + "\",\n\ud83d\ude00";
+		}
+
+		File file = folder.newFile("roundtrip.csv");
+		CsvWriter writer = CsvWriter.open(file);
+		for (int i = 0; i < rows; i++) {
+			writer.writeField(longs[i]).writeField(doubles[i])
+					.writeField(strings[i]).endRecord();
+		}
+		writer.close();
+
+		CsvReader reader = CsvReader.open(file);
+		try {
+			for (int i = 0; i < rows; i++) {
+				assertTrue(reader.next());
+				assertEquals(longs[i], reader.getField(0).getLong());
+				assertEquals(Double.doubleToLongBits(doubles[i]),
+						Double.doubleToLongBits(reader.getField(1).getDouble()));
+				assertEquals(strings[i], reader.getField(2).toString());
+			}
+			assertFalse(reader.next());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testCompressed() throws Exception {
+		File plain = folder.newFile("plain.csv");
+		File compressed = folder.newFile("compressed.csv.gz");
+		CsvWriter a = CsvWriter.open(plain);
+		CsvWriter b = CsvWriter.openCompressed(compressed, 3);
+		for (int i = 0; i < 200000; i++) {
+			a.writeField(i).writeField("row " + i).endRecord();
+			b.writeField(i).writeField("row " + i).endRecord();
+		}
+		a.close();
+		b.close();
+
+		byte[] expected = readFully(new FileInputStream(plain));
+		byte[] actual = readFully(new GZIPInputStream(new FileInputStream(
+				compressed)));
+		assertTrue(compressed.length() < plain.length());
+		assertArrayEquals(expected, actual);
+	}
+
+}
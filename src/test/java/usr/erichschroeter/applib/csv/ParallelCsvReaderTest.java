@@ -0,0 +1,109 @@
+package usr.erichschroeter.applib.csv;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelCsvReaderTest {
+
+	private static final int ROWS = 5000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		StringBuilder data = new StringBuilder("id,text,value\r\n");
+		for (int i = 0; i < ROWS; i++) {
+			data.append(i);
+			// quoted line breaks must not be mistaken for record boundaries
+			data.append(i % 7 == 0 ? ",\"a\nb, \"\"c\"\"\n\"," : ",plain,");
+			data.append(i * 0.5).append("\r\n");
+		}
+		file = folder.newFile("data.csv");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(data.toString().getBytes("UTF-8"));
+		out.close();
+	}
+
+	private ParallelCsvReader reader() throws Exception {
+		ParallelCsvReader reader = new ParallelCsvReader(file);
+		reader.setChunkSize(1000);
+		reader.setSkipHeader(true);
+		return reader;
+	}
+
+	@Test
+	public void testBoundaries() throws Exception {
+		ParallelCsvReader reader = reader();
+		try {
+			long[] bounds = reader.getBoundaries();
+			assertTrue(bounds.length > 2);
+			assertEquals(0, bounds[0]);
+			assertEquals(file.length(), bounds[bounds.length - 1]);
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testReadColumns() throws Exception {
+		ParallelCsvReader reader = reader();
+		try {
+			long[][] ids = reader.readLongs(0);
+			double[][] values = reader.readDoubles(2);
+			assertEquals(ROWS, ids[0].length);
+			assertEquals(ROWS, values[0].length);
+			for (int i = 0; i < ROWS; i++) {
+				assertEquals(i, ids[0][i]);
+				assertEquals(i * 0.5, values[0][i], 0.0);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testOrderedRows() throws Exception {
+		ParallelCsvReader reader = reader();
+		try {
+			List<String[]> rows = reader.rows(true).collect(
+					Collectors.<String[]> toList());
+			assertEquals(ROWS, rows.size());
+			for (int i = 0; i < ROWS; i++) {
+				assertEquals(String.valueOf(i), rows.get(i)[0]);
+			}
+			assertEquals("a\nb, \"c\"\n", rows.get(7)[1]);
+			assertEquals(ROWS, reader.rows(false).count());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testMissingField() throws Exception {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write("1,2\n3\n".getBytes("UTF-8"));
+		out.close();
+		ParallelCsvReader reader = new ParallelCsvReader(file);
+		try {
+			reader.readLongs(1);
+			fail("expected CsvFormatException");
+		} catch (CsvFormatException e) {
+			assertEquals(4, e.getOffset());
+		} finally {
+			reader.close();
+		}
+	}
+
+}
@@ -0,0 +1,260 @@
+package usr.erichschroeter.applib.filechooser;
+
+import static org.junit.Assert.*;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DirectoryListModelTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Records the intervals added to a model and the values of its
+	 * <code>"loading"</code> property. Both are fired on the EDT.
+	 */
+	private static class Recorder implements ListDataListener,
+			PropertyChangeListener {
+
+		final List<int[]> added = Collections
+				.synchronizedList(new ArrayList<int[]>());
+		final List<Boolean> loading = Collections
+				.synchronizedList(new ArrayList<Boolean>());
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(1);
+
+		@Override
+		public void intervalAdded(ListDataEvent e) {
+			added.add(new int[] { e.getIndex0(), e.getIndex1() });
+		}
+
+		@Override
+		public void intervalRemoved(ListDataEvent e) {
+		}
+
+		@Override
+		public void contentsChanged(ListDataEvent e) {
+		}
+
+		@Override
+		public void propertyChange(PropertyChangeEvent evt) {
+			boolean value = (Boolean) evt.getNewValue();
+			loading.add(value);
+			(value ? started : finished).countDown();
+		}
+	}
+
+	private File directory(String... names) throws Exception {
+		File dir = folder.newFolder("dir");
+		for (String name : names) {
+			assertTrue(new File(dir, name).createNewFile());
+		}
+		return dir;
+	}
+
+	private Recorder load(final DirectoryListModel model, final File dir,
+			final FileFilter filter) throws Exception {
+		final Recorder recorder = new Recorder();
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				model.addListDataListener(recorder);
+				model.addPropertyChangeListener(recorder);
+				model.load(dir, filter);
+			}
+		});
+		return recorder;
+	}
+
+	/**
+	 * Waits for the model to finish loading and for its last batch, which
+	 * may be delivered after loading finishes.
+	 */
+	private static void await(final DirectoryListModel model,
+			Recorder recorder, int size) throws Exception {
+		assertTrue(recorder.finished.await(5, TimeUnit.SECONDS));
+		long end = System.currentTimeMillis() + 5000;
+		while (size(model) < size && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		// let any stray batches arrive before checking
+		Thread.sleep(100);
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+			}
+		});
+	}
+
+	private static int size(final DirectoryListModel model) throws Exception {
+		final int[] size = new int[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				size[0] = model.getSize();
+			}
+		});
+		return size[0];
+	}
+
+	@Test
+	public void testBatches() throws Exception {
+		String[] names = new String[25];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = String.format("file%02d.xml", i);
+		}
+		File dir = directory(names);
+		// a file the filter rejects
+		new File(dir, "readme.txt").createNewFile();
+		DirectoryListModel model = new DirectoryListModel();
+		model.setBatchSize(4);
+		Recorder recorder = load(model, dir, new FileFilter() {
+
+			@Override
+			public boolean accept(File file) {
+				return file.getName().endsWith(".xml");
+			}
+		});
+		await(model, recorder, names.length);
+
+		assertEquals(names.length, model.getSize());
+		assertEquals(dir, model.getDirectory());
+		assertFalse(model.isLoading());
+		for (int i = 0; i < names.length; i++) {
+			assertEquals(names[i], model.getElementAt(i).getName());
+		}
+		// batches may be coalesced, but are appended in order without gaps
+		assertTrue(recorder.added.size() > 0);
+		int next = 0;
+		for (int[] interval : recorder.added) {
+			assertEquals(next, interval[0]);
+			assertTrue(interval[1] >= interval[0]);
+			int length = interval[1] - interval[0] + 1;
+			if (interval[1] != names.length - 1) {
+				assertEquals(0, length % 4);
+			}
+			next = interval[1] + 1;
+		}
+		assertEquals(names.length, next);
+		assertEquals(Arrays.asList(true, false), recorder.loading);
+	}
+
+	@Test
+	public void testBatchLargerThanDirectory() throws Exception {
+		File dir = directory("b.xml", "a.xml", "c.xml");
+		DirectoryListModel model = new DirectoryListModel();
+		Recorder recorder = load(model, dir, null);
+		await(model, recorder, 3);
+
+		assertEquals(1, recorder.added.size());
+		assertArrayEquals(new int[] { 0, 2 }, recorder.added.get(0));
+		assertEquals("a.xml", model.getElementAt(0).getName());
+		assertEquals("c.xml", model.getElementAt(2).getName());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		String[] names = new String[10];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = "file" + i;
+		}
+		File dir = directory(names);
+		final CountDownLatch reached = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final DirectoryListModel model = new DirectoryListModel();
+		model.setBatchSize(2);
+		Recorder recorder = load(model, dir, new FileFilter() {
+
+			@Override
+			public boolean accept(File file) {
+				if (file.getName().equals("file5")) {
+					reached.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return true;
+			}
+		});
+		assertTrue(reached.await(5, TimeUnit.SECONDS));
+		assertTrue(recorder.started.await(5, TimeUnit.SECONDS));
+
+		final int[] size = new int[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				model.cancel();
+				size[0] = model.getSize();
+				assertFalse(model.isLoading());
+			}
+		});
+		release.countDown();
+		await(model, recorder, 0);
+
+		// batches published before cancelling are not appended afterwards
+		assertEquals(size[0], model.getSize());
+		assertTrue(model.getSize() < names.length);
+		assertEquals(Arrays.asList(true, false), recorder.loading);
+	}
+
+	@Test
+	public void testIndexOfPrefix() throws Exception {
+		DirectoryListModel model = new DirectoryListModel();
+		assertEquals(-1, model.indexOfPrefix(""));
+		assertEquals(-1, model.indexOfPrefix(null));
+		assertEquals(-1, model.indexOfPrefix("a"));
+
+		File dir = directory("gamma.txt", "Beta2.xml", "Alpha.xml", "beta.xml");
+		Recorder recorder = load(model, dir, null);
+		await(model, recorder, 4);
+
+		assertEquals(0, model.indexOfPrefix(""));
+		assertEquals(0, model.indexOfPrefix(null));
+		assertEquals(0, model.indexOfPrefix("ALPHA"));
+		assertEquals(1, model.indexOfPrefix("b"));
+		assertEquals(1, model.indexOfPrefix("BETA"));
+		assertEquals(2, model.indexOfPrefix("beta2"));
+		assertEquals(3, model.indexOfPrefix("Gam"));
+		assertEquals(-1, model.indexOfPrefix("zeta"));
+		assertEquals(-1, model.indexOfPrefix("alphabet"));
+	}
+
+	@Test
+	public void testUnreadableDirectory() throws Exception {
+		// list() returns null for a file which is not a directory
+		File file = folder.newFile("not-a-directory");
+		assertNull(file.list());
+		DirectoryListModel model = new DirectoryListModel();
+		Recorder recorder = load(model, file, null);
+		await(model, recorder, 0);
+
+		assertEquals(0, model.getSize());
+		assertTrue(recorder.added.isEmpty());
+		assertFalse(model.isLoading());
+		assertEquals(Arrays.asList(true, false), recorder.loading);
+	}
+
+}
@@ -0,0 +1,103 @@
+package usr.erichschroeter.applib.filters;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FileFiltersTest {
+
+	@Test
+	public void testGlob() {
+		AbstractFileFilter filter = FileFilters.glob("report-??.{csv,txt}");
+		assertTrue(filter.accept(new File("report-01.csv")));
+		assertTrue(filter.accept(new File("REPORT-01.TXT")));
+		assertFalse(filter.accept(new File("report-1.csv")));
+		assertFalse(filter.accept(new File("report-01.xml")));
+		assertFalse(filter.accept(new File("report-01csv")));
+
+		filter = FileFilters.glob("[!a-c]*");
+		assertTrue(filter.accept(new File("data.csv")));
+		assertFalse(filter.accept(new File("b.csv")));
+	}
+
+	@Test
+	public void testRegex() {
+		AbstractFileFilter filter = FileFilters.regex("\\d+\\.xml");
+		assertTrue(filter.accept(new File("42.xml")));
+		assertFalse(filter.accept(new File("a42.xml")));
+	}
+
+	@Test
+	public void testExtension() {
+		AbstractFileFilter filter = FileFilters.extension(".csv", ".xml");
+		assertTrue(filter.accept(new File("a.CSV")));
+		assertTrue(filter.accept(new File("b.xml")));
+		assertFalse(filter.accept(new File(".csv")));
+		assertFalse(filter.accept(new File("c.xsd")));
+		assertEquals("*.csv, *.xml", filter.getDescription());
+	}
+
+	@Test
+	public void testAndOrNot() {
+		AbstractFileFilter csv = FileFilters.extension(".csv");
+		AbstractFileFilter xml = FileFilters.extension(".xml");
+		AbstractFileFilter data = FileFilters.glob("data*");
+
+		assertTrue(FileFilters.and(csv, data).accept(new File("data.csv")));
+		assertFalse(FileFilters.and(csv, data).accept(new File("info.csv")));
+		assertTrue(FileFilters.or(csv, xml).accept(new File("a.xml")));
+		assertFalse(FileFilters.or(csv, xml).accept(new File("a.xsd")));
+		assertTrue(FileFilters.not(csv).accept(new File("a.xml")));
+		assertFalse(FileFilters.not(csv).accept(new File("a.csv")));
+	}
+
+	@Test
+	public void testCostOrder() {
+		final List<String> order = new ArrayList<String>();
+		java.io.FileFilter expensive = new java.io.FileFilter() {
+
+			@Override
+			public boolean accept(File pathname) {
+				order.add("content");
+				return true;
+			}
+		};
+		AbstractFileFilter cheap = new AbstractFileFilter() {
+
+			@Override
+			public boolean accept(File f) {
+				order.add("name");
+				return false;
+			}
+
+			@Override
+			public int getCost() {
+				return NAME_COST;
+			}
+
+			@Override
+			protected String createDescription() {
+				return "cheap";
+			}
+		};
+		AbstractFileFilter filter = FileFilters.and(expensive, cheap);
+		assertFalse(filter.accept(new File("a.csv")));
+		assertEquals(1, order.size());
+		assertEquals("name", order.get(0));
+		assertEquals(AbstractFileFilter.CONTENT_COST, filter.getCost());
+	}
+
+	@Test
+	public void testDescriptionCached() {
+		AbstractFileFilter filter = FileFilters.and(new CsvFileFilter(),
+				FileFilters.glob("*.csv"));
+		assertSame(filter.getDescription(), filter.getDescription());
+		assertEquals("(*.csv and Comma Separated Values (*.csv, *.txt))",
+				filter.getDescription());
+	}
+
+}
@@ -0,0 +1,136 @@
+package usr.erichschroeter.applib.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import usr.erichschroeter.applib.csv.CsvReader;
+import usr.erichschroeter.applib.csv.CsvWriter;
+import usr.erichschroeter.applib.filters.CsvFileFilter;
+import usr.erichschroeter.applib.utils.FileUtils;
+
+public class CompressionTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] readFully(InputStream in) throws Exception {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] content(int rows) throws Exception {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < rows; i++) {
+			builder.append(i).append(",row ").append(i).append("\r\n");
+		}
+		return builder.toString().getBytes("UTF-8");
+	}
+
+	@Test
+	public void testExtensions() throws Exception {
+		File file = new File("data.csv.gz");
+		assertTrue(FileUtils.isCompressed(file));
+		assertEquals(".csv.gz", FileUtils.getCompoundExtension(file));
+		assertEquals(".csv", FileUtils.getUncompressedExtension(file));
+		assertEquals("data.csv", FileUtils.removeCompressionExtension(file)
+				.getName());
+		assertFalse(FileUtils.isCompressed(new File("data.csv")));
+
+		CsvFileFilter filter = new CsvFileFilter();
+		assertTrue(filter.accept(file));
+		filter.setIncludeCompressed(false);
+		assertFalse(filter.accept(file));
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		File file = folder.newFile("parallel.csv.gz");
+		CsvWriter writer = CsvWriter.openCompressed(file, 3);
+		for (int i = 0; i < 200000; i++) {
+			writer.writeField(i).writeField("row " + i).endRecord();
+		}
+		writer.close();
+
+		assertTrue(Compression.isGzip(file));
+		byte[] actual = readFully(new ParallelGzipInputStream(file, 4));
+		assertArrayEquals(content(200000), actual);
+
+		CsvReader reader = CsvReader.open(file);
+		try {
+			for (int i = 0; i < 200000; i++) {
+				assertTrue(reader.next());
+				assertEquals(i, reader.getField(0).getLong());
+				assertEquals("row " + i, reader.getField(1).toString());
+			}
+			assertFalse(reader.next());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testSequentialFallback() throws Exception {
+		// members without their length cannot be split across threads
+		File file = folder.newFile("sequential.gz");
+		byte[] expected = content(50000);
+		OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+		out.write(expected);
+		out.close();
+
+		assertArrayEquals(expected, readFully(new ParallelGzipInputStream(file,
+				4)));
+		assertArrayEquals(expected, readFully(Compression.open(file, 4)));
+		assertArrayEquals(expected, readFully(Compression.open(file)));
+	}
+
+	@Test
+	public void testTrailingPadding() throws Exception {
+		File file = folder.newFile("padded.csv.gz");
+		CsvWriter writer = CsvWriter.openCompressed(file, 2);
+		for (int i = 0; i < 50000; i++) {
+			writer.writeField(i).writeField("row " + i).endRecord();
+		}
+		writer.close();
+		OutputStream out = new FileOutputStream(file, true);
+		out.write(new byte[512]);
+		out.close();
+
+		byte[] expected = content(50000);
+		assertArrayEquals(expected, readFully(Compression.open(file)));
+		assertArrayEquals(expected, readFully(Compression.open(file, 4)));
+	}
+
+	@Test
+	public void testUncompressed() throws Exception {
+		File file = folder.newFile("plain.csv");
+		byte[] expected = content(100);
+		OutputStream out = new FileOutputStream(file);
+		out.write(expected);
+		out.close();
+
+		assertFalse(Compression.isCompressed(file));
+		assertArrayEquals(expected, readFully(Compression.open(file)));
+		assertArrayEquals(expected, readFully(new FileInputStream(file)));
+	}
+
+}
@@ -0,0 +1,108 @@
+package usr.erichschroeter.applib.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import usr.erichschroeter.applib.filters.CsvFileFilter;
+
+public class FileIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testBuild() throws Exception {
+		File csv = folder.newFile("a.csv");
+		folder.newFile("b.xml");
+		File sub = folder.newFolder("sub");
+		File txt = new File(sub, "c.TXT");
+		assertTrue(txt.createNewFile());
+
+		FileIndex index = new FileIndex(folder.getRoot(), new CsvFileFilter());
+		index.build();
+		try {
+			assertEquals(2, index.size());
+			assertTrue(index.contains(csv));
+			assertTrue(index.contains(txt));
+			assertFalse(index.contains(sub));
+			assertEquals(1, index.getFiles(".csv").size());
+			assertEquals(1, index.getFiles(".txt").size());
+			assertTrue(index.getFiles(".xml").isEmpty());
+		} finally {
+			index.close();
+		}
+	}
+
+	@Test
+	public void testCompressedExtension() throws Exception {
+		File gz = folder.newFile("data.csv.gz");
+		folder.newFile("data.csv");
+
+		FileIndex index = new FileIndex(folder.getRoot(), new CsvFileFilter());
+		index.build();
+		try {
+			assertEquals(2, index.getFiles(".csv").size());
+			assertTrue(index.getFiles(".csv").contains(gz));
+			assertTrue(index.getFiles(".gz").isEmpty());
+		} finally {
+			index.close();
+		}
+	}
+
+	@Test
+	public void testFailureReportedAndRecovered() throws Exception {
+		final IOException failure = new IOException("cannot read");
+		final AtomicBoolean failed = new AtomicBoolean();
+		FileIndex index = new FileIndex(folder.getRoot(), new FileFilter() {
+
+			@Override
+			public boolean accept(File file) {
+				// fails reading the first file only
+				if (failed.compareAndSet(false, true)) {
+					throw new UncheckedIOException(failure);
+				}
+				return true;
+			}
+		});
+		final AtomicReference<FileIndexEvent> failedEvent = new AtomicReference<FileIndexEvent>();
+		final CountDownLatch reported = new CountDownLatch(1);
+		final CountDownLatch indexed = new CountDownLatch(1);
+		index.addFileIndexListener(new FileIndexListener() {
+
+			@Override
+			public void indexChanged(FileIndexEvent e) {
+				if (e.getAction() == FileIndexEvent.FAILED) {
+					failedEvent.set(e);
+					reported.countDown();
+				} else if (e.getAction() == FileIndexEvent.CREATED) {
+					indexed.countDown();
+				}
+			}
+		});
+		index.start();
+		try {
+			File file = folder.newFile("a.csv");
+			assertTrue(reported.await(10, TimeUnit.SECONDS));
+			assertEquals(folder.getRoot(), failedEvent.get().getFile());
+			assertSame(failure, failedEvent.get().getCause());
+			// the rescan after the failure indexes the file
+			assertTrue(indexed.await(10, TimeUnit.SECONDS));
+			assertTrue(index.contains(file));
+		} finally {
+			index.close();
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package usr.erichschroeter.applib.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+
+public class BrowserLauncherTest {
+
+	/**
+	 * A browser recording the links it opens, each waiting for a latch.
+	 */
+	private static class StubBrowser implements Browser {
+
+		final List<URI> opened = new ArrayList<URI>();
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		@Override
+		public void browse(URI uri) throws IOException {
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			synchronized (opened) {
+				opened.add(uri);
+			}
+		}
+	}
+
+	@Test
+	public void testRepeatedRequests() throws Exception {
+		StubBrowser browser = new StubBrowser();
+		BrowserLauncher launcher = new BrowserLauncher(browser, 60000);
+		URI uri = new URI("http://example.com/");
+		Future<Void> first = launcher.browse(uri);
+		assertFalse(first.isDone());
+		assertSame(first, launcher.browse(uri));
+		Future<Void> other = launcher.browse(new URI("http://example.org/"));
+		assertNotSame(first, other);
+
+		browser.latch.countDown();
+		first.get(5, TimeUnit.SECONDS);
+		other.get(5, TimeUnit.SECONDS);
+		// still within the repeat interval
+		assertSame(first, launcher.browse(uri));
+		assertEquals(2, browser.opened.size());
+	}
+
+	@Test
+	public void testRepeatInterval() throws Exception {
+		StubBrowser browser = new StubBrowser();
+		browser.latch.countDown();
+		BrowserLauncher launcher = new BrowserLauncher(browser, 0);
+		URI uri = new URI("http://example.com/");
+		Future<Void> first = launcher.browse(uri);
+		first.get(5, TimeUnit.SECONDS);
+		Future<Void> second = launcher.browse(uri);
+		assertNotSame(first, second);
+		second.get(5, TimeUnit.SECONDS);
+		assertEquals(2, browser.opened.size());
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		final IOException failure = new IOException("no browser");
+		BrowserLauncher launcher = new BrowserLauncher(new Browser() {
+
+			@Override
+			public void browse(URI uri) throws IOException {
+				throw failure;
+			}
+		});
+		final CountDownLatch notified = new CountDownLatch(1);
+		final LaunchEvent[] event = new LaunchEvent[1];
+		final boolean[] onEventDispatchThread = new boolean[1];
+		URI uri = new URI("http://example.com/");
+		Future<Void> launch = launcher.browse(uri, new LaunchListener() {
+
+			@Override
+			public void launchFailed(LaunchEvent e) {
+				event[0] = e;
+				onEventDispatchThread[0] = SwingUtilities
+						.isEventDispatchThread();
+				notified.countDown();
+			}
+		});
+		try {
+			launch.get(5, TimeUnit.SECONDS);
+			fail("expected ExecutionException");
+		} catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		}
+		assertTrue(notified.await(5, TimeUnit.SECONDS));
+		assertTrue(onEventDispatchThread[0]);
+		assertSame(launcher, event[0].getSource());
+		assertEquals(uri, event[0].getURI());
+		assertSame(failure, event[0].getCause());
+	}
+
+	@Test
+	public void testOpenInWebBrowser() throws Exception {
+		BrowserLauncher launcher = BrowserLauncher.getDefault();
+		Browser original = launcher.getBrowser();
+		StubBrowser browser = new StubBrowser();
+		browser.latch.countDown();
+		launcher.setBrowser(browser);
+		try {
+			assertFalse(Utils.openInWebBrowser(null));
+			assertFalse(Utils.openInWebBrowser("not a url"));
+			assertTrue(Utils.openInWebBrowser("http://example.net/"));
+			launcher.browse(new URI("http://example.net/")).get(5,
+					TimeUnit.SECONDS);
+			assertEquals(1, browser.opened.size());
+		} finally {
+			launcher.setBrowser(original);
+		}
+	}
+
+}
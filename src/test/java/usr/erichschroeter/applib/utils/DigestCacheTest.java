@@ -0,0 +1,79 @@
+package usr.erichschroeter.applib.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DigestCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static void write(File file, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	@Test
+	public void testHasChanged() throws Exception {
+		File file = folder.newFile("input.txt");
+		write(file, "first");
+		DigestCache cache = new DigestCache(2);
+		assertTrue(cache.hasChanged(file));
+		assertFalse(cache.hasChanged(file));
+
+		// rewritten with the same contents
+		write(file, "first");
+		assertTrue(file.setLastModified(file.lastModified() + 5000));
+		assertFalse(cache.hasChanged(file));
+
+		write(file, "second");
+		assertTrue(file.setLastModified(file.lastModified() + 10000));
+		assertTrue(cache.hasChanged(file));
+		assertFalse(cache.hasChanged(file));
+		assertArrayEquals(FileUtils.treeDigest(file, 1), cache.getDigest(file));
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		File a = folder.newFile("a.txt");
+		File b = folder.newFile("b.txt");
+		write(a, "alpha");
+		write(b, "beta");
+		DigestCache cache = new DigestCache();
+		cache.hasChanged(a);
+		cache.hasChanged(b);
+		File state = new File(folder.getRoot(), "digests");
+		cache.save(state);
+
+		DigestCache loaded = new DigestCache();
+		loaded.load(state);
+		assertEquals(2, loaded.size());
+		assertFalse(loaded.hasChanged(a));
+		assertFalse(loaded.hasChanged(b));
+		assertArrayEquals(cache.getDigest(a), loaded.getDigest(a));
+
+		loaded.remove(a);
+		assertTrue(loaded.hasChanged(a));
+		loaded.clear();
+		assertEquals(0, loaded.size());
+	}
+
+	@Test(expected = IOException.class)
+	public void testLoadInvalid() throws Exception {
+		File state = folder.newFile("digests");
+		write(state, "not a cache");
+		new DigestCache().load(state);
+	}
+
+}
@@ -0,0 +1,199 @@
+package usr.erichschroeter.applib.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileUtilsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] write(File file, int length) throws IOException {
+		byte[] data = new byte[length];
+		new Random(length).nextBytes(data);
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+		return data;
+	}
+
+	@Test
+	public void testRanges() {
+		String path = "dir.d/sub/report.final.CSV";
+		assertEquals(10, FileUtils.getNameStart(path));
+		assertEquals(22, FileUtils.getExtensionStart(path));
+		assertEquals(16, FileUtils.getExtensionStart(path, 22));
+		assertEquals("report.final", path.substring(
+				FileUtils.getNameStart(path), FileUtils.getExtensionStart(path)));
+
+		// the '.' of a parent directory is not an extension
+		assertEquals(9, FileUtils.getExtensionStart("dir.d/sub"));
+		assertEquals(0, FileUtils.getNameStart("name"));
+		assertEquals(4, FileUtils.getNameStart("dir/"));
+	}
+
+	@Test
+	public void testMatchesFileApi() {
+		String[] names = { "a.txt", "archive.tar.gz", "noext", ".bashrc",
+				"trailing.", "x.Y" };
+		for (String name : names) {
+			File file = new File("dir", name);
+			String ext = FileUtils.getExtension(file);
+			assertEquals(ext, name.substring(FileUtils.getExtensionStart(name)));
+			assertEquals(FileUtils.isCompressed(file), FileUtils
+					.isCompressed(Paths.get("dir", name)));
+		}
+	}
+
+	@Test
+	public void testHasExtension() {
+		assertTrue(FileUtils.hasExtension("a.txt"));
+		assertTrue(FileUtils.hasExtension(Paths.get("dir", "a.b.c")));
+		assertFalse(FileUtils.hasExtension("noext"));
+		assertFalse(FileUtils.hasExtension(".bashrc"));
+		assertFalse(FileUtils.hasExtension("trailing."));
+		assertFalse(FileUtils.hasExtension("dir.d/noext"));
+
+		assertTrue(FileUtils.hasExtension("data.CSV", "csv"));
+		assertFalse(FileUtils.hasExtension("data.csv.gz", "csv"));
+		assertFalse(FileUtils.hasExtension("datacsv", "csv"));
+		assertTrue(FileUtils.hasUncompressedExtension("data.csv.gz", "csv"));
+		assertTrue(FileUtils.hasUncompressedExtension(Paths.get("data.csv"),
+				"csv"));
+		assertFalse(FileUtils.hasUncompressedExtension("data.gz", "csv"));
+	}
+
+	@Test
+	public void testCompare() {
+		assertEquals(0, FileUtils.compareExtensions("a/x.TXT", "y.txt"));
+		assertTrue(FileUtils.compareExtensions("x.csv", "x.txt") < 0);
+		assertTrue(FileUtils.compareExtensions("x", "x.txt") < 0);
+		assertEquals(0, FileUtils.compareBaseNames("dir/Report.csv",
+				"report.xml"));
+		assertTrue(FileUtils.compareBaseNames("a.txt", "b.txt") < 0);
+	}
+
+	@Test
+	public void testCopy() throws Exception {
+		File source = folder.newFile("source.bin");
+		byte[] data = write(source, 20 << 20);
+		File target = new File(folder.getRoot(), "target.bin");
+		write(target, 100);
+
+		final AtomicLong last = new AtomicLong();
+		long copied = FileUtils.copy(source, target, new CopyListener() {
+
+			@Override
+			public void copyProgressed(CopyEvent e) {
+				assertTrue(e.getBytes() > last.get());
+				assertEquals(e.getBytes(), e.getTotalBytes());
+				last.set(e.getBytes());
+			}
+		});
+		assertEquals(data.length, copied);
+		assertEquals(data.length, last.get());
+		assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+	}
+
+	@Test
+	public void testMove() throws Exception {
+		File source = folder.newFile("report.txt");
+		byte[] data = write(source, 1000);
+
+		File renamed = FileUtils.renameExtension(source, "bak");
+		assertEquals("report.bak", renamed.getName());
+		assertFalse(source.exists());
+		assertArrayEquals(data, Files.readAllBytes(renamed.toPath()));
+
+		File existing = folder.newFile("existing.txt");
+		FileUtils.move(renamed, existing);
+		assertFalse(renamed.exists());
+		assertArrayEquals(data, Files.readAllBytes(existing.toPath()));
+	}
+
+	@Test
+	public void testCopyTree() throws Exception {
+		File source = folder.newFolder("source");
+		long expected = 0;
+		for (int i = 0; i < 5; i++) {
+			File dir = new File(source, "dir" + i + "/nested");
+			assertTrue(dir.mkdirs());
+			for (int j = 0; j < 10; j++) {
+				expected += write(new File(dir, "file" + j), i * 1000 + j).length;
+			}
+		}
+		assertTrue(new File(source, "empty").mkdir());
+
+		File target = new File(folder.getRoot(), "target");
+		final AtomicLong files = new AtomicLong();
+		long copied = FileUtils.copyTree(source, target, 4,
+				new CopyListener() {
+
+					@Override
+					public void copyProgressed(CopyEvent e) {
+						if (e.isComplete()) {
+							files.incrementAndGet();
+						}
+					}
+				});
+		assertEquals(expected, copied);
+		assertEquals(50, files.get());
+		assertTrue(new File(target, "empty").isDirectory());
+		File copy = new File(target, "dir3/nested/file7");
+		assertArrayEquals(Files.readAllBytes(new File(source,
+				"dir3/nested/file7").toPath()), Files.readAllBytes(copy
+				.toPath()));
+
+		// copying again on the calling thread replaces the files
+		assertEquals(expected, FileUtils.copyTree(source, target, 1, null));
+	}
+
+	@Test(expected = IOException.class)
+	public void testCopyTreeIntoItself() throws Exception {
+		File source = folder.newFolder("source");
+		FileUtils.copyTree(source, new File(source, "copy"));
+	}
+
+	@Test
+	public void testDigests() throws Exception {
+		File file = folder.newFile("data.bin");
+		byte[] data = write(file, 3 * FileUtils.TREE_SEGMENT_SIZE + 12345);
+
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		assertEquals(crc.getValue(), FileUtils.checksum(file));
+		MessageDigest sha = MessageDigest.getInstance("SHA-256");
+		assertArrayEquals(sha.digest(data), FileUtils.digest(file));
+
+		MessageDigest root = MessageDigest.getInstance("SHA-256");
+		for (int i = 0; i < data.length; i += FileUtils.TREE_SEGMENT_SIZE) {
+			sha.update(data, i, Math.min(FileUtils.TREE_SEGMENT_SIZE,
+					data.length - i));
+			root.update(sha.digest());
+		}
+		byte[] expected = root.digest();
+		assertArrayEquals(expected, FileUtils.treeDigest(file, 1));
+		assertArrayEquals(expected, FileUtils.treeDigest(file, 4));
+
+		File empty = folder.newFile("empty.bin");
+		assertEquals(0, FileUtils.checksum(empty));
+		assertArrayEquals(sha.digest(), FileUtils.treeDigest(empty, 4));
+	}
+
+}
@@ -0,0 +1,109 @@
+package usr.erichschroeter.applib.utils;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IconAtlasTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static BufferedImage image(int width, int height, Color color) {
+		BufferedImage image = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(color);
+		g.fillRect(0, 0, width, height);
+		g.dispose();
+		return image;
+	}
+
+	private ClassLoader loader() throws Exception {
+		return new URLClassLoader(new URL[] { folder.getRoot().toURI()
+				.toURL() }, null);
+	}
+
+	@Test
+	public void testPackTree() throws Exception {
+		File icons = folder.newFolder("icons");
+		File toolbar = new File(icons, "toolbar");
+		assertTrue(toolbar.mkdir());
+		ImageIO.write(image(16, 16, Color.RED), "png", new File(toolbar,
+				"save.png"));
+		ImageIO.write(image(24, 12, Color.GREEN), "png", new File(toolbar,
+				"open.png"));
+		ImageIO.write(image(32, 32, Color.BLUE), "png", new File(icons,
+				"app.png"));
+		assertTrue(new File(icons, "readme.txt").createNewFile());
+
+		IconAtlasPacker packer = new IconAtlasPacker();
+		packer.addTree(icons);
+		assertEquals(3, packer.size());
+		packer.write(new File(folder.getRoot(), "atlas.png"));
+
+		IconAtlas atlas = IconAtlas.load("atlas.png", loader());
+		assertEquals(3, atlas.size());
+		assertTrue(atlas.contains("toolbar/save.png"));
+		assertNull(atlas.getIcon("readme.txt"));
+
+		AtlasIcon open = atlas.getIcon("toolbar/open.png");
+		assertEquals(24, open.getIconWidth());
+		assertEquals(12, open.getIconHeight());
+		assertEquals(Color.GREEN.getRGB(), open.getImage().getRGB(23, 11));
+
+		// painting draws only the icon's region
+		BufferedImage target = new BufferedImage(34, 34,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = target.createGraphics();
+		atlas.getIcon("app.png").paintIcon(null, g, 1, 1);
+		atlas.getIcon("toolbar/save.png").paintIcon(null, g, 1, 1);
+		g.dispose();
+		assertEquals(0, target.getRGB(0, 0));
+		assertEquals(Color.RED.getRGB(), target.getRGB(16, 16));
+		assertEquals(Color.BLUE.getRGB(), target.getRGB(17, 17));
+		assertEquals(Color.BLUE.getRGB(), target.getRGB(32, 32));
+		assertEquals(0, target.getRGB(33, 33));
+	}
+
+	@Test
+	public void testManyIcons() throws Exception {
+		IconAtlasPacker packer = new IconAtlasPacker();
+		for (int i = 0; i < 400; i++) {
+			packer.add("icon" + i, image(16 + i % 3 * 8, 16, new Color(i)));
+		}
+		packer.write(new File(folder.getRoot(), "many.png"));
+
+		IconAtlas atlas = IconAtlas.load("many.png", loader());
+		assertEquals(400, atlas.size());
+		for (int i = 0; i < 400; i++) {
+			AtlasIcon icon = atlas.getIcon("icon" + i);
+			assertEquals(16 + i % 3 * 8, icon.getIconWidth());
+			assertEquals(new Color(i).getRGB(), icon.getImage().getRGB(
+					icon.getIconWidth() - 1, 15));
+		}
+		BufferedImage image = atlas.getImage();
+		assertTrue(image.getWidth() < 4 * image.getHeight());
+		assertTrue(image.getHeight() < 4 * image.getWidth());
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingIndex() throws Exception {
+		ImageIO.write(image(4, 4, Color.RED), "png", new File(
+				folder.getRoot(), "noindex.png"));
+		IconAtlas.load("noindex.png", loader());
+	}
+
+}
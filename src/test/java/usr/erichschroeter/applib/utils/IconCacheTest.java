@@ -0,0 +1,97 @@
+package usr.erichschroeter.applib.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.swing.ImageIcon;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IconCacheTest {
+
+	private static final String ICON = "usr/erichschroeter/applib/png/application-icon.png";
+
+	private final ClassLoader loader = getClass().getClassLoader();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDecodedOnce() throws Exception {
+		IconCache cache = new IconCache();
+		ImageIcon icon = cache.getIcon(ICON, loader);
+		assertTrue(icon.getIconWidth() > 0);
+		assertSame(icon, cache.getIcon(ICON, loader));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.size());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHitCount());
+		assertNotSame(icon, cache.getIcon(ICON, loader));
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testBounded() throws Exception {
+		IconCache cache = new IconCache(1);
+		ImageIcon icon = cache.getIcon(ICON, loader);
+		// another class loader is another key
+		ClassLoader other = new ClassLoader(loader) {
+		};
+		assertNotSame(icon, cache.getIcon(ICON, other));
+		assertEquals(1, cache.size());
+		assertNotSame(icon, cache.getIcon(ICON, loader));
+		assertEquals(3, cache.getMissCount());
+	}
+
+	@Test
+	public void testMissing() throws Exception {
+		IconCache cache = new IconCache();
+		try {
+			cache.getIcon("missing.png", loader);
+			fail("expected IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(0, cache.size());
+		assertNull(Utils.imageIcon("missing.png", loader));
+	}
+
+	@Test
+	public void testPreload() throws Exception {
+		IconCache cache = Utils.getIconCache();
+		cache.clear();
+		List<Future<ImageIcon>> icons = Utils.preloadIcons(Arrays.asList(ICON,
+				"missing.png"), loader);
+		ImageIcon icon = icons.get(0).get();
+		try {
+			icons.get(1).get();
+			fail("expected ExecutionException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertSame(icon, Utils.imageIcon(ICON, loader));
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void testPixelCache() throws Exception {
+		IconCache cache = new IconCache();
+		PixelCache pixels = new PixelCache(folder.newFile("pixels.cache"));
+		cache.setPixelCache(pixels);
+		assertSame(pixels, cache.getPixelCache());
+		ImageIcon icon = cache.getIcon(ICON, loader);
+		assertTrue(icon.getIconWidth() > 0);
+		assertTrue(pixels.contains(ICON));
+	}
+
+}
@@ -0,0 +1,89 @@
+package usr.erichschroeter.applib.utils;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MultiResolutionIconTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ClassLoader loader;
+
+	@Before
+	public void setUp() throws Exception {
+		for (int size : new int[] { 16, 24, 32, 48 }) {
+			BufferedImage image = new BufferedImage(size, size,
+					BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = image.createGraphics();
+			g.setColor(Color.RED);
+			g.fillRect(0, 0, size, size);
+			g.dispose();
+			ImageIO.write(image, "png", new File(folder.getRoot(), "icon-"
+					+ size + ".png"));
+		}
+		loader = new URLClassLoader(new URL[] { folder.getRoot().toURI()
+				.toURL() }, null);
+	}
+
+	private MultiResolutionIcon createIcon() {
+		return new MultiResolutionIcon(16, 16, loader)
+				.addVariant(16, "icon-16.png").addVariant(24, "icon-24.png")
+				.addVariant(32, "icon-32.png").addVariant(48, "icon-48.png");
+	}
+
+	@Test
+	public void testLazy() {
+		MultiResolutionIcon icon = createIcon();
+		for (int size : icon.getVariantSizes()) {
+			assertFalse(icon.isDecoded(size));
+		}
+		assertEquals(24, icon.getImage(20).getWidth(null));
+		assertTrue(icon.isDecoded(24));
+		assertFalse(icon.isDecoded(16));
+		assertFalse(icon.isDecoded(48));
+		assertSame(icon.getImage(24), icon.getImage(17));
+		// larger than every variant
+		assertEquals(48, icon.getImage(64).getWidth(null));
+	}
+
+	@Test
+	public void testImages() {
+		MultiResolutionIcon icon = createIcon();
+		List<Image> images = icon.getImages(16, 16, 32);
+		assertEquals(2, images.size());
+		assertFalse(icon.isDecoded(24));
+		assertFalse(icon.isDecoded(48));
+	}
+
+	@Test
+	public void testPaintScaled() {
+		MultiResolutionIcon icon = createIcon();
+		BufferedImage target = new BufferedImage(32, 32,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = target.createGraphics();
+		// a display scaled twice
+		g.scale(2, 2);
+		icon.paintIcon(null, g, 0, 0);
+		g.dispose();
+		assertTrue(icon.isDecoded(32));
+		assertFalse(icon.isDecoded(16));
+		assertEquals(Color.RED.getRGB(), target.getRGB(31, 31));
+	}
+
+}
@@ -0,0 +1,173 @@
+package usr.erichschroeter.applib.utils;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PixelCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDirectoryResource() throws Exception {
+		File dir = folder.newFolder("icons");
+		BufferedImage red = image(Color.RED);
+		ImageIO.write(red, "png", new File(dir, "icon.png"));
+		ClassLoader loader = new URLClassLoader(new URL[] { dir.toURI()
+				.toURL() }, null);
+		File file = new File(folder.getRoot(), "cache/pixels.cache");
+
+		PixelCache cache = new PixelCache(file);
+		assertFalse(cache.contains("icon.png"));
+		assertPixels(red, cache.readImage("icon.png", loader));
+		assertTrue(cache.contains("icon.png"));
+		long length = file.length();
+		// the image added is not appended again
+		assertPixels(red, cache.readImage("icon.png", loader));
+		assertEquals(length, file.length());
+
+		cache = new PixelCache(file);
+		assertEquals(1, cache.size());
+		assertPixels(red, cache.readImage("icon.png", loader));
+		assertEquals(length, file.length());
+
+		// a changed resource is decoded again
+		BufferedImage blue = image(Color.BLUE);
+		ImageIO.write(blue, "png", new File(dir, "icon.png"));
+		cache = new PixelCache(file);
+		assertPixels(blue, cache.readImage("icon.png", loader));
+		assertTrue(file.length() > length);
+		assertPixels(blue, new PixelCache(file).readImage("icon.png", loader));
+	}
+
+	@Test
+	public void testJarResource() throws Exception {
+		File jar = folder.newFile("icons.jar");
+		BufferedImage green = image(Color.GREEN);
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+		out.putNextEntry(new ZipEntry("png/icon.png"));
+		ImageIO.write(green, "png", out);
+		out.close();
+		URLClassLoader loader = new URLClassLoader(new URL[] { jar.toURI()
+				.toURL() }, null);
+		File file = folder.newFile("pixels.cache");
+
+		new PixelCache(file).readImage("png/icon.png", loader);
+		PixelCache cache = new PixelCache(file);
+		assertTrue(cache.contains("png/icon.png"));
+		assertPixels(green, cache.readImage("png/icon.png", loader));
+		loader.close();
+	}
+
+	@Test
+	public void testMaxSize() throws Exception {
+		File dir = folder.newFolder("icons");
+		ImageIO.write(image(Color.RED), "png", new File(dir, "icon.png"));
+		ClassLoader loader = new URLClassLoader(new URL[] { dir.toURI()
+				.toURL() }, null);
+		File file = folder.newFile("pixels.cache");
+
+		PixelCache cache = new PixelCache(file, 100);
+		assertPixels(image(Color.RED), cache.readImage("icon.png", loader));
+		assertFalse(cache.contains("icon.png"));
+		assertTrue(file.length() < 100);
+	}
+
+	@Test
+	public void testInvalidFile() throws Exception {
+		File file = folder.newFile("pixels.cache");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write("not a pixel cache".getBytes("UTF-8"));
+		out.close();
+		assertEquals(0, new PixelCache(file).size());
+		assertEquals(16, file.length());
+	}
+
+	@Test
+	public void testIncompleteEntry() throws Exception {
+		File dir = folder.newFolder("icons");
+		BufferedImage red = image(Color.RED);
+		BufferedImage green = image(Color.GREEN);
+		BufferedImage blue = image(Color.BLUE);
+		ImageIO.write(red, "png", new File(dir, "red.png"));
+		ImageIO.write(green, "png", new File(dir, "green.png"));
+		ImageIO.write(blue, "png", new File(dir, "blue.png"));
+		ClassLoader loader = new URLClassLoader(new URL[] { dir.toURI()
+				.toURL() }, null);
+		File file = folder.newFile("pixels.cache");
+
+		PixelCache cache = new PixelCache(file);
+		cache.readImage("red.png", loader);
+		long committed = file.length();
+		cache.readImage("green.png", loader);
+		// as if the application died half way through appending green
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength((committed + file.length()) / 2);
+			raf.seek(8);
+			raf.writeLong(committed);
+		} finally {
+			raf.close();
+		}
+
+		cache = new PixelCache(file);
+		assertEquals(1, cache.size());
+		assertFalse(cache.contains("green.png"));
+		cache.readImage("blue.png", loader);
+		cache.readImage("green.png", loader);
+
+		cache = new PixelCache(file);
+		assertEquals(3, cache.size());
+		assertPixels(red, cache.readImage("red.png", loader));
+		assertPixels(blue, cache.readImage("blue.png", loader));
+		assertPixels(green, cache.readImage("green.png", loader));
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissing() throws Exception {
+		ClassLoader loader = new URLClassLoader(new URL[] { folder.getRoot()
+				.toURI().toURL() }, null);
+		new PixelCache(folder.newFile("pixels.cache")).readImage(
+				"missing.png", loader);
+	}
+
+	private static BufferedImage image(Color color) {
+		BufferedImage image = new BufferedImage(8, 6,
+				BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < 6; y++) {
+			for (int x = 0; x < 8; x++) {
+				// a transparent column checks alpha is kept
+				image.setRGB(x, y, x == 0 ? 0 : color.getRGB());
+			}
+		}
+		return image;
+	}
+
+	private static void assertPixels(BufferedImage expected,
+			BufferedImage actual) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+
+}
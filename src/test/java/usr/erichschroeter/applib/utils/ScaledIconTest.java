@@ -0,0 +1,81 @@
+package usr.erichschroeter.applib.utils;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import javax.swing.DebugGraphics;
+
+import org.junit.Test;
+
+public class ScaledIconTest {
+
+	@Test
+	public void testPrepare() throws Exception {
+		ScaledIcon icon = new ScaledIcon(new BufferedImage(16, 16,
+				BufferedImage.TYPE_INT_ARGB));
+		assertEquals(16, icon.getIconWidth());
+		assertEquals(16, icon.getIconHeight());
+
+		List<Future<Image>> images = icon.prepare(Arrays.asList(1.0, 1.5, 2.0));
+		assertEquals(2, images.size());
+		assertEquals(24, images.get(0).get().getWidth(null));
+		assertEquals(32, images.get(1).get().getWidth(null));
+	}
+
+	@Test
+	public void testPaintScaled() throws Exception {
+		// a checkerboard, which a paint-time scale would blur differently
+		BufferedImage original = new BufferedImage(16, 16,
+				BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < 16; y++) {
+			for (int x = 0; x < 16; x++) {
+				original.setRGB(x, y, (x + y) % 2 == 0 ? Color.BLACK.getRGB()
+						: Color.WHITE.getRGB());
+			}
+		}
+		ScaledIcon icon = new ScaledIcon(original);
+		BufferedImage variant = (BufferedImage) icon
+				.prepare(Arrays.asList(2.0)).get(0).get();
+
+		BufferedImage screen = new BufferedImage(32, 32,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = screen.createGraphics();
+		g.scale(2, 2);
+		icon.paintIcon(null, g, 0, 0);
+		g.dispose();
+		for (int y = 0; y < 32; y++) {
+			for (int x = 0; x < 32; x++) {
+				assertEquals(variant.getRGB(x, y), screen.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testPaintWithoutGraphics2D() throws Exception {
+		BufferedImage original = new BufferedImage(16, 16,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D fill = original.createGraphics();
+		fill.setColor(Color.RED);
+		fill.fillRect(0, 0, 16, 16);
+		fill.dispose();
+		ScaledIcon icon = new ScaledIcon(original, 8, 8);
+
+		BufferedImage screen = new BufferedImage(8, 8,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D target = screen.createGraphics();
+		// DebugGraphics is not a Graphics2D
+		Graphics g = new DebugGraphics(target);
+		icon.paintIcon(null, g, 0, 0);
+		target.dispose();
+		assertEquals(Color.RED.getRGB(), screen.getRGB(4, 4));
+	}
+
+}
@@ -0,0 +1,124 @@
+package usr.erichschroeter.applib.utils;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SwingLinkTest {
+
+	@Test
+	public void testText() throws Exception {
+		SwingLink link = new SwingLink("example", "http://example.com/");
+		assertEquals("example", link.getText());
+		assertEquals("example", link.getRawText());
+		assertTrue(link.isUnderlined());
+		assertEquals("http://example.com/", link.getToolTipText());
+
+		link.setText("example", false);
+		assertFalse(link.isUnderlined());
+		assertEquals("example", link.getText());
+
+		link.setText("other");
+		assertTrue(link.isUnderlined());
+		assertEquals("other", link.getRawText());
+	}
+
+	@Test
+	public void testSharedListener() throws Exception {
+		SwingLink a = new SwingLink("a", "http://example.com/a");
+		SwingLink b = new SwingLink("b", "http://example.com/b");
+		// the tool tip manager listens to both too
+		assertTrue(Arrays.asList(b.getMouseListeners()).containsAll(
+				Arrays.asList(a.getMouseListeners())));
+		int listeners = a.getMouseListeners().length;
+		a.setup("c", new URI("http://example.com/c"));
+		assertEquals(listeners, a.getMouseListeners().length);
+	}
+
+	@Test
+	public void testHover() throws Exception {
+		SwingLink link = new SwingLink("example", "http://example.com/");
+		link.dispatchEvent(new MouseEvent(link, MouseEvent.MOUSE_ENTERED, 0,
+				0, 1, 1, 0, false));
+		assertFalse(link.isUnderlined());
+		link.dispatchEvent(new MouseEvent(link, MouseEvent.MOUSE_EXITED, 0, 0,
+				1, 1, 0, false));
+		assertTrue(link.isUnderlined());
+	}
+
+	@Test
+	public void testPaint() throws Exception {
+		SwingLink link = new SwingLink("example", "http://example.com/");
+		Dimension size = link.getPreferredSize();
+		assertTrue(size.width > 0);
+		assertTrue(size.height > 0);
+		link.setSize(size);
+		int underline = link.getBaseline(size.width, size.height) + 1;
+
+		BufferedImage image = paint(link);
+		assertTrue(isLinkColored(image, underline));
+
+		link.setText("example", false);
+		assertFalse(isLinkColored(paint(link), underline));
+	}
+
+	@Test
+	public void testClick() throws Exception {
+		BrowserLauncher launcher = BrowserLauncher.getDefault();
+		Browser original = launcher.getBrowser();
+		final CountDownLatch opened = new CountDownLatch(1);
+		final URI[] uri = new URI[1];
+		launcher.setBrowser(new Browser() {
+
+			@Override
+			public void browse(URI u) throws IOException {
+				uri[0] = u;
+				opened.countDown();
+			}
+		});
+		try {
+			SwingLink link = new SwingLink("example", "http://example.com/click");
+			link.dispatchEvent(new MouseEvent(link, MouseEvent.MOUSE_CLICKED,
+					0, 0, 1, 1, 1, false));
+			assertTrue(opened.await(5, TimeUnit.SECONDS));
+			assertEquals(new URI("http://example.com/click"), uri[0]);
+		} finally {
+			launcher.setBrowser(original);
+		}
+	}
+
+	private static BufferedImage paint(SwingLink link) {
+		BufferedImage image = new BufferedImage(link.getWidth(),
+				link.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		link.paint(g);
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * Returns whether the whole row <code>y</code>, but for its ends, is the
+	 * color of a link.
+	 */
+	private static boolean isLinkColored(BufferedImage image, int y) {
+		int link = new Color(0x000099).getRGB();
+		for (int x = 1; x < image.getWidth() - 1; x++) {
+			if (image.getRGB(x, y) != link) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,153 @@
+package usr.erichschroeter.applib.utils;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+
+import org.junit.Test;
+
+public class UtilsTest {
+
+	private static final String ICON = "usr/erichschroeter/applib/png/application-icon.png";
+
+	private final ClassLoader loader = getClass().getClassLoader();
+
+	@Test
+	public void testReadImage() throws Exception {
+		InputStream in = loader.getResourceAsStream(ICON);
+		BufferedImage expected = ImageIO.read(in);
+		in.close();
+
+		BufferedImage image = Utils.readImage(ICON, loader);
+		assertEquals(expected.getWidth(), image.getWidth());
+		assertEquals(expected.getHeight(), image.getHeight());
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				assertEquals(expected.getRGB(x, y), image.getRGB(x, y));
+			}
+		}
+		// the pooled buffer is reused by the next read
+		assertEquals(image.getWidth(), Utils.readImage(ICON, loader)
+				.getWidth());
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadImageUnsupported() throws Exception {
+		Utils.readImage("usr/erichschroeter/applib/utils/UtilsTest.class",
+				loader);
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadImageMissing() throws Exception {
+		Utils.readImage("missing.png", loader);
+	}
+
+	@Test
+	public void testIconToImage() {
+		SquareIcon icon = new SquareIcon(8);
+		BufferedImage image = (BufferedImage) Utils.iconToImage(icon);
+		assertEquals(8, image.getWidth());
+		assertEquals(8, image.getHeight());
+		assertEquals(Color.RED.getRGB(), image.getRGB(1, 1));
+		// the unpainted corner stays transparent
+		assertEquals(0, image.getRGB(7, 7) >>> 24);
+		assertEquals(1, icon.painted);
+
+		assertSame(image, Utils.iconToImage(icon));
+		assertEquals(1, icon.painted);
+
+		icon.size = 16;
+		Image resized = Utils.iconToImage(icon);
+		assertNotSame(image, resized);
+		assertEquals(16, resized.getWidth(null));
+		assertEquals(2, icon.painted);
+	}
+
+	@Test
+	public void testIconsToImages() {
+		ImageIcon imageIcon = new ImageIcon(new BufferedImage(4, 4,
+				BufferedImage.TYPE_INT_ARGB));
+		SquareIcon square = new SquareIcon(8);
+		BufferedImage atlas = new BufferedImage(10, 10,
+				BufferedImage.TYPE_INT_ARGB);
+		atlas.setRGB(3, 4, Color.BLUE.getRGB());
+		AtlasIcon atlasIcon = new AtlasIcon(atlas, 2, 3, 5, 5);
+
+		List<Image> images = Utils.iconsToImages(Arrays.<Icon> asList(
+				imageIcon, square, atlasIcon));
+		assertEquals(3, images.size());
+		assertSame(imageIcon.getImage(), images.get(0));
+		assertSame(Utils.iconToImage(square), images.get(1));
+		assertEquals(1, square.painted);
+		BufferedImage region = (BufferedImage) images.get(2);
+		assertEquals(5, region.getWidth());
+		assertEquals(Color.BLUE.getRGB(), region.getRGB(1, 1));
+	}
+
+	@Test
+	public void testScaleImage() throws Exception {
+		BufferedImage original = new BufferedImage(64, 32,
+				BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < 32; y++) {
+			for (int x = 0; x < 64; x++) {
+				original.setRGB(x, y, Color.GREEN.getRGB());
+			}
+		}
+		Future<Image> smaller = Utils.scaleImage(original, 16, 8);
+		assertSame(smaller, Utils.scaleImage(original, 16, 8));
+		BufferedImage image = (BufferedImage) smaller.get();
+		assertEquals(16, image.getWidth());
+		assertEquals(8, image.getHeight());
+		assertEquals(Color.GREEN.getRGB(), image.getRGB(8, 4));
+
+		BufferedImage larger = (BufferedImage) Utils.scaleImage(original, 100,
+				50).get();
+		assertEquals(100, larger.getWidth());
+		assertEquals(50, larger.getHeight());
+		assertEquals(Color.GREEN.getRGB(), larger.getRGB(50, 25));
+	}
+
+	/**
+	 * An icon filling all but its last row and column, counting its paints.
+	 */
+	private static class SquareIcon implements Icon {
+
+		int size;
+		int painted;
+
+		SquareIcon(int size) {
+			this.size = size;
+		}
+
+		@Override
+		public void paintIcon(Component c, Graphics g, int x, int y) {
+			painted++;
+			g.setColor(Color.RED);
+			g.fillRect(x, y, size - 1, size - 1);
+		}
+
+		@Override
+		public int getIconWidth() {
+			return size;
+		}
+
+		@Override
+		public int getIconHeight() {
+			return size;
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package usr.erichschroeter.applib.xml;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.validation.Schema;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchValidatorTest {
+
+	private static final String SCHEMA = "<xs:schema "
+			+ "xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+			+ "<xs:element name=\"items\"><xs:complexType><xs:sequence>"
+			+ "<xs:element name=\"item\" type=\"xs:int\" maxOccurs=\"unbounded\"/>"
+			+ "</xs:sequence></xs:complexType></xs:element></xs:schema>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File write(String name, String content) throws Exception {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes("UTF-8"));
+		return file;
+	}
+
+	@Test
+	public void testSchemaCached() throws Exception {
+		File xsd = write("items.xsd", SCHEMA);
+		SchemaCache cache = new SchemaCache();
+		Schema schema = cache.getSchema(xsd);
+		assertSame(schema, cache.getSchema(xsd));
+		assertSame(cache.getValidator(xsd), cache.getValidator(xsd));
+	}
+
+	@Test
+	public void testValidate() throws Exception {
+		File xsd = write("items.xsd", SCHEMA);
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < 50; i++) {
+			String item = i % 10 == 3 ? "bad" : String.valueOf(i);
+			files.add(write("file" + i + ".xml", "<items><item>" + item
+					+ "</item></items>"));
+		}
+		files.add(write("broken.xml", "<items>"));
+
+		final List<ValidationResult> results = Collections
+				.synchronizedList(new ArrayList<ValidationResult>());
+		BatchValidator validator = new BatchValidator(new SchemaCache(), 4);
+		validator.setSlowestCount(3);
+		try {
+			ValidationReport report = validator.validate(xsd, files,
+					new ValidationListener() {
+
+						@Override
+						public void validated(ValidationResult result) {
+							results.add(result);
+						}
+					});
+			assertEquals(51, report.getFileCount());
+			assertEquals(6, report.getInvalidCount());
+			assertEquals(51, results.size());
+			assertEquals(3, report.getSlowest().size());
+			assertTrue(report.getSlowest().get(0).getElapsed() >= report
+					.getSlowest().get(2).getElapsed());
+			assertTrue(report.getFilesPerSecond() > 0);
+		} finally {
+			validator.close();
+		}
+
+		ValidationResult broken = validator.validate(xsd, new File(
+				folder.getRoot(), "broken.xml"));
+		assertFalse(broken.isValid());
+		assertNotNull(broken.getException());
+		ValidationResult bad = validator.validate(xsd, files.get(3));
+		assertFalse(bad.getErrors().isEmpty());
+		assertNull(bad.getException());
+	}
+
+}
@@ -0,0 +1,79 @@
+package usr.erichschroeter.applib.xml;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Element;
+
+public class XmlIndexTest {
+
+	private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<!DOCTYPE catalog [<!ENTITY x \"<book>\">]>\n"
+			+ "<catalog>\n"
+			+ "<!-- <book>not a book</book> -->\n"
+			+ "<book id=\"1\" title=\"a &gt; b\"><title>Zo\u00eb</title></book>\n"
+			+ "<shelf><book id=\"2\"/></shelf>\n"
+			+ "<book id='3'><![CDATA[</book>]]><book id=\"4\"/></book>\n"
+			+ "</catalog>\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testAbsolutePath() throws Exception {
+		File xml = folder.newFile("catalog.xml");
+		Files.write(xml.toPath(), XML.getBytes("UTF-8"));
+
+		XmlIndex index = XmlIndex.open(xml, "/catalog/book");
+		try {
+			assertEquals(2, index.size());
+			Element first = index.parse(0);
+			assertEquals("1", first.getAttribute("id"));
+			assertEquals("Zo\u00eb", first.getTextContent());
+			Element second = index.parse(1);
+			assertEquals("3", second.getAttribute("id"));
+			assertEquals(1, second.getElementsByTagName("book").getLength());
+		} finally {
+			index.close();
+		}
+		assertTrue(XmlIndex.isCurrent(xml, XmlIndex.getSidecarFile(xml),
+				"/catalog/book"));
+		assertFalse(XmlIndex.isCurrent(xml, XmlIndex.getSidecarFile(xml),
+				"//book"));
+	}
+
+	@Test
+	public void testDescendantPath() throws Exception {
+		File xml = folder.newFile("catalog.xml");
+		Files.write(xml.toPath(), XML.getBytes("UTF-8"));
+
+		XmlIndex index = XmlIndex.open(xml, "//book");
+		try {
+			assertEquals(4, index.size());
+			String[] ids = { "1", "2", "3", "4" };
+			for (int i = 0; i < ids.length; i++) {
+				XMLStreamReader reader = index.createReader(i);
+				try {
+					assertEquals(XMLStreamConstants.START_ELEMENT,
+							reader.nextTag());
+					assertEquals(ids[i], reader.getAttributeValue(null, "id"));
+				} finally {
+					reader.close();
+				}
+			}
+			// the nested book ends before the book containing it
+			assertTrue(index.getEnd(3) < index.getEnd(2));
+		} finally {
+			index.close();
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+package usr.erichschroeter.applib.xml;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import usr.erichschroeter.applib.model.Model;
+import usr.erichschroeter.applib.model.ModelManagedEvent;
+import usr.erichschroeter.applib.model.ModelManager;
+import usr.erichschroeter.applib.model.ModelManagerListener;
+
+public class XmlModelLoaderTest {
+
+	private static final String XML = "<state>"
+			+ "<users><user id=\"1\"><name>Ann</name></user>"
+			+ "<user id=\"2\"><name>Bob</name><user id=\"nested\"/></user>"
+			+ "<user/></users>"
+			+ "<settings><setting key=\"theme\">dark</setting></settings>"
+			+ "</state>";
+
+	private static final String NAMESPACED = "<s:state xmlns:s=\"urn:state\">"
+			+ "<s:user s:id=\"1\"><s:name>Ann</s:name></s:user>"
+			+ "<s:user s:id=\"2\"><s:name>Bob</s:name></s:user>"
+			+ "</s:state>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLoad() throws Exception {
+		ModelManager manager = new ModelManager();
+		final List<Object> registered = new ArrayList<Object>();
+		manager.addModelManagerListener(new ModelManagerListener() {
+
+			@Override
+			public void wasManaged(ModelManagedEvent e) {
+				registered.add(e.getModel().getModel());
+			}
+		});
+
+		XmlModelLoader loader = new XmlModelLoader(manager);
+		loader.addFactory("/state/users/user", new XmlModelFactory() {
+
+			@Override
+			public String createKey(XmlElement element) {
+				String id = element.getAttribute("id");
+				return id == null ? null : "user." + id;
+			}
+
+			@Override
+			public Model<?> createModel(XmlElement element) {
+				return new Model<String>(element.getChildText("name"));
+			}
+		});
+		loader.addFactory("//setting", new XmlModelFactory() {
+
+			@Override
+			public String createKey(XmlElement element) {
+				return element.getAttribute("key");
+			}
+
+			@Override
+			public Model<?> createModel(XmlElement element) {
+				return new Model<String>(element.getText());
+			}
+		});
+
+		int loaded = loader.load(new ByteArrayInputStream(XML
+				.getBytes("UTF-8")));
+		assertEquals(3, loaded);
+		assertEquals("[Ann, Bob, dark]", registered.toString());
+		assertEquals("Bob", manager.getModel("user.2").getModel());
+		assertFalse(manager.isRegistered("user.nested"));
+		assertEquals("dark", manager.getModel("theme").getModel());
+	}
+
+	@Test
+	public void testQualifiedNames() throws Exception {
+		File xml = folder.newFile("state.xml");
+		Files.write(xml.toPath(), NAMESPACED.getBytes("UTF-8"));
+		XmlModelFactory factory = new XmlModelFactory() {
+
+			@Override
+			public String createKey(XmlElement element) {
+				assertEquals("s:user", element.getName());
+				return "user." + element.getAttribute("s:id");
+			}
+
+			@Override
+			public Model<?> createModel(XmlElement element) {
+				return new Model<String>(element.getChildText("s:name"));
+			}
+		};
+
+		ModelManager manager = new ModelManager();
+		XmlModelLoader loader = new XmlModelLoader(manager);
+		loader.addFactory("/state/user", factory);
+		loader.addFactory("//user", factory);
+		assertEquals(0, loader.load(xml));
+
+		loader = new XmlModelLoader(manager);
+		loader.addFactory("/s:state/s:user", factory);
+		assertEquals(2, loader.load(xml));
+		assertEquals("Bob", manager.getModel("user.2").getModel());
+
+		// the same path selects the same elements as an index
+		XmlIndex index = XmlIndex.open(xml, "/s:state/s:user");
+		try {
+			assertEquals(2, index.size());
+		} finally {
+			index.close();
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package usr.erichschroeter.applib.xml;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.Templates;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class XslTransformerTest {
+
+	private static final String STYLESHEET = "<xsl:stylesheet version=\"1.0\" "
+			+ "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+			+ "<xsl:output method=\"text\"/>"
+			+ "<xsl:template match=\"/\">%s<xsl:value-of select=\"count(//item)\"/>"
+			+ "</xsl:template></xsl:stylesheet>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File write(String name, String content) throws Exception {
+		File file = new File(folder.getRoot(), name);
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static String read(File file) throws Exception {
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+	}
+
+	@Test
+	public void testTemplatesCached() throws Exception {
+		File xsl = write("count.xsl", String.format(STYLESHEET, "a"));
+		TemplatesCache cache = new TemplatesCache();
+		Templates templates = cache.getTemplates(xsl);
+		assertSame(templates, cache.getTemplates(xsl));
+		assertEquals(1, cache.size());
+
+		write("count.xsl", String.format(STYLESHEET, "changed"));
+		assertNotSame(templates, cache.getTemplates(xsl));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testTransformAll() throws Exception {
+		File xsl = write("count.xsl", String.format(STYLESHEET, "n="));
+		List<File> inputs = new ArrayList<File>();
+		for (int i = 0; i < 20; i++) {
+			StringBuilder xml = new StringBuilder("<items>");
+			for (int j = 0; j < i; j++) {
+				xml.append("<item/>");
+			}
+			inputs.add(write("in" + i + ".xml", xml.append("</items>")
+					.toString()));
+		}
+		File out = folder.newFolder("out");
+
+		XslTransformer transformer = new XslTransformer(new TemplatesCache(),
+				4);
+		try {
+			List<Future<File>> results = transformer.transformAll(xsl, inputs,
+					out, "txt");
+			for (int i = 0; i < results.size(); i++) {
+				File result = results.get(i).get();
+				assertEquals(new File(out, "in" + i + ".txt"), result);
+				assertEquals("n=" + i, read(result));
+			}
+			assertEquals(1, transformer.getCache().size());
+		} finally {
+			transformer.close();
+		}
+	}
+
+}